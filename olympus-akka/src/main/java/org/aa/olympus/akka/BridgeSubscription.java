@@ -2,9 +2,9 @@ package org.aa.olympus.akka;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Queues;
-import java.util.List;
 import java.util.Queue;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import org.aa.olympus.api.ElementView;
 import org.aa.olympus.api.Engine;
 import org.aa.olympus.api.EntityKey;
@@ -18,6 +18,7 @@ public final class BridgeSubscription<K, S, V> implements Subscription {
   private final EntityKey<K, S> entityKey;
   private final BiFunction<K, S, V> assembler;
   private final Queue<V> values;
+  private final Consumer<ElementView<K, S>> enqueue;
 
   private boolean isFlushing = false;
   private Subscriber<? super V> subscriber = null;
@@ -29,6 +30,7 @@ public final class BridgeSubscription<K, S, V> implements Subscription {
     this.entityKey = entityKey;
     this.assembler = assembler;
     this.values = Queues.newConcurrentLinkedQueue();
+    this.enqueue = p -> this.values.add(this.assembler.apply(p.getKey(), p.getState()));
   }
 
   @Override
@@ -69,8 +71,6 @@ public final class BridgeSubscription<K, S, V> implements Subscription {
   int queueUpdates(Engine engine, UpdateContext previous) {
     Preconditions.checkArgument(values.isEmpty());
     Preconditions.checkArgument(demand > 0);
-    List<ElementView<K, S>> values = engine.getUpdated(entityKey, previous);
-    values.forEach(p -> this.values.add(assembler.apply(p.getKey(), p.getState())));
-    return values.size();
+    return engine.forEachUpdated(entityKey, previous, enqueue);
   }
 }
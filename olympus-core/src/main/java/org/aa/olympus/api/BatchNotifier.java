@@ -0,0 +1,15 @@
+package org.aa.olympus.api;
+
+/**
+ * Routes a batch of events of a channel to the elements of an entity.
+ *
+ * @see ElementManager#onEvents
+ */
+public interface BatchNotifier<K, E> {
+
+  /** Deliver {@code event} to the element of {@code elementKey}, creating it if needed */
+  void notifyElement(K elementKey, E event);
+
+  /** Deliver {@code event} to all the existing elements */
+  void notifyAllElements(E event);
+}
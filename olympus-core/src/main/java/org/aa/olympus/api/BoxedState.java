@@ -0,0 +1,99 @@
+package org.aa.olympus.api;
+
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+
+/**
+ * A boxed state for the primitive updaters, to adapt them to {@link ElementUpdater#update(Object,
+ * UpdateContext, Toolbox)}
+ */
+final class BoxedState implements DoubleState, LongState, IntState {
+
+  private final Number previous;
+  private Number next;
+
+  BoxedState(Number previous) {
+    this.previous = previous;
+  }
+
+  @Override
+  public boolean hasState() {
+    return previous != null;
+  }
+
+  @Override
+  public double getDouble() {
+    return previous.doubleValue();
+  }
+
+  @Override
+  public UpdateStatus updateDouble(double state) {
+    next = state;
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeDouble(double state) {
+    return previous != null
+            && Double.doubleToLongBits(previous.doubleValue()) == Double.doubleToLongBits(state)
+        ? UpdateStatus.NOTHING
+        : updateDouble(state);
+  }
+
+  @Override
+  public long getLong() {
+    return previous.longValue();
+  }
+
+  @Override
+  public UpdateStatus updateLong(long state) {
+    next = state;
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeLong(long state) {
+    return previous != null && previous.longValue() == state
+        ? UpdateStatus.NOTHING
+        : updateLong(state);
+  }
+
+  @Override
+  public int getInt() {
+    return previous.intValue();
+  }
+
+  @Override
+  public UpdateStatus updateInt(int state) {
+    next = state;
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeInt(int state) {
+    return previous != null && previous.intValue() == state
+        ? UpdateStatus.NOTHING
+        : updateInt(state);
+  }
+
+  /** The result matching the status returned by the updater */
+  @SuppressWarnings("unchecked") // the state was boxed by the updater of the same type
+  <T> UpdateResult<T> toResult(UpdateStatus status) {
+    switch (status) {
+      case NOTHING:
+        return UpdateResult.unchanged();
+      case MAYBE:
+      case UPDATED:
+        return UpdateResult.update((T) next);
+      case DELETED:
+        return UpdateResult.delete();
+      case NOT_READY:
+        return UpdateResult.notReady();
+      case ERROR:
+        return UpdateResult.error();
+      case UPSTREAM_ERROR:
+        return UpdateResult.upstreamError();
+      default:
+        throw new IllegalArgumentException(status.name());
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package org.aa.olympus.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads values of any size at the position of a buffer, for snapshots
+ *
+ * <p>A write may be retried in a bigger buffer if it overflows, so it shouldn't have side effects.
+ * See {@link EngineBuilder#snapshotCodecs(EntityKey, Codec, Codec)}
+ */
+public interface Codec<T> {
+
+  void write(ByteBuffer buffer, T value);
+
+  T read(ByteBuffer buffer);
+}
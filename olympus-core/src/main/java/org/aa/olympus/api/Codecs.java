@@ -0,0 +1,119 @@
+package org.aa.olympus.api;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Common codecs
+ *
+ * <p>Entities stored off heap with the primitive {@link StateCodec}s aren't boxed.
+ */
+public final class Codecs {
+
+  public static final StateCodec<Double> DOUBLE =
+      new StateCodec<Double>() {
+        @Override
+        public int getSize() {
+          return Double.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Double state) {
+          buffer.putDouble(offset, state);
+        }
+
+        @Override
+        public Double read(ByteBuffer buffer, int offset) {
+          return buffer.getDouble(offset);
+        }
+      };
+
+  public static final StateCodec<Long> LONG =
+      new StateCodec<Long>() {
+        @Override
+        public int getSize() {
+          return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long state) {
+          buffer.putLong(offset, state);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+          return buffer.getLong(offset);
+        }
+      };
+
+  public static final StateCodec<Integer> INT =
+      new StateCodec<Integer>() {
+        @Override
+        public int getSize() {
+          return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer state) {
+          buffer.putInt(offset, state);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+          return buffer.getInt(offset);
+        }
+      };
+
+  /** Strings in UTF-8, null included */
+  public static final Codec<String> STRING =
+      new Codec<String>() {
+        @Override
+        public void write(ByteBuffer buffer, String value) {
+          if (value == null) {
+            buffer.putInt(-1);
+          } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length).put(bytes);
+          }
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+          int length = buffer.getInt();
+          if (length < 0) {
+            return null;
+          }
+          byte[] bytes = new byte[length];
+          buffer.get(bytes);
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+      };
+
+  private Codecs() {}
+
+  /** Use a fixed size codec at the position of the buffer */
+  public static <T> Codec<T> of(StateCodec<T> codec) {
+    return new Codec<T>() {
+      @Override
+      public void write(ByteBuffer buffer, T value) {
+        int position = buffer.position();
+        if (buffer.remaining() < codec.getSize()) {
+          throw new BufferOverflowException();
+        }
+        codec.write(buffer, position, value);
+        // Through Buffer, ByteBuffer only overrides position(int) from Java 9
+        ((Buffer) buffer).position(position + codec.getSize());
+      }
+
+      @Override
+      public T read(ByteBuffer buffer) {
+        int position = buffer.position();
+        T value = codec.read(buffer, position);
+        ((Buffer) buffer).position(position + codec.getSize());
+        return value;
+      }
+    };
+  }
+}
@@ -0,0 +1,31 @@
+package org.aa.olympus.api;
+
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+
+/**
+ * An {@link ElementUpdater} for entities of {@link Olympus#doubleKey}, updating the state in place
+ * instead of allocating an {@link UpdateResult} with a boxed state.
+ */
+public interface DoubleElementUpdater extends ElementUpdater<Double> {
+
+  /**
+   * Called instead of {@link #update(Object, UpdateContext, Toolbox)}
+   *
+   * @return what {@link DoubleState#updateDouble} or {@link DoubleState#maybeDouble} returned, or
+   *     another status without state, like {@link UpdateStatus#NOT_READY}
+   */
+  UpdateStatus updateDouble(DoubleState state, UpdateContext updateContext, Toolbox toolbox);
+
+  /**
+   * Runs {@link #updateDouble} against a boxed state
+   *
+   * <p>The engine calls {@link #updateDouble} directly, this is for other callers of the {@link
+   * ElementUpdater} contract.
+   */
+  @Override
+  default UpdateResult<Double> update(
+      Double previous, UpdateContext updateContext, Toolbox toolbox) {
+    BoxedState state = new BoxedState(previous);
+    return state.toResult(updateDouble(state, updateContext, toolbox));
+  }
+}
@@ -1,5 +1,7 @@
 package org.aa.olympus.api;
 
+import java.util.List;
+
 /**
  * Controls the creation and notification of {@link ElementUpdater} for a given {@link EntityKey}.
  */
@@ -17,4 +19,54 @@ public interface ElementManager<K, S> {
   default <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<K> notifier) {};
 
   default <E> void onEvent(Event<E> event, Notifier<K> toNotify) {}
+
+  /**
+   * Called once per cycle with the events injected in {@code channel}, in the order they were
+   * injected
+   *
+   * <p>{@code events} is only valid during the call. The default implementation calls {@link
+   * #onEvent} for each event, managers of channels with a lot of events should route them directly.
+   */
+  default <E> void onEvents(EventChannel<E> channel, List<E> events, BatchNotifier<K, E> notifier) {
+    for (E event : events) {
+      onEvent(
+          Olympus.event(channel, event),
+          new Notifier<K>() {
+            @Override
+            public void notifyElement(K elementKey) {
+              notifier.notifyElement(elementKey, event);
+            }
+
+            @Override
+            public void notifyAllElements() {
+              notifier.notifyAllElements(event);
+            }
+          });
+    }
+  }
+
+  /**
+   * Whether the {@link ElementUpdater} of this entity can be updated at the same time.
+   *
+   * <p>When the engine runs in parallel, the elements of such entity that need updating are split
+   * in chunks, updated on different threads. See {@link ElementUpdater} for the contract.
+   */
+  default boolean concurrentUpdates() {
+    return false;
+  }
+
+  /**
+   * Whether the elements created upstream that are notified to all the elements of this entity, see
+   * {@link Notifier#notifyAllElements()}, are passed to each {@link ElementUpdater} right before
+   * its next update, rather than right away
+   *
+   * <p>Right away, each creation costs a call to every updater of the entity. Lazily, only the
+   * updaters that update pay for it, and the creations they subscribe to that are OK are in their
+   * {@link Toolbox#getUpdatedHandles()}. The result of {@link ElementUpdater#onNewElement} only
+   * counts when creations pile up and are passed to all the updaters at once. Return false for
+   * updaters that need to hear of each creation, or to update for it, right away.
+   */
+  default boolean lazyCreations() {
+    return true;
+  }
 }
@@ -18,6 +18,11 @@ public enum ElementStatus {
   ERROR,
   /** The element could not update because of failed upstream element */
   UPSTREAM_ERROR,
-  /** The element has decided it no longer needed to exist */
+  /**
+   * The element has decided it no longer needed to exist
+   *
+   * <p>It's evicted at the end of the cycle, dropping its subscriptions, subscribers and timers. It
+   * only comes back if it gets created again.
+   */
   DELETED
 }
@@ -1,12 +1,23 @@
 package org.aa.olympus.api;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 public interface ElementTimer {
 
   LocalDateTime getTimerAt();
 
+  /** @return the period of a recurring timer, or {@link Duration#ZERO} for a one off timer */
+  Duration getPeriod();
+
   TimerState getState();
 
   void cancel();
+
+  /**
+   * Move the timer to {@code timerAt}, whatever its state, and make it {@link TimerState#READY}
+   *
+   * <p>This reuses the timer rather than creating a new one, a recurring timer keeps its period.
+   */
+  void reschedule(LocalDateTime timerAt);
 }
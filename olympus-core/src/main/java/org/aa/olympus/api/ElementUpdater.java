@@ -1,6 +1,13 @@
 package org.aa.olympus.api;
 
-/** Manages updates for an element */
+/**
+ * Manages updates for an element
+ *
+ * <p>An updater is never called by more than one thread at a time. But if its {@link
+ * ElementManager#concurrentUpdates()} is true, other updaters of the same entity may be updating at
+ * the same time on other threads. In which case any state shared between them, including in the
+ * {@link ElementManager}, must be thread safe.
+ */
 public interface ElementUpdater<S> {
 
   /** Called when the state needs to be updated because of upstream changes or timer */
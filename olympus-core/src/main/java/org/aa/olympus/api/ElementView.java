@@ -1,5 +1,7 @@
 package org.aa.olympus.api;
 
+import com.google.common.base.Preconditions;
+
 /**
  * An immutable view on an element of the engine
  *
@@ -18,5 +20,26 @@ public interface ElementView<K, S> {
 
   ElementStatus getStatus();
 
+  /** The state of an OK element as a double, without boxing for {@link Olympus#doubleKey} */
+  default double getDouble() {
+    S state = getState();
+    Preconditions.checkState(state != null, "%s has no state", this);
+    return ((Number) state).doubleValue();
+  }
+
+  /** The state of an OK element as a long, without boxing for {@link Olympus#longKey} */
+  default long getLong() {
+    S state = getState();
+    Preconditions.checkState(state != null, "%s has no state", this);
+    return ((Number) state).longValue();
+  }
+
+  /** The state of an OK element as an int, without boxing for {@link Olympus#intKey} */
+  default int getInt() {
+    S state = getState();
+    Preconditions.checkState(state != null, "%s has no state", this);
+    return ((Number) state).intValue();
+  }
+
   UpdateContext getUpdateContext();
 }
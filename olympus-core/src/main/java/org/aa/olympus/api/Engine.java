@@ -1,11 +1,21 @@
 package org.aa.olympus.api;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /** Holds an instance of the engine */
 public interface Engine {
 
+  /**
+   * Queue an event for the next cycle
+   *
+   * <p>Events are batched by channel: they're handed to the {@link ElementManager} of each channel
+   * in the order the channels were registered, and in the order they were injected within a
+   * channel.
+   */
   <E> Engine injectEvent(EventChannel<E> channel, E event);
 
   /** Run the engine once, processing all updates */
@@ -22,11 +32,87 @@ public interface Engine {
   @Deprecated
   <K, S> S getState(EntityKey<K, S> entityKey, K key);
 
-  /** Gets a view of the a given element */
+  /**
+   * Gets a view of the a given element
+   *
+   * <p>Looking up an element that doesn't exist doesn't create it, the view is a {@link
+   * ElementStatus#SHADOW} until it gets created. Once evicted, the element is {@link
+   * ElementStatus#DELETED} until it gets created again.
+   */
   <K, S> ElementView<K, S> getElement(EntityKey<K, S> entityKey, K key);
 
   /** The context of the latest update */
   UpdateContext getLatestContext();
 
+  /**
+   * Gets the elements of an entity that updated since {@code previous}
+   *
+   * <p>The engine keeps track of the elements that changed during the latest cycles, so this is
+   * proportional to the number of changes. If {@code previous} is older than the history, all the
+   * elements of the entity are scanned.
+   */
   <K, S> List<ElementView<K, S>> getUpdated(EntityKey<K, S> entityKey, UpdateContext previous);
+
+  /**
+   * Write all the elements to {@code file}, memory-mapped, to restore them later with {@link
+   * EngineBuilder#restoreFrom(Path)}
+   *
+   * <p>The snapshot covers the states, statuses, update contexts, subscriptions and pending timers
+   * of the elements. It must be taken between two cycles, events injected since the latest cycle
+   * are not included.
+   */
+  void writeSnapshot(Path file) throws IOException;
+
+  /** The time of the next pending timer, or null if there are none */
+  LocalDateTime getNextTimerAt();
+
+  /**
+   * Replay the journal written to {@code journal} by an engine with the same channels, see {@link
+   * EngineBuilder#journalTo(Path)}
+   *
+   * <p>Recorded cycles run at their recorded time. Timers due between two recorded cycles fire at
+   * their own time, in cycles of their own. Events after the last recorded cycle are injected, but
+   * not run. Recorded cycles the engine already ran are skipped, so an engine restored from a
+   * checkpoint only replays what happened after it, even if that checkpoint was taken during a
+   * replay.
+   *
+   * <p>If this engine has a journal too, the replayed events and cycles are appended to it, under
+   * their recorded ids. Timer cycles are recorded under the id of the latest recorded cycle.
+   *
+   * @return the number of replayed events
+   * @throws IllegalArgumentException if {@code journal} is the journal of this engine
+   */
+  long replay(Path journal) throws IOException;
+
+  /**
+   * Same as {@link #replay(Path)}, optionally reproducing the recorded cycles exactly
+   *
+   * <p>In an exact replay, only the recorded cycles run. Like in the recording engine, timers due
+   * between two cycles fire in the next one, once per timer, as they rearm past the missed
+   * deadlines.
+   *
+   * @return the number of replayed events
+   */
+  long replay(Path journal, boolean exact) throws IOException;
+
+  /**
+   * Write the elements that changed since the previous checkpoint, see {@link
+   * EngineBuilder#checkpointTo(Path)}
+   *
+   * <p>Like snapshots, checkpoints must be taken between two cycles. Checkpoints get compacted in
+   * the background.
+   *
+   * @throws IllegalStateException if checkpoints are not enabled
+   */
+  void checkpoint() throws IOException;
+
+  /**
+   * Same as {@link #getUpdated(EntityKey, UpdateContext)}, without allocating a list
+   *
+   * @return the number of elements passed to {@code consumer}
+   */
+  <K, S> int forEachUpdated(
+      EntityKey<K, S> entityKey,
+      UpdateContext previous,
+      Consumer<? super ElementView<K, S>> consumer);
 }
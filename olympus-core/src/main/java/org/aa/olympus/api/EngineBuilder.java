@@ -1,6 +1,8 @@
 package org.aa.olympus.api;
 
+import java.nio.file.Path;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 /** Utility to set up and build a {@link Engine} */
@@ -51,6 +53,83 @@ public interface EngineBuilder {
       Function<E, K> keyExtractor,
       Function<E, S> stateExtractor);
 
+  /**
+   * Index the elements of a registered entity with {@code hashing} instead of their keys' {@code
+   * hashCode} and {@code equals}
+   *
+   * <p>Elements are looked up by key whenever they get an event, a creation or a handle. Entities
+   * with {@code Integer} or {@code Long} keys are indexed without boxing by default.
+   *
+   * @return {@code this}
+   */
+  <K> EngineBuilder keyHashing(EntityKey<K, ?> key, HashingStrategy<? super K> hashing);
+
+  /**
+   * Store the states of a registered entity off heap, in direct buffers, encoded by {@code codec}
+   *
+   * <p>It's meant for entities with many elements and small fixed size states, whose states would
+   * otherwise make up most of the heap. States are decoded on each read. Entities of {@link
+   * Olympus#doubleKey}, {@link Olympus#longKey} and {@link Olympus#intKey} using the matching
+   * {@link Codecs} are read and written without boxing.
+   *
+   * @return {@code this}
+   */
+  <S> EngineBuilder offHeap(EntityKey<?, S> key, StateCodec<S> codec);
+
+  /**
+   * Encode the keys and states of an entity with these codecs in snapshots
+   *
+   * <p>Keys and states of type {@code String}, {@code Double}, {@code Long}, {@code Integer} and
+   * {@link SingletonKey} have default codecs.
+   *
+   * @return {@code this}
+   */
+  <K, S> EngineBuilder snapshotCodecs(EntityKey<K, S> key, Codec<K> keyCodec, Codec<S> stateCodec);
+
+  /**
+   * Start the engine from a snapshot written by {@link Engine#writeSnapshot(Path)}, or from the
+   * checkpoints in a directory, instead of empty
+   *
+   * <p>The snapshot must have been written by an engine with the same entities. {@link #build()}
+   * throws an {@link java.io.UncheckedIOException} if it can't be read.
+   *
+   * @return {@code this}
+   */
+  EngineBuilder restoreFrom(Path snapshot);
+
+  /**
+   * Write checkpoints to {@code directory} on {@link Engine#checkpoint()}
+   *
+   * <p>Each checkpoint only has the elements that changed since the previous one, so its cost
+   * depends on the rate of change rather than the number of elements. Restore them with {@link
+   * #restoreFrom(Path)}. An engine restored from the same directory carries on from its
+   * checkpoints.
+   *
+   * @return {@code this}
+   */
+  EngineBuilder checkpointTo(Path directory);
+
+  /**
+   * Encode the events of a channel with this codec in the journal
+   *
+   * <p>Events of type {@code String}, {@code Double}, {@code Long} and {@code Integer} have default
+   * codecs.
+   *
+   * @return {@code this}
+   */
+  <E> EngineBuilder eventCodec(EventChannel<E> channel, Codec<E> codec);
+
+  /**
+   * Journal the injected events and the cycles to memory-mapped segments in {@code directory}
+   *
+   * <p>Events are appended to the mapped segment as they are injected, and the segment is flushed
+   * to the disk once per cycle, before running it. All the channels with subscribers need a codec,
+   * see {@link #eventCodec(EventChannel, Codec)}.
+   *
+   * @return {@code this}
+   */
+  EngineBuilder journalTo(Path directory);
+
   /**
    * Convenience function to apply custom engine transformation while keeping a functional/flowing
    * API
@@ -60,6 +139,29 @@ public interface EngineBuilder {
    */
   EngineBuilder pipe(Function<EngineBuilder, EngineBuilder> transformer);
 
+  /**
+   * Update independent entities at the same time, using {@code forkJoinPool}
+   *
+   * <p>Entities are grouped by level in the dependency graph. The entities of a level are updated
+   * in parallel, and each level waits for the previous one to complete. Element updaters of
+   * different entities may then run concurrently, but an updater is never called concurrently with
+   * itself. By default the engine runs everything on the thread calling {@link Engine#runOnce()}.
+   *
+   * @return {@code this}
+   */
+  EngineBuilder runInParallel(ForkJoinPool forkJoinPool);
+
+  /**
+   * Check and sort the entities once, to create many engines of this definition
+   *
+   * <p>Later changes to this builder don't affect the factory. Engines created by it restore from,
+   * checkpoint and journal to the same paths, so those are better left unset when there are many of
+   * them.
+   *
+   * @return a factory of {@link Engine}
+   */
+  EngineFactory prepare();
+
   /**
    * Assemble the engine into it's runtime implementation
    *
@@ -0,0 +1,13 @@
+package org.aa.olympus.api;
+
+/**
+ * Creates engines of the same definition, see {@link EngineBuilder#prepare()}
+ *
+ * <p>Engines are independent from each other, apart from the element managers and codecs they
+ * share. Those must be thread safe to run the engines in parallel.
+ */
+public interface EngineFactory {
+
+  /** Create a new engine, can be called from any thread */
+  Engine create();
+}
@@ -0,0 +1,286 @@
+package org.aa.olympus.api;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Runs an engine on a dedicated thread, injecting events from any thread
+ *
+ * <p>Cycles run as soon as events come in while the engine is idle. When events keep coming in
+ * while a cycle runs, the next cycle waits for up to {@code maxBatch} events or {@code maxDelay},
+ * whichever comes first, so the cost of a cycle is shared by more events. Between events, the
+ * thread sleeps until the next timer of the engine is due.
+ *
+ * <p>Once started, the engine must only be accessed from the runner thread, through {@link
+ * #submit(Function)}.
+ */
+public final class EngineRunner implements AutoCloseable {
+
+  public static final int DEFAULT_MAX_BATCH = 4096;
+  public static final Duration DEFAULT_MAX_DELAY = Duration.ofNanos(100_000);
+
+  /** Sleeps are cut short, so timers far away don't overflow */
+  private static final Duration MAX_SLEEP = Duration.ofDays(1);
+
+  private static final long MAX_SLEEP_NANOS = MAX_SLEEP.toNanos();
+
+  private final Engine engine;
+  private final int maxBatch;
+  private final long maxDelayNanos;
+  private final Thread thread;
+  /** Events, and tasks which run after the cycle of the events queued before them */
+  private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+  /** Threads between checking the runner is running and queuing their item */
+  private final AtomicInteger offering = new AtomicInteger();
+
+  private volatile boolean running = true;
+  private volatile boolean sleeping = false;
+  /** Set once the runner thread doesn't run tasks any more */
+  private volatile boolean stopped = false;
+
+  private volatile Throwable failure = null;
+  private volatile long cycles = 0;
+
+  private EngineRunner(Engine engine, int maxBatch, Duration maxDelay) {
+    Preconditions.checkArgument(maxBatch > 0, "Invalid batch size %s", maxBatch);
+    Preconditions.checkArgument(!maxDelay.isNegative(), "Invalid delay %s", maxDelay);
+    this.engine = Preconditions.checkNotNull(engine);
+    this.maxBatch = maxBatch;
+    this.maxDelayNanos = maxDelay.toNanos();
+    this.thread = new Thread(this::run, "olympus-runner");
+    this.thread.setDaemon(true);
+  }
+
+  public static EngineRunner start(Engine engine) {
+    return start(engine, DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY);
+  }
+
+  /**
+   * Start running {@code engine} on a new thread
+   *
+   * @param maxBatch the most events injected in a cycle
+   * @param maxDelay how long a cycle waits for more events, when the engine is busy
+   */
+  public static EngineRunner start(Engine engine, int maxBatch, Duration maxDelay) {
+    EngineRunner runner = new EngineRunner(engine, maxBatch, maxDelay);
+    runner.thread.start();
+    return runner;
+  }
+
+  /** Queue an event for one of the next cycles, can be called from any thread */
+  public <E> EngineRunner injectEvent(EventChannel<E> channel, E event) {
+    offer(Olympus.event(channel, Preconditions.checkNotNull(event)));
+    return this;
+  }
+
+  /**
+   * Run {@code task} on the runner thread, after the cycle of the events injected before it
+   *
+   * @return the result of {@code task}
+   */
+  public <T> CompletableFuture<T> submit(Function<? super Engine, ? extends T> task) {
+    Task<T> result = new Task<>(task);
+    offer(result);
+    if (stopped) {
+      // The runner thread may have missed it
+      failTasks();
+    }
+    return result;
+  }
+
+  /** @return the number of cycles run so far */
+  public long getCycleCount() {
+    return cycles;
+  }
+
+  /**
+   * Run the events queued so far, then stop the runner thread
+   *
+   * <p>Events injected from then on are rejected. Waits for the runner thread even if interrupted,
+   * keeping the interrupt flag. Called from a task, it only stops the runner thread: the queued
+   * events run once the task returns.
+   *
+   * @throws IllegalStateException if a cycle failed
+   */
+  @Override
+  public void close() {
+    running = false;
+    if (Thread.currentThread() == thread) {
+      // Joining itself would never return
+      return;
+    }
+    LockSupport.unpark(thread);
+    Uninterruptibles.joinUninterruptibly(thread);
+    if (failure != null) {
+      throw new IllegalStateException("Engine runner failed", failure);
+    }
+  }
+
+  private void checkRunning() {
+    if (failure != null) {
+      throw new IllegalStateException("Engine runner failed", failure);
+    }
+    Preconditions.checkState(running, "Engine runner is closed");
+  }
+
+  /** Queue an item, unless the runner is stopping, in which case it's rejected */
+  private void offer(Object item) {
+    offering.incrementAndGet();
+    try {
+      checkRunning();
+      queue.offer(item);
+    } finally {
+      offering.decrementAndGet();
+    }
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void run() {
+    try {
+      boolean busy = false;
+      while (running) {
+        runTasks();
+        long start = System.nanoTime();
+        int injected = drain(maxBatch);
+        if (injected != 0) {
+          if (busy) {
+            linger(injected, start);
+          }
+          runCycle();
+          busy = queue.peek() != null;
+        } else if (isTimerDue()) {
+          runCycle();
+        } else {
+          busy = false;
+          sleep();
+        }
+      }
+      // Items are either rejected or queued in time for the final drain
+      while (offering.get() != 0) {
+        Thread.yield();
+      }
+      runTasks();
+      while (drain(maxBatch) != 0) {
+        runCycle();
+        runTasks();
+      }
+    } catch (Throwable e) {
+      failure = e;
+      running = false;
+    }
+    stopped = true;
+    failTasks();
+  }
+
+  /** Inject the events at the head of the queue, up to the next task */
+  private int drain(int limit) {
+    int count = 0;
+    for (Object next = queue.peek();
+        count < limit && next != null && !(next instanceof Task);
+        next = queue.peek()) {
+      queue.poll();
+      inject((Event<?>) next);
+      ++count;
+    }
+    return count;
+  }
+
+  private <E> void inject(Event<E> event) {
+    engine.injectEvent(event.getChannel(), event.getValue());
+  }
+
+  /** Wait for more events while the engine is busy, before running a cycle */
+  private void linger(int injected, long start) {
+    long deadline = start + maxDelayNanos;
+    while (injected < maxBatch && System.nanoTime() - deadline < 0) {
+      int count = drain(maxBatch - injected);
+      if (count != 0) {
+        injected += count;
+      } else if (queue.peek() instanceof Task) {
+        break;
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  private void runCycle() {
+    engine.runOnce(now());
+    ++cycles;
+  }
+
+  private void runTasks() {
+    while (queue.peek() instanceof Task) {
+      ((Task<?>) queue.poll()).run();
+    }
+  }
+
+  /** Fail the tasks left once the runner thread stopped */
+  private void failTasks() {
+    IllegalStateException exception =
+        failure != null
+            ? new IllegalStateException("Engine runner failed", failure)
+            : new IllegalStateException("Engine runner is closed");
+    for (Object next = queue.poll(); next != null; next = queue.poll()) {
+      if (next instanceof Task) {
+        ((Task<?>) next).completeExceptionally(exception);
+      }
+    }
+  }
+
+  private boolean isTimerDue() {
+    LocalDateTime timerAt = engine.getNextTimerAt();
+    return timerAt != null && !timerAt.isAfter(now());
+  }
+
+  /** Park until an event or a task comes in, or the next timer is due */
+  private void sleep() {
+    sleeping = true;
+    if (running && queue.isEmpty()) {
+      LocalDateTime timerAt = engine.getNextTimerAt();
+      if (timerAt == null) {
+        LockSupport.park(this);
+      } else {
+        Duration delay = Duration.between(now(), timerAt);
+        LockSupport.parkNanos(
+            this, delay.compareTo(MAX_SLEEP) < 0 ? delay.toNanos() : MAX_SLEEP_NANOS);
+      }
+    }
+    sleeping = false;
+  }
+
+  /** A task to run on the runner thread, completed with its result */
+  private final class Task<T> extends CompletableFuture<T> {
+
+    private final Function<? super Engine, ? extends T> function;
+
+    private Task(Function<? super Engine, ? extends T> function) {
+      this.function = Preconditions.checkNotNull(function);
+    }
+
+    void run() {
+      try {
+        complete(function.apply(engine));
+      } catch (RuntimeException e) {
+        completeExceptionally(e);
+      }
+    }
+  }
+
+  /** The current time, which can't go back before the latest cycle */
+  private LocalDateTime now() {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime latest = engine.getLatestContext().getTime();
+    return now.isBefore(latest) ? latest : now;
+  }
+}
@@ -0,0 +1,13 @@
+package org.aa.olympus.api;
+
+/**
+ * Hashing and equality of element keys, used instead of their {@code hashCode} and {@code equals}
+ *
+ * <p>See {@link EngineBuilder#keyHashing(EntityKey, HashingStrategy)}
+ */
+public interface HashingStrategy<K> {
+
+  int hash(K key);
+
+  boolean equals(K left, K right);
+}
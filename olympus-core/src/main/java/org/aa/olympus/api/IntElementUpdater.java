@@ -0,0 +1,31 @@
+package org.aa.olympus.api;
+
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+
+/**
+ * An {@link ElementUpdater} for entities of {@link Olympus#intKey}, updating the state in place
+ * instead of allocating an {@link UpdateResult} with a boxed state.
+ */
+public interface IntElementUpdater extends ElementUpdater<Integer> {
+
+  /**
+   * Called instead of {@link #update(Object, UpdateContext, Toolbox)}
+   *
+   * @return what {@link IntState#updateInt} or {@link IntState#maybeInt} returned, or another
+   *     status without state, like {@link UpdateStatus#NOT_READY}
+   */
+  UpdateStatus updateInt(IntState state, UpdateContext updateContext, Toolbox toolbox);
+
+  /**
+   * Runs {@link #updateInt} against a boxed state
+   *
+   * <p>The engine calls {@link #updateInt} directly, this is for other callers of the {@link
+   * ElementUpdater} contract.
+   */
+  @Override
+  default UpdateResult<Integer> update(
+      Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+    BoxedState state = new BoxedState(previous);
+    return state.toResult(updateInt(state, updateContext, toolbox));
+  }
+}
@@ -0,0 +1,30 @@
+package org.aa.olympus.api;
+
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+
+/**
+ * An {@link ElementUpdater} for entities of {@link Olympus#longKey}, updating the state in place
+ * instead of allocating an {@link UpdateResult} with a boxed state.
+ */
+public interface LongElementUpdater extends ElementUpdater<Long> {
+
+  /**
+   * Called instead of {@link #update(Object, UpdateContext, Toolbox)}
+   *
+   * @return what {@link LongState#updateLong} or {@link LongState#maybeLong} returned, or another
+   *     status without state, like {@link UpdateStatus#NOT_READY}
+   */
+  UpdateStatus updateLong(LongState state, UpdateContext updateContext, Toolbox toolbox);
+
+  /**
+   * Runs {@link #updateLong} against a boxed state
+   *
+   * <p>The engine calls {@link #updateLong} directly, this is for other callers of the {@link
+   * ElementUpdater} contract.
+   */
+  @Override
+  default UpdateResult<Long> update(Long previous, UpdateContext updateContext, Toolbox toolbox) {
+    BoxedState state = new BoxedState(previous);
+    return state.toResult(updateLong(state, updateContext, toolbox));
+  }
+}
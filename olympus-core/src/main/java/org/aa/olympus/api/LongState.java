@@ -0,0 +1,23 @@
+package org.aa.olympus.api;
+
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+
+/** The state of an element updated by a {@link LongElementUpdater}, stored without boxing */
+public interface LongState {
+
+  /** Whether there's a state from a previous update */
+  boolean hasState();
+
+  /** The state from the previous update, only valid if {@link #hasState()} */
+  long getLong();
+
+  /** Set the new state, returning the status the updater should return */
+  UpdateStatus updateLong(long state);
+
+  /**
+   * Set the new state, returning the status the updater should return
+   *
+   * <p>If it's the same as the previous state, the update won't be propagated
+   */
+  UpdateStatus maybeLong(long state);
+}
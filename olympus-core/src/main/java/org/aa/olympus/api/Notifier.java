@@ -4,5 +4,6 @@ public interface Notifier<K> {
 
   void notifyElement(K elementKey);
 
+  /** Notify all the existing elements, see {@link ElementManager#lazyCreations()} */
   void notifyAllElements();
 }
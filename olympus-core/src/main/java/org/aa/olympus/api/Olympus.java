@@ -4,6 +4,7 @@ import com.google.common.reflect.TypeToken;
 import org.aa.olympus.impl.EngineBuilderImpl;
 import org.aa.olympus.impl.EntityKeyImpl;
 import org.aa.olympus.impl.EventChannelImpl;
+import org.aa.olympus.impl.EventImpl;
 
 /** Gives access to the implementation of the API */
 public final class Olympus {
@@ -31,6 +32,38 @@ public final class Olympus {
     return new EntityKeyImpl<>(name, keyType, TypeToken.of(stateType));
   }
 
+  /**
+   * Key of an entity whose states are stored as primitive doubles
+   *
+   * <p>Its elements should be updated by a {@link DoubleElementUpdater} and read with {@link
+   * ElementView#getDouble()} to avoid boxing.
+   */
+  public static <K> EntityKey<K, Double> doubleKey(String name, TypeToken<K> keyType) {
+    return EntityKeyImpl.doubleKey(name, keyType);
+  }
+
+  public static <K> EntityKey<K, Double> doubleKey(String name, Class<K> keyType) {
+    return doubleKey(name, TypeToken.of(keyType));
+  }
+
+  /** Key of an entity whose states are stored as primitive longs, see {@link #doubleKey} */
+  public static <K> EntityKey<K, Long> longKey(String name, TypeToken<K> keyType) {
+    return EntityKeyImpl.longKey(name, keyType);
+  }
+
+  public static <K> EntityKey<K, Long> longKey(String name, Class<K> keyType) {
+    return longKey(name, TypeToken.of(keyType));
+  }
+
+  /** Key of an entity whose states are stored as primitive ints, see {@link #doubleKey} */
+  public static <K> EntityKey<K, Integer> intKey(String name, TypeToken<K> keyType) {
+    return EntityKeyImpl.intKey(name, keyType);
+  }
+
+  public static <K> EntityKey<K, Integer> intKey(String name, Class<K> keyType) {
+    return intKey(name, TypeToken.of(keyType));
+  }
+
   public static <E> EventChannel<E> channel(String name, TypeToken<E> eventType) {
     return new EventChannelImpl<>(name, eventType);
   }
@@ -38,4 +71,8 @@ public final class Olympus {
   public static <E> EventChannel<E> channel(String name, Class<E> eventType) {
     return new EventChannelImpl<>(name, TypeToken.of(eventType));
   }
+
+  public static <E> Event<E> event(EventChannel<E> channel, E value) {
+    return new EventImpl<>(channel, value);
+  }
 }
@@ -0,0 +1,150 @@
+package org.aa.olympus.api;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Replays independent journals in parallel, each in an engine of its own
+ *
+ * <p>Each partition, for example a trading day, gets a new engine from the factory and replays its
+ * journal, see {@link Engine#replay(Path)}. Its output is then extracted and the engine dropped. At
+ * most {@code parallelism} engines run at the same time.
+ *
+ * @param <R> the type of the output of each partition
+ */
+public final class ReplayHarness<R> {
+
+  private final EngineFactory factory;
+  private final Function<? super Engine, ? extends R> output;
+  private final int parallelism;
+
+  public ReplayHarness(
+      EngineFactory factory, Function<? super Engine, ? extends R> output, int parallelism) {
+    Preconditions.checkArgument(parallelism > 0, "Invalid parallelism %s", parallelism);
+    this.factory = Preconditions.checkNotNull(factory);
+    this.output = Preconditions.checkNotNull(output);
+    this.parallelism = parallelism;
+  }
+
+  /** Merge the outputs of the partitions, in their order */
+  public static <R, T> T merge(List<Partition<R>> partitions, Collector<? super R, ?, T> merger) {
+    return partitions.stream().map(Partition::getOutput).collect(merger);
+  }
+
+  /**
+   * Replay each journal directory in its own engine
+   *
+   * <p>Remaining partitions are cancelled as soon as one fails, and its failure is thrown.
+   *
+   * @return the report of each partition, in the order of {@code journals}
+   */
+  public List<Partition<R>> run(List<Path> journals) throws IOException, InterruptedException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(parallelism, journals.size())),
+            new ThreadFactoryBuilder().setNameFormat("olympus-replay-%d").setDaemon(true).build());
+    try {
+      CompletionService<Partition<R>> completion = new ExecutorCompletionService<>(executor);
+      Map<Future<Partition<R>>, Integer> indexes = new HashMap<>();
+      for (int i = 0; i < journals.size(); ++i) {
+        Path journal = journals.get(i);
+        indexes.put(completion.submit(() -> replay(journal)), i);
+      }
+      // Taken as they complete, so a failure is noticed without waiting for earlier partitions
+      List<Partition<R>> results = new ArrayList<>(Collections.nCopies(journals.size(), null));
+      for (int i = 0; i < journals.size(); ++i) {
+        Future<Partition<R>> future = completion.take();
+        int index = indexes.get(future);
+        results.set(index, get(future, journals.get(index)));
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Partition<R> replay(Path journal) throws IOException {
+    Engine engine = factory.create();
+    long start = System.nanoTime();
+    long events = engine.replay(journal);
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    return new Partition<>(journal, output.apply(engine), events, elapsed);
+  }
+
+  private static <R> Partition<R> get(Future<Partition<R>> future, Path journal)
+      throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw new IOException("Could not replay " + journal, cause);
+      }
+      Throwables.propagateIfPossible(cause);
+      throw new IllegalStateException("Could not replay " + journal, cause);
+    }
+  }
+
+  /** The output of a partition, and how long its replay took */
+  public static final class Partition<R> {
+
+    private final Path journal;
+    private final R output;
+    private final long events;
+    private final Duration elapsed;
+
+    private Partition(Path journal, R output, long events, Duration elapsed) {
+      this.journal = journal;
+      this.output = output;
+      this.events = events;
+      this.elapsed = elapsed;
+    }
+
+    public Path getJournal() {
+      return journal;
+    }
+
+    public R getOutput() {
+      return output;
+    }
+
+    /** @return the number of replayed events */
+    public long getEvents() {
+      return events;
+    }
+
+    /** @return the time spent replaying, excluding the creation of the engine */
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    public double getEventsPerSecond() {
+      long nanos = elapsed.toNanos();
+      return nanos == 0 ? 0.0 : events * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s: %d events in %d ms (%.0f/s)",
+          journal, events, elapsed.toMillis(), getEventsPerSecond());
+    }
+  }
+}
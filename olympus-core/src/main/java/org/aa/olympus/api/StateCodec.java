@@ -0,0 +1,20 @@
+package org.aa.olympus.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads states in a fixed number of bytes, to store them off heap
+ *
+ * <p>States are written and read at an absolute offset, using the absolute methods of {@link
+ * ByteBuffer} only, as buffers are shared by elements updating in parallel. See {@link
+ * EngineBuilder#offHeap(EntityKey, StateCodec)}
+ */
+public interface StateCodec<S> {
+
+  /** The number of bytes of each state */
+  int getSize();
+
+  void write(ByteBuffer buffer, int offset, S state);
+
+  S read(ByteBuffer buffer, int offset);
+}
@@ -1,6 +1,7 @@
 package org.aa.olympus.api;
 
 import com.google.common.annotations.Beta;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -11,11 +12,32 @@ public interface Toolbox {
   /** Give access to a handle to a parent element */
   <K, V> ElementHandle<K, V> get(EntityKey<K, V> entityKey, K elementKey);
 
+  /**
+   * The subscribed handles whose broadcaster updated since the last update, each of them once
+   *
+   * <p>It lets updaters apply changes incrementally instead of going through all their inputs.
+   * Broadcasters that updated while this element could not update are kept until it does.
+   */
+  List<ElementHandle<?, ?>> getUpdatedHandles();
+
   @Beta
   List<Event> getEvents();
 
+  /** The events of {@code channel} since the last update, as a read only view */
   @Beta
   <E> List<E> getEvents(EventChannel<E> channel);
 
+  /** The latest event of {@code channel} since the last update, or null if there's none */
+  @Beta
+  <E> E getLatestEvent(EventChannel<E> channel);
+
   ElementTimer setTimer(LocalDateTime timerAt);
+
+  /**
+   * Set a recurring timer, first triggering at {@code timerAt} and then every {@code period}
+   *
+   * <p>The timer stays {@link TimerState#READY} until it's cancelled. Occurrences missed between
+   * two cycles trigger only once.
+   */
+  ElementTimer setTimer(LocalDateTime timerAt, Duration period);
 }
@@ -58,7 +58,7 @@ public final class UpdateResult<T> {
   }
 
   /** Nothing changed, use the same state don't propage updates */
-  private static <T> UpdateResult<T> unchanged() {
+  static <T> UpdateResult<T> unchanged() {
     return (UpdateResult<T>) NOTHING;
   }
 
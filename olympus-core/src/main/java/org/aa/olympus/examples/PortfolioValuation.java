@@ -1,6 +1,8 @@
 package org.aa.olympus.examples;
 
 import com.google.common.collect.ImmutableSet;
+import org.aa.olympus.api.DoubleElementUpdater;
+import org.aa.olympus.api.DoubleState;
 import org.aa.olympus.api.ElementHandle;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementUpdater;
@@ -12,7 +14,7 @@ import org.aa.olympus.api.Olympus;
 import org.aa.olympus.api.SubscriptionType;
 import org.aa.olympus.api.Toolbox;
 import org.aa.olympus.api.UpdateContext;
-import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
 
 public class PortfolioValuation {
 
@@ -43,14 +45,13 @@ public class PortfolioValuation {
   public static final EventChannel<StringDoublePair> QUANTITY_CHANNEL =
       Olympus.channel("QUANTITY", StringDoublePair.class);
 
-  public static final EntityKey<String, Double> PRICE =
-      Olympus.key("PRICE", String.class, Double.class);
+  public static final EntityKey<String, Double> PRICE = Olympus.doubleKey("PRICE", String.class);
   public static final EntityKey<String, Double> QUANTITY =
-      Olympus.key("QUANTITY", String.class, Double.class);
+      Olympus.doubleKey("QUANTITY", String.class);
   public static final EntityKey<String, Double> VALUATION =
-      Olympus.key("VALUATION", String.class, Double.class);
+      Olympus.doubleKey("VALUATION", String.class);
 
-  public static final class ValuationUpdater implements ElementUpdater<Double> {
+  public static final class ValuationUpdater implements DoubleElementUpdater {
 
     private final ElementHandle<String, Double> hello;
     private final ElementHandle<String, Double> world;
@@ -62,9 +63,9 @@ public class PortfolioValuation {
     }
 
     @Override
-    public UpdateResult<Double> update(
-        Double previous, UpdateContext updateContext, Toolbox toolbox) {
-      return UpdateResult.maybe(hello.getState() + world.getState());
+    public UpdateStatus updateDouble(
+        DoubleState state, UpdateContext updateContext, Toolbox toolbox) {
+      return state.maybeDouble(hello.getDouble() + world.getDouble());
     }
 
     @Override
@@ -1,5 +1,6 @@
 package org.aa.olympus.examples;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import java.util.ArrayList;
@@ -13,6 +14,7 @@ import org.aa.olympus.api.Engine;
 import org.aa.olympus.api.EngineBuilder;
 import org.aa.olympus.api.EntityKey;
 import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.HashingStrategy;
 import org.aa.olympus.api.Notifier;
 import org.aa.olympus.api.Olympus;
 import org.aa.olympus.api.Toolbox;
@@ -37,21 +39,39 @@ public class PositionTracking {
     return new PositionKey(product, maturity, account);
   }
 
+  /** Compares the hashes first, as they're computed once per key */
+  static final HashingStrategy<PositionKey> POSITION_KEY_HASHING =
+      new HashingStrategy<PositionKey>() {
+        @Override
+        public int hash(PositionKey key) {
+          return key.hash;
+        }
+
+        @Override
+        public boolean equals(PositionKey left, PositionKey right) {
+          return left.hash == right.hash && left.equals(right);
+        }
+      };
+
   static final class PositionKey {
 
     final String product;
     final String maturity;
     final String account;
+    private final int hash;
 
     PositionKey(String product, String maturity, String account) {
       this.product = product;
       this.maturity = maturity;
       this.account = account;
+      this.hash =
+          31 * (31 * Objects.hashCode(product) + Objects.hashCode(maturity))
+              + Objects.hashCode(account);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(product, maturity, account);
+      return hash;
     }
 
     @Override
@@ -90,6 +110,10 @@ public class PositionTracking {
         new PositionManager(ACCOUNT, p -> new PositionKey(null, null, null)),
         ImmutableSet.of(ACCOUNT));
 
+    for (EntityKey<PositionKey, Integer> entityKey :
+        ImmutableList.of(POSITION, PRODUCT_ACCOUNT, ACCOUNT, COMPANY)) {
+      engineBuilder.keyHashing(entityKey, POSITION_KEY_HASHING);
+    }
     return engineBuilder.build();
   }
 
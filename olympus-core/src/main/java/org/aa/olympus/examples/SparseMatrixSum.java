@@ -4,9 +4,8 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.Map;
 import org.aa.olympus.api.ElementHandle;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementUpdater;
@@ -74,7 +73,7 @@ public class SparseMatrixSum {
 
     @Override
     public int hashCode() {
-      return Objects.hash(row, col);
+      return 31 * row + col;
     }
   }
 
@@ -121,10 +120,12 @@ public class SparseMatrixSum {
     }
   }
 
+  /** Sums its elements, applying the changes of the elements that updated since the last time */
   private static final class Aggregator implements ElementUpdater<Integer> {
 
     private final EntityKey<Position, Integer> elementsEntity;
-    private final List<ElementHandle<Position, Integer>> elements = new ArrayList<>();
+    private final Map<ElementHandle<Position, Integer>, Integer> values = new HashMap<>();
+    private int sum = 0;
 
     private Aggregator(EntityKey<Position, Integer> elementsEntity) {
       this.elementsEntity = elementsEntity;
@@ -133,12 +134,17 @@ public class SparseMatrixSum {
     @Override
     public UpdateResult<Integer> update(
         Integer previous, UpdateContext updateContext, Toolbox toolbox) {
-      return UpdateResult.update(elements.stream().mapToInt(ElementHandle::getState).sum());
+      for (ElementHandle<?, ?> updated : toolbox.getUpdatedHandles()) {
+        ElementHandle<Position, Integer> element = elementsEntity.castHandle(updated);
+        Integer previousValue = values.put(element, element.getState());
+        sum += element.getState() - (previousValue == null ? 0 : previousValue);
+      }
+      return UpdateResult.update(sum);
     }
 
     @Override
     public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
-      elements.add(elementsEntity.castHandle(handle).subscribe(SubscriptionType.STRONG));
+      elementsEntity.castHandle(handle).subscribe(SubscriptionType.STRONG);
       return true;
     }
   }
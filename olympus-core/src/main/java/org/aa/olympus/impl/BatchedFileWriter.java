@@ -0,0 +1,88 @@
+package org.aa.olympus.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Writes records to a {@link FileChannel}, batching them in a direct buffer
+ *
+ * <p>The batch is written to the channel when the next record doesn't fit. Records bigger than the
+ * batch make it grow, twice as big.
+ */
+final class BatchedFileWriter implements RecordWriter, Closeable {
+
+  static final int BATCH_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+  /** Bytes already written to the channel */
+  private long written = 0;
+
+  private ByteBuffer batch;
+
+  BatchedFileWriter(Path path) throws IOException {
+    this.channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    this.batch = ByteBuffer.allocateDirect(BATCH_SIZE).order(ByteOrder.nativeOrder());
+  }
+
+  /** The position in the file where the next record goes */
+  long position() {
+    return written + batch.position();
+  }
+
+  @Override
+  public void write(Consumer<? super ByteBuffer> record) throws IOException {
+    while (true) {
+      int start = batch.position();
+      try {
+        batch.putInt(0);
+        record.accept(batch);
+        batch.putInt(start, batch.position() - start - Integer.BYTES);
+        return;
+      } catch (BufferOverflowException e) {
+        ((Buffer) batch).position(start);
+        if (start == 0) {
+          batch = ByteBuffer.allocateDirect(batch.capacity() * 2).order(ByteOrder.nativeOrder());
+        } else {
+          flush();
+        }
+      }
+    }
+  }
+
+  private void flush() throws IOException {
+    // Through Buffer, ByteBuffer only overrides these from Java 9
+    ((Buffer) batch).flip();
+    while (batch.hasRemaining()) {
+      written += channel.write(batch);
+    }
+    ((Buffer) batch).clear();
+  }
+
+  /** Write the batch and flush the file to the disk */
+  void force() throws IOException {
+    flush();
+    channel.force(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      force();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.aa.olympus.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the units of an entity that changed during each of the latest cycles.
+ *
+ * <p>It's a ring of {@link #HISTORY} logs, indexed by update id. Each log is reused when the cycle
+ * it's recording falls out of the history.
+ */
+final class ChangeLog<K, S> {
+
+  static final int HISTORY = 16;
+
+  private final int[] updateIds = new int[HISTORY];
+  private final List<List<ElementUnit<K, S>>> logs = new ArrayList<>(HISTORY);
+
+  ChangeLog() {
+    for (int i = 0; i < HISTORY; ++i) {
+      updateIds[i] = -1;
+      logs.add(new ArrayList<>());
+    }
+  }
+
+  /** Record the units of {@code candidates} that updated during the cycle {@code updateId} */
+  void record(int updateId, List<ElementUnit<K, S>> candidates) {
+    int index = Math.floorMod(updateId, HISTORY);
+    List<ElementUnit<K, S>> log = logs.get(index);
+    log.clear();
+    for (int i = 0; i < candidates.size(); ++i) {
+      ElementUnit<K, S> unit = candidates.get(i);
+      if (unit.getUpdateId() == updateId) {
+        log.add(unit);
+      }
+    }
+    updateIds[index] = updateId;
+  }
+
+  /**
+   * Call {@code consumer} for each unit that updated after {@code previousId}, up to {@code
+   * latestId}
+   *
+   * @return the number of units, or -1 if the history doesn't go back to {@code previousId}
+   */
+  int forEachSince(int previousId, int latestId, Consumer<? super ElementUnit<K, S>> consumer) {
+    if (latestId - previousId > HISTORY) {
+      return -1;
+    }
+    for (int updateId = previousId + 1; updateId <= latestId; ++updateId) {
+      if (updateIds[Math.floorMod(updateId, HISTORY)] != updateId) {
+        return -1;
+      }
+    }
+    int count = 0;
+    for (int updateId = previousId + 1; updateId <= latestId; ++updateId) {
+      List<ElementUnit<K, S>> log = logs.get(Math.floorMod(updateId, HISTORY));
+      for (int i = 0; i < log.size(); ++i) {
+        ElementUnit<K, S> unit = log.get(i);
+        // Units that updated again later are reported with their latest cycle
+        if (unit.getUpdateId() == updateId) {
+          consumer.accept(unit);
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+}
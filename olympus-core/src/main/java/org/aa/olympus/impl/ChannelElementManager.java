@@ -1,7 +1,9 @@
 package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
+import java.util.List;
 import java.util.function.Function;
+import org.aa.olympus.api.BatchNotifier;
 import org.aa.olympus.api.ElementHandle;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementUpdater;
@@ -40,6 +42,17 @@ public final class ChannelElementManager<E, K, S> implements ElementManager<K, S
     notifier.notifyElement(key);
   }
 
+  @Override
+  @SuppressWarnings("unchecked") // the channel is checked
+  public <E2> void onEvents(
+      EventChannel<E2> channel, List<E2> events, BatchNotifier<K, E2> notifier) {
+    Preconditions.checkArgument(channel.equals(eventChannel));
+    for (int i = 0; i < events.size(); ++i) {
+      E2 event = events.get(i);
+      notifier.notifyElement(keyExtractor.apply((E) event), event);
+    }
+  }
+
   private static final class ChannelElementUpdater<E, K, S> implements ElementUpdater<S> {
 
     private final EventChannel<E> eventChannel;
@@ -52,11 +65,7 @@ public final class ChannelElementManager<E, K, S> implements ElementManager<K, S
 
     @Override
     public UpdateResult<S> update(S previous, UpdateContext updateContext, Toolbox toolbox) {
-      E latest = null;
-      for (Event event : toolbox.getEvents()) {
-        Preconditions.checkArgument(event.getChannel().equals(eventChannel));
-        latest = eventChannel.castEvent(event);
-      }
+      E latest = toolbox.getLatestEvent(eventChannel);
       Preconditions.checkNotNull(latest, "Latest shouldn't be null");
       return UpdateResult.update(extractor.apply(latest));
     }
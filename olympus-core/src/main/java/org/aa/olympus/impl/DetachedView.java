@@ -0,0 +1,101 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementView;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.UpdateContext;
+
+/**
+ * A view of an element by key, it doesn't create the element
+ *
+ * <p>It's a {@link ElementStatus#SHADOW} until the element gets created, and then follows it. Once
+ * the element is evicted, it shows it as {@link ElementStatus#DELETED} until it gets created again.
+ */
+final class DetachedView<K, S> implements ElementView<K, S> {
+
+  private final EntityManager<K, S> entityManager;
+  private final K key;
+  // The latest unit of the element, possibly evicted
+  private ElementUnit<K, S> latest;
+
+  DetachedView(EntityManager<K, S> entityManager, K key) {
+    this.entityManager = entityManager;
+    this.key = key;
+    this.latest = entityManager.find(key);
+  }
+
+  private ElementUnit<K, S> find() {
+    if (latest == null || latest.isEvicted()) {
+      ElementUnit<K, S> found = entityManager.find(key);
+      if (found != null) {
+        latest = found;
+      }
+    }
+    return latest;
+  }
+
+  @Override
+  public EntityKey<K, S> getEntityKey() {
+    return entityManager.getKey();
+  }
+
+  @Override
+  public K getKey() {
+    return key;
+  }
+
+  @Override
+  public S getState() {
+    ElementUnit<K, S> unit = find();
+    return unit == null ? null : unit.getState();
+  }
+
+  @Override
+  public S getStateOrDefault(S defaultState) {
+    ElementUnit<K, S> unit = find();
+    return unit == null ? defaultState : unit.getStateOrDefault(defaultState);
+  }
+
+  @Override
+  public ElementStatus getStatus() {
+    ElementUnit<K, S> unit = find();
+    return unit == null ? ElementStatus.SHADOW : unit.getStatus();
+  }
+
+  @Override
+  public double getDouble() {
+    return get().getDouble();
+  }
+
+  @Override
+  public long getLong() {
+    return get().getLong();
+  }
+
+  @Override
+  public int getInt() {
+    return get().getInt();
+  }
+
+  @Override
+  public UpdateContext getUpdateContext() {
+    ElementUnit<K, S> unit = find();
+    return unit == null ? UpdateContextImpl.NONE : unit.getUpdateContext();
+  }
+
+  private ElementUnit<K, S> get() {
+    ElementUnit<K, S> unit = find();
+    Preconditions.checkState(unit != null, "%s has no state", this);
+    return unit;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("entityKey", getEntityKey())
+        .add("key", key)
+        .toString();
+  }
+}
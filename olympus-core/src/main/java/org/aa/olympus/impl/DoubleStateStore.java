@@ -0,0 +1,45 @@
+package org.aa.olympus.impl;
+
+import java.util.Arrays;
+
+/** Stores states as primitive doubles */
+final class DoubleStateStore extends StateStore<Double> {
+
+  // Volatile so readers see the pages the writer added
+  private volatile double[][] pages = new double[0][];
+
+  @Override
+  void addPage(int page) {
+    double[][] current = pages;
+    if (page == current.length) {
+      current = Arrays.copyOf(current, Math.max(4, page * 2));
+    }
+    current[page] = new double[PAGE_SIZE];
+    pages = current;
+  }
+
+  @Override
+  Double get(int slot) {
+    return getDouble(slot);
+  }
+
+  @Override
+  void set(int slot, Double state) {
+    setDouble(slot, state);
+  }
+
+  @Override
+  void clear(int slot) {
+    setDouble(slot, 0);
+  }
+
+  @Override
+  double getDouble(int slot) {
+    return pages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+  }
+
+  @Override
+  void setDouble(int slot, double state) {
+    pages[slot >>> PAGE_BITS][slot & PAGE_MASK] = state;
+  }
+}
@@ -12,6 +12,16 @@ final class ElementHandleAdapter<K, S> implements ElementHandle<K, S> {
   private final ElementUnit<K, S> broadcaster;
   private final ElementUnit subscriber;
   private SubscriptionType subscriptionType;
+  // Position in the broadcaster's subscribers, or -1 if not subscribed
+  private int subscriberIndex = -1;
+  // In the subscriber's updated handles, guarded by the subscriber
+  private boolean pending = false;
+  // Passed to the subscriber's updater as a new element
+  private boolean announced = false;
+  // Kept by the subscriber, and counted as a reference by the broadcaster
+  private boolean interned = false;
+  // The handle kept by the subscriber, if this one was passed to the updater without being kept
+  private ElementHandleAdapter<K, S> delegate = null;
 
   ElementHandleAdapter(ElementUnit<K, S> broadcaster, ElementUnit subscriber) {
     this.broadcaster = broadcaster;
@@ -19,6 +29,42 @@ final class ElementHandleAdapter<K, S> implements ElementHandle<K, S> {
     this.subscriptionType = SubscriptionType.NONE;
   }
 
+  ElementUnit<K, S> getBroadcaster() {
+    return broadcaster;
+  }
+
+  ElementUnit getSubscriber() {
+    return subscriber;
+  }
+
+  boolean isPending() {
+    return pending;
+  }
+
+  void setPending(boolean pending) {
+    this.pending = pending;
+  }
+
+  boolean isAnnounced() {
+    return announced;
+  }
+
+  void setAnnounced() {
+    this.announced = true;
+  }
+
+  void setInterned() {
+    this.interned = true;
+  }
+
+  int getSubscriberIndex() {
+    return subscriberIndex;
+  }
+
+  void setSubscriberIndex(int subscriberIndex) {
+    this.subscriberIndex = subscriberIndex;
+  }
+
   @Override
   public EntityKey<K, S> getEntityKey() {
     return broadcaster.getEntityKey();
@@ -34,6 +80,21 @@ final class ElementHandleAdapter<K, S> implements ElementHandle<K, S> {
     return broadcaster.getState();
   }
 
+  @Override
+  public double getDouble() {
+    return broadcaster.getDouble();
+  }
+
+  @Override
+  public long getLong() {
+    return broadcaster.getLong();
+  }
+
+  @Override
+  public int getInt() {
+    return broadcaster.getInt();
+  }
+
   @Override
   public ElementStatus getStatus() {
     return broadcaster.getStatus();
@@ -51,26 +112,65 @@ final class ElementHandleAdapter<K, S> implements ElementHandle<K, S> {
 
   @Override
   public SubscriptionType getSubscriptionType() {
-    return subscriptionType;
+    ElementHandleAdapter<K, S> kept = getKept();
+    return kept != null && kept != this ? kept.getSubscriptionType() : subscriptionType;
+  }
+
+  /**
+   * The handle kept by the subscriber for the broadcaster: this one, or the one this handle acts as
+   * since the subscriber looked up the broadcaster, or null
+   */
+  private ElementHandleAdapter<K, S> getKept() {
+    if (!interned && delegate == null) {
+      delegate = subscriber.findHandle(broadcaster);
+      if (delegate != null && announced) {
+        delegate.setAnnounced();
+      }
+    }
+    return interned ? this : delegate;
+  }
+
+  /** Forget the subscription, when the broadcaster or the subscriber is evicted */
+  void detach() {
+    this.subscriptionType = SubscriptionType.NONE;
+    this.subscriberIndex = -1;
   }
 
   @Override
   public ElementHandle<K, S> subscribe(SubscriptionType subscriptionType) {
+    ElementHandleAdapter<K, S> kept = getKept();
+    if (kept != null && kept != this) {
+      return kept.subscribe(subscriptionType);
+    }
+    if (broadcaster.isEvicted()) {
+      // The broadcaster will never update again
+      return this;
+    }
+    if (kept == null) {
+      if (subscriptionType == SubscriptionType.NONE) {
+        // Handles that aren't kept are never subscribed, there's nothing to undo
+        return this;
+      }
+      subscriber.intern(this);
+    }
     if (subscriptionType != this.subscriptionType) {
       switch (subscriptionType) {
         case STRONG:
         case OPTIONAL:
           broadcaster.updateSubscriber(this, true);
-          subscriber.updateBroadcaster(this, true);
           break;
         case NONE:
         case WEAK:
           broadcaster.updateSubscriber(this, false);
-          subscriber.updateBroadcaster(this, false);
           break;
         default:
           throw new UnsupportedValueException(SubscriptionType.class, subscriptionType);
       }
+      if (this.subscriptionType == SubscriptionType.STRONG) {
+        subscriber.countBroadcaster(broadcaster.getStatus(), -1);
+      } else if (subscriptionType == SubscriptionType.STRONG) {
+        subscriber.countBroadcaster(broadcaster.getStatus(), 1);
+      }
       this.subscriptionType = subscriptionType;
     }
     return this;
@@ -87,7 +187,7 @@ final class ElementHandleAdapter<K, S> implements ElementHandle<K, S> {
   }
 
   public void stain() {
-    this.subscriber.stain();
+    this.subscriber.stain(this);
   }
 
   @Override
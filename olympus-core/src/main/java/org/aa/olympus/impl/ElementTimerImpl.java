@@ -1,28 +1,36 @@
 package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
 import org.aa.olympus.api.ElementTimer;
 import org.aa.olympus.api.TimerState;
 
 public class ElementTimerImpl implements ElementTimer {
 
   private final ElementUnit unit;
-  private final LocalDateTime timerAt;
+  private final Duration period;
   private final TimerStore timerStore;
-  private final List<ElementTimerImpl> timers;
+  private LocalDateTime timerAt;
   private TimerState state;
 
-  public ElementTimerImpl(
+  // Position in the TimerStore, managed by the store
+  long deadline;
+  int bucket;
+  ElementTimerImpl previous;
+  ElementTimerImpl next;
+
+  ElementTimerImpl(
       ElementUnit unit,
       LocalDateTime timerAt,
-      TimerStore timerStore,
-      List<ElementTimerImpl> timers) {
+      long deadline,
+      Duration period,
+      TimerStore timerStore) {
     this.unit = unit;
     this.timerAt = timerAt;
+    this.deadline = deadline;
+    this.period = period;
     this.timerStore = timerStore;
-    this.timers = timers;
     this.state = TimerState.READY;
   }
 
@@ -35,21 +43,33 @@ public class ElementTimerImpl implements ElementTimer {
         TimerState.class.getSimpleName(),
         this.state);
 
-    boolean removed = this.timers.remove(this);
-    if (!removed) {
-      throw new RuntimeException("Timer already expired/cancel");
-    }
-    if (this.timers.isEmpty()) {
-      timerStore.removeSlot(this.timerAt);
-    }
+    timerStore.cancel(this);
     this.state = TimerState.CANCELLED;
   }
 
+  @Override
+  public void reschedule(LocalDateTime timerAt) {
+    boolean tracked = state == TimerState.READY;
+    timerStore.reschedule(this, timerAt);
+    if (!tracked) {
+      unit.addTimer(this);
+    }
+  }
+
   @Override
   public LocalDateTime getTimerAt() {
     return timerAt;
   }
 
+  @Override
+  public Duration getPeriod() {
+    return period;
+  }
+
+  boolean isRecurring() {
+    return !period.isZero();
+  }
+
   @Override
   public TimerState getState() {
     return state;
@@ -60,4 +80,11 @@ public class ElementTimerImpl implements ElementTimer {
     unit.stain();
     state = TimerState.TRIGGERED;
   }
+
+  /** Called by the {@link TimerStore} when the timer is set again */
+  void moveTo(LocalDateTime timerAt, long deadline) {
+    this.timerAt = timerAt;
+    this.deadline = deadline;
+    this.state = TimerState.READY;
+  }
 }
@@ -2,14 +2,18 @@ package org.aa.olympus.impl;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.aa.olympus.api.DoubleElementUpdater;
+import org.aa.olympus.api.DoubleState;
 import org.aa.olympus.api.ElementHandle;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementStatus;
@@ -17,58 +21,110 @@ import org.aa.olympus.api.ElementUpdater;
 import org.aa.olympus.api.ElementView;
 import org.aa.olympus.api.EntityKey;
 import org.aa.olympus.api.Event;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.IntElementUpdater;
+import org.aa.olympus.api.IntState;
+import org.aa.olympus.api.LongElementUpdater;
+import org.aa.olympus.api.LongState;
 import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.TimerState;
 import org.aa.olympus.api.UpdateContext;
 import org.aa.olympus.api.UpdateResult;
 import org.aa.olympus.api.UpdateResult.UpdateStatus;
 
-final class ElementUnit<K, S> implements ElementView<K, S> {
+final class ElementUnit<K, S> implements ElementView<K, S>, DoubleState, LongState, IntState {
 
-  private final EngineContext engineContext;
-  private final EntityKey<K, S> entityKey;
+  private static final AtomicIntegerFieldUpdater<ElementUnit> NOTIFICATIONS =
+      AtomicIntegerFieldUpdater.newUpdater(ElementUnit.class, "notifications");
+  private static final AtomicIntegerFieldUpdater<ElementUnit> NOT_READY_BROADCASTERS =
+      AtomicIntegerFieldUpdater.newUpdater(ElementUnit.class, "notReadyBroadcasters");
+  private static final AtomicIntegerFieldUpdater<ElementUnit> FAILED_BROADCASTERS =
+      AtomicIntegerFieldUpdater.newUpdater(ElementUnit.class, "failedBroadcasters");
+  private static final AtomicIntegerFieldUpdater<ElementUnit> REFERENCES =
+      AtomicIntegerFieldUpdater.newUpdater(ElementUnit.class, "references");
+
+  private static final ElementHandleAdapter[] NO_HANDLES = new ElementHandleAdapter[0];
+  /** Above this number of handles, they're looked up through a hash index */
+  private static final int HANDLE_SCAN_LIMIT = 8;
+
+  private final EntityManager<K, S> entityManager;
   private final K key;
-  private final Set<ElementHandleAdapter> broadcasters = new HashSet<>();
-  private final Set<ElementHandleAdapter<K, S>> subscribers = new HashSet<>();
+  // Of the state in the entity's store
+  private final int slot;
+  // Handles of other units to this one, that are subscribed, in no particular order
+  private ElementHandleAdapter[] subscribers = NO_HANDLES;
+  private int subscriberCount = 0;
+  // Handles of this unit to its broadcasters that it looked up or subscribed to, one per
+  // broadcaster, in order of creation
+  private ElementHandleAdapter[] handles = NO_HANDLES;
+  private int handleCount = 0;
+  private Map<ElementUnit, ElementHandleAdapter> handleIndex = null;
   private ElementUpdater<S> updater;
   private ElementStatus status;
-  private S state;
-  private int notifications;
+  // STRONG broadcasters that aren't ready or have failed, updated as they change status
+  private volatile int notReadyBroadcasters = 0;
+  private volatile int failedBroadcasters = 0;
+  // Handles of other units to this one that they keep, subscribed or not
+  private volatile int references = 0;
+  // Dropped by its entity, it doesn't update anymore
+  private boolean evicted = false;
+  // Queued by its entity to be written in the next checkpoint
+  private boolean unsaved = false;
+  // Broadcasters from different entities may stain the same unit concurrently
+  private volatile int notifications;
   private UpdateContext updateContext = UpdateContextImpl.NONE;
-  private final List<Event> pendingEvents = new ArrayList<>();
-  private final LinkedHashSet<ElementUnit> pendingCreations = new LinkedHashSet<>();
+  // Allocated on the first event
+  private PendingEvents pendingEvents = null;
+  // Handles that stained this unit since its updater last ran, allocated on first use and reused
+  private List<ElementHandle<?, ?>> updatedHandles = null;
+  // Creations targeted at this unit, allocated on first use
+  private LinkedHashSet<ElementUnit> pendingCreations = null;
+  // Lazy creations of the entity this unit has been passed, or didn't need
+  private int creationsSeen;
+  // Allocated with the updater
   private ToolboxImpl toolbox;
+  // Timers set by the updater, allocated on the first one
+  private List<ElementTimerImpl> timers = null;
 
-  ElementUnit(
-      EngineContext engineContext,
-      TimerStore timerStore,
-      EntityKey<K, S> entityKey,
-      K key,
-      ImmutableMap<EntityKey, EntityManager> dependencies) {
-    this.engineContext = engineContext;
-    this.entityKey = entityKey;
+  ElementUnit(EntityManager<K, S> entityManager, K key, int slot) {
+    this.entityManager = entityManager;
     this.key = key;
+    this.slot = slot;
     this.updater = null;
-    this.toolbox =
-        new ToolboxImpl(
-            timerStore, dependencies, this, Collections.unmodifiableList(pendingEvents));
     status = ElementStatus.SHADOW;
+    this.creationsSeen = entityManager.getLazyCreationCount();
   }
 
   void createUpdater(ElementManager<K, S> elementManager) {
     Preconditions.checkState(this.updater == null);
-    updater = elementManager.create(key, engineContext.getLatestContext(), toolbox);
+    toolbox = new ToolboxImpl(this);
+    updater = elementManager.create(key, getEngineContext().getLatestContext(), toolbox);
     Preconditions.checkNotNull(
         updater,
         "%s cannot refuse to create a %s for %s:%s",
         ElementManager.class.getSimpleName(),
         ElementUpdater.class.getSimpleName(),
-        entityKey,
+        getEntityKey(),
         key);
-    this.status = ElementStatus.CREATED;
+    setStatus(ElementStatus.CREATED);
+    // SHADOW units aren't passed creations
+    creationsSeen = entityManager.getLazyCreationCount();
+  }
+
+  ElementUpdater<S> getUpdater() {
+    return updater;
+  }
+
+  EntityManager<K, S> getEntityManager() {
+    return entityManager;
+  }
+
+  private EngineContext getEngineContext() {
+    return entityManager.getEngineContext();
   }
 
   public EntityKey<K, S> getEntityKey() {
-    return entityKey;
+    return entityManager.getKey();
   }
 
   public K getKey() {
@@ -79,8 +135,104 @@ final class ElementUnit<K, S> implements ElementView<K, S> {
     return status;
   }
 
+  int getSlot() {
+    return slot;
+  }
+
+  /** @return true if this wasn't already unsaved */
+  boolean markUnsaved() {
+    boolean marked = !unsaved;
+    unsaved = true;
+    return marked;
+  }
+
+  void clearUnsaved() {
+    unsaved = false;
+  }
+
+  boolean isEvicted() {
+    return evicted;
+  }
+
   public S getState() {
-    return state;
+    return status == ElementStatus.OK ? getStates().get(slot) : null;
+  }
+
+  private StateStore<S> getStates() {
+    return entityManager.getStateStore();
+  }
+
+  @Override
+  public boolean hasState() {
+    return status == ElementStatus.OK;
+  }
+
+  private void checkHasState() {
+    Preconditions.checkState(status == ElementStatus.OK, "%s has no state", this);
+  }
+
+  @Override
+  public double getDouble() {
+    checkHasState();
+    return getStates().getDouble(slot);
+  }
+
+  @Override
+  public UpdateStatus updateDouble(double state) {
+    getStates().setDouble(slot, state);
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeDouble(double state) {
+    if (status == ElementStatus.OK
+        && Double.doubleToLongBits(getStates().getDouble(slot)) == Double.doubleToLongBits(state)) {
+      return UpdateStatus.NOTHING;
+    } else {
+      return updateDouble(state);
+    }
+  }
+
+  @Override
+  public long getLong() {
+    checkHasState();
+    return getStates().getLong(slot);
+  }
+
+  @Override
+  public UpdateStatus updateLong(long state) {
+    getStates().setLong(slot, state);
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeLong(long state) {
+    if (status == ElementStatus.OK && getStates().getLong(slot) == state) {
+      return UpdateStatus.NOTHING;
+    } else {
+      return updateLong(state);
+    }
+  }
+
+  @Override
+  public int getInt() {
+    checkHasState();
+    return getStates().getInt(slot);
+  }
+
+  @Override
+  public UpdateStatus updateInt(int state) {
+    getStates().setInt(slot, state);
+    return UpdateStatus.UPDATED;
+  }
+
+  @Override
+  public UpdateStatus maybeInt(int state) {
+    if (status == ElementStatus.OK && getStates().getInt(slot) == state) {
+      return UpdateStatus.NOTHING;
+    } else {
+      return updateInt(state);
+    }
   }
 
   int getNotifications() {
@@ -90,7 +242,7 @@ final class ElementUnit<K, S> implements ElementView<K, S> {
   @Override
   public S getStateOrDefault(S defaultState) {
     if (status == ElementStatus.OK) {
-      return state;
+      return getStates().get(slot);
     } else {
       return defaultState;
     }
@@ -104,156 +256,582 @@ final class ElementUnit<K, S> implements ElementView<K, S> {
     return updateContext;
   }
 
-  ElementHandleAdapter<K, S> createHandleAdapter(ElementUnit subscriber) {
-    return new ElementHandleAdapter<>(this, subscriber);
+  /**
+   * Get the handle of this unit to {@code broadcaster}, creating it on the first call
+   *
+   * <p>Only the subscriber uses its handles, from its own update or creation callbacks
+   */
+  <KB, SB> ElementHandleAdapter<KB, SB> getHandle(ElementUnit<KB, SB> broadcaster) {
+    ElementHandleAdapter<KB, SB> handle = findHandle(broadcaster);
+    return handle != null ? handle : addHandle(new ElementHandleAdapter<>(broadcaster, this));
+  }
+
+  /**
+   * Keep {@code handle}, which was passed to the updater without being kept, unless this unit
+   * already has a handle to the same broadcaster
+   *
+   * @return the handle that's kept
+   */
+  <KB, SB> ElementHandleAdapter<KB, SB> intern(ElementHandleAdapter<KB, SB> handle) {
+    ElementHandleAdapter<KB, SB> existing = findHandle(handle.getBroadcaster());
+    return existing != null ? existing : addHandle(handle);
+  }
+
+  /**
+   * The handle to pass to the updater for a new element: the kept one if this unit already looked
+   * up the element, or one that's only kept once subscribed
+   */
+  private <KB, SB> ElementHandleAdapter<KB, SB> getAnnouncedHandle(ElementUnit<KB, SB> creation) {
+    ElementHandleAdapter<KB, SB> handle = findHandle(creation);
+    return handle != null ? handle : new ElementHandleAdapter<>(creation, this);
+  }
+
+  /** The handle of this unit to {@code broadcaster}, or null if it doesn't keep one */
+  @SuppressWarnings("unchecked") // handles are indexed by broadcaster
+  <KB, SB> ElementHandleAdapter<KB, SB> findHandle(ElementUnit<KB, SB> broadcaster) {
+    if (handleIndex != null) {
+      return handleIndex.get(broadcaster);
+    }
+    for (int i = 0; i < handleCount; ++i) {
+      if (handles[i].getBroadcaster() == broadcaster) {
+        return handles[i];
+      }
+    }
+    return null;
+  }
+
+  private <KB, SB> ElementHandleAdapter<KB, SB> addHandle(ElementHandleAdapter<KB, SB> handle) {
+    ElementUnit<KB, SB> broadcaster = handle.getBroadcaster();
+    handle.setInterned();
+    REFERENCES.incrementAndGet(broadcaster);
+    if (handleCount == handles.length) {
+      pruneHandles();
+    }
+    if (handleCount == handles.length) {
+      handles = Arrays.copyOf(handles, Math.max(2, handleCount * 2));
+    }
+    handles[handleCount++] = handle;
+    if (handleIndex != null) {
+      handleIndex.put(broadcaster, handle);
+    } else if (handleCount > HANDLE_SCAN_LIMIT) {
+      handleIndex = new HashMap<>();
+      for (int i = 0; i < handleCount; ++i) {
+        handleIndex.put(handles[i].getBroadcaster(), handles[i]);
+      }
+    }
+    return handle;
+  }
+
+  /** Drop the handles to evicted broadcasters, keeping the order of the others */
+  private void pruneHandles() {
+    int kept = 0;
+    for (int i = 0; i < handleCount; ++i) {
+      ElementHandleAdapter handle = handles[i];
+      if (handle.getBroadcaster().isEvicted()) {
+        if (handleIndex != null) {
+          handleIndex.remove(handle.getBroadcaster());
+        }
+      } else {
+        handles[kept++] = handle;
+      }
+    }
+    Arrays.fill(handles, kept, handleCount, null);
+    handleCount = kept;
   }
 
+  /** Flag the unit for update, queuing it in its entity on the first notification of the cycle */
   void stain() {
-    ++notifications;
+    if (NOTIFICATIONS.getAndIncrement(this) == 0) {
+      entityManager.markDirty(this);
+    }
+  }
+
+  /** Flag the unit for update, recording the handle of the broadcaster that updated */
+  void stain(ElementHandleAdapter handle) {
+    addUpdatedHandle(handle);
+    stain();
+  }
+
+  private void addUpdatedHandle(ElementHandleAdapter handle) {
+    // Only the broadcaster of the handle stains through it
+    if (!handle.isPending()) {
+      handle.setPending(true);
+      if (entityManager.getEngineContext().isParallel()) {
+        synchronized (this) {
+          appendUpdatedHandle(handle);
+        }
+      } else {
+        appendUpdatedHandle(handle);
+      }
+    }
+  }
+
+  private void appendUpdatedHandle(ElementHandleAdapter handle) {
+    if (updatedHandles == null) {
+      updatedHandles = new ArrayList<>();
+    }
+    updatedHandles.add(handle);
+  }
+
+  /** The handles that stained this unit since its updater last ran, in order of notification */
+  List<ElementHandle<?, ?>> getUpdatedHandles() {
+    return updatedHandles == null || updatedHandles.isEmpty()
+        ? Collections.emptyList()
+        : Collections.unmodifiableList(updatedHandles);
   }
 
   public void update() {
-    UpdateResult<S> result = getUpdateResult();
-    if (handleUpdateResult(result)) {
-      subscribers.forEach(ElementHandleAdapter::stain);
-      this.updateContext = engineContext.getLatestContext();
+    if (evicted) {
+      // Stained by a timer or a handle that was kept after its eviction
+      this.notifications = 0;
+      return;
+    }
+    entityManager.catchUpCreations(this, true);
+    if (handleUpdateStatus(runUpdater())) {
+      for (int i = 0; i < subscriberCount; ++i) {
+        subscribers[i].stain();
+      }
+      this.updateContext = getEngineContext().getLatestContext();
     }
     this.notifications = 0;
   }
 
-  private UpdateResult<S> getUpdateResult() {
+  private UpdateStatus runUpdater() {
     ElementStatus broadcastersStatus = getBroadcastersStatus();
     switch (broadcastersStatus) {
       case OK:
         try {
-          return this.updater.update(state, engineContext.getLatestContext(), toolbox);
+          return callUpdater(getEngineContext().getLatestContext());
         } catch (Exception e) {
-          engineContext.getErrorLogger().error("{} failed: {}", this, e.getMessage(), e);
-          return UpdateResult.error();
+          getEngineContext().getErrorLogger().error("{} failed: {}", this, e.getMessage(), e);
+          return UpdateStatus.ERROR;
         } finally {
-          pendingEvents.clear();
+          if (pendingEvents != null) {
+            pendingEvents.clear();
+          }
+          clearUpdatedHandles();
         }
       case ERROR:
-        return UpdateResult.upstreamError();
+        return UpdateStatus.UPSTREAM_ERROR;
       case NOT_READY:
-        return UpdateResult.notReady();
+        return UpdateStatus.NOT_READY;
       default:
         throw new UnsupportedValueException(ElementStatus.class, broadcastersStatus);
     }
   }
 
-  private ElementStatus getBroadcastersStatus() {
-    int failed = 0;
-    int notReady = 0;
-
-    for (ElementHandleAdapter broadcaster : broadcasters) {
-      if (broadcaster.getSubscriptionType() == SubscriptionType.STRONG) {
-        switch (broadcaster.getStatus()) {
-          case ERROR:
-            ++failed;
-            break;
-          case OK:
-            break;
-          case NOT_READY:
-          case CREATED:
-          case SHADOW:
-          case DELETED:
-            ++notReady;
-            break;
-          default:
-            throw new UnsupportedValueException(ElementStatus.class, broadcaster.getStatus());
-        }
-      }
+  /** Primitive updaters set the state in place, others return it in their result */
+  private UpdateStatus callUpdater(UpdateContext updateContext) {
+    if (updater instanceof DoubleElementUpdater) {
+      return ((DoubleElementUpdater) updater).updateDouble(this, updateContext, toolbox);
+    } else if (updater instanceof LongElementUpdater) {
+      return ((LongElementUpdater) updater).updateLong(this, updateContext, toolbox);
+    } else if (updater instanceof IntElementUpdater) {
+      return ((IntElementUpdater) updater).updateInt(this, updateContext, toolbox);
+    } else {
+      return setState(updater.update(getState(), updateContext, toolbox));
+    }
+  }
+
+  /** Store the state of a result, a MAYBE with the same state becomes NOTHING */
+  private UpdateStatus setState(UpdateResult<S> result) {
+    switch (result.getStatus()) {
+      case UPDATED:
+        getStates().set(slot, result.getState());
+        return UpdateStatus.UPDATED;
+      case MAYBE:
+        boolean same =
+            status == ElementStatus.OK && Objects.equals(getStates().get(slot), result.getState());
+        getStates().set(slot, result.getState());
+        return same ? UpdateStatus.NOTHING : UpdateStatus.UPDATED;
+      default:
+        return result.getStatus();
     }
+  }
 
-    if (failed != 0) {
+  private ElementStatus getBroadcastersStatus() {
+    if (failedBroadcasters != 0) {
       return ElementStatus.ERROR;
-    } else if (notReady != 0) {
+    } else if (notReadyBroadcasters != 0) {
       return ElementStatus.NOT_READY;
     } else {
       return ElementStatus.OK;
     }
   }
 
-  <KB, SB> void onNewElement(ElementHandle<KB, SB> broadcaster) {
-    // TODO: rethrow any error with informative message
-    if (this.updater.onNewElement(broadcaster)) {
+  /**
+   * Count a STRONG broadcaster in {@code status}, or stop counting it if {@code delta} is negative
+   *
+   * <p>Broadcasters of several entities may change status at the same time, hence the atomics
+   */
+  void countBroadcaster(ElementStatus status, int delta) {
+    switch (toBroadcasterStatus(status)) {
+      case ERROR:
+        FAILED_BROADCASTERS.addAndGet(this, delta);
+        break;
+      case NOT_READY:
+        NOT_READY_BROADCASTERS.addAndGet(this, delta);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** How a status counts for subscribers: OK, NOT_READY or ERROR */
+  private static ElementStatus toBroadcasterStatus(ElementStatus status) {
+    switch (status) {
+      case OK:
+        return ElementStatus.OK;
+      case ERROR:
+      case UPSTREAM_ERROR:
+        return ElementStatus.ERROR;
+      case NOT_READY:
+      case CREATED:
+      case SHADOW:
+      case DELETED:
+        return ElementStatus.NOT_READY;
+      default:
+        throw new UnsupportedValueException(ElementStatus.class, status);
+    }
+  }
+
+  /**
+   * Handles are kept until the updater runs, even if broadcasters aren't ready in between
+   *
+   * <p>Broadcasters are in previous levels, so they don't stain this unit while it updates.
+   */
+  private void clearUpdatedHandles() {
+    if (updatedHandles != null && !updatedHandles.isEmpty()) {
+      for (int i = 0; i < updatedHandles.size(); ++i) {
+        ((ElementHandleAdapter) updatedHandles.get(i)).setPending(false);
+      }
+      updatedHandles.clear();
+    }
+  }
+
+  <KB, SB> void onNewElement(ElementHandleAdapter<KB, SB> broadcaster) {
+    if (announce(broadcaster)) {
       this.stain();
     }
   }
 
-  private boolean handleUpdateResult(UpdateResult<S> results) {
-    switch (results.getStatus()) {
+  /** @return true if the updater wants to update */
+  private <KB, SB> boolean announce(ElementHandleAdapter<KB, SB> broadcaster) {
+    broadcaster.setAnnounced();
+    entityManager.markUnsaved(this);
+    // TODO: rethrow any error with informative message
+    return this.updater.onNewElement(broadcaster);
+  }
+
+  int getCreationsSeen() {
+    return creationsSeen;
+  }
+
+  void setCreationsSeen(int creationsSeen) {
+    this.creationsSeen = creationsSeen;
+  }
+
+  /**
+   * Pass the lazy {@code creations} this unit hasn't been passed yet
+   *
+   * <p>The ones it subscribes to that are OK have updated before, they're recorded as updated
+   * handles so the updater gets their state.
+   *
+   * @param updating whether this unit is about to update, otherwise it's stained if its updater
+   *     asks for it
+   */
+  void passCreations(List<ElementUnit> creations, boolean updating) {
+    if (updater != null) {
+      boolean stain = false;
+      for (int i = creationsSeen; i < creations.size(); ++i) {
+        ElementUnit creation = creations.get(i);
+        if (!creation.isEvicted()) {
+          stain |= announce(getAnnouncedHandle(creation));
+          ElementHandleAdapter handle = findHandle(creation);
+          if (handle != null
+              && handle.getSubscriberIndex() >= 0
+              && creation.getStatus() == ElementStatus.OK) {
+            addUpdatedHandle(handle);
+          }
+        }
+      }
+      if (stain && !updating) {
+        stain();
+      }
+    }
+    creationsSeen = creations.size();
+  }
+
+  /** @return true if the update should be propagated */
+  private boolean handleUpdateStatus(UpdateStatus updateStatus) {
+    switch (updateStatus) {
       case UPDATED:
-        this.state = results.getState();
-        this.status = ElementStatus.OK;
-        return true;
       case MAYBE:
-        boolean changed = !Objects.equals(this.state, results.getState());
-        this.state = results.getState();
-        this.status = ElementStatus.OK;
-        return changed;
-      case DELETED:
-        this.state = null;
-        return changeStatus(ElementStatus.DELETED);
-      case NOT_READY:
-        this.state = null;
-        return changeStatus(ElementStatus.NOT_READY);
+        setStatus(ElementStatus.OK);
+        return true;
       case NOTHING:
-        Preconditions.checkState(state != null);
         Preconditions.checkState(this.status == ElementStatus.OK);
         return false;
+      case DELETED:
+        getStates().clear(slot);
+        return setStatus(ElementStatus.DELETED);
+      case NOT_READY:
+        getStates().clear(slot);
+        return setStatus(ElementStatus.NOT_READY);
       case ERROR:
-        this.state = null;
-        return changeStatus(ElementStatus.ERROR);
+        getStates().clear(slot);
+        return setStatus(ElementStatus.ERROR);
       case UPSTREAM_ERROR:
-        this.state = null;
-        return changeStatus(ElementStatus.UPSTREAM_ERROR);
+        getStates().clear(slot);
+        return setStatus(ElementStatus.UPSTREAM_ERROR);
       default:
-        throw new UnsupportedValueException(UpdateStatus.class, results.getStatus());
+        throw new UnsupportedValueException(UpdateStatus.class, updateStatus);
     }
   }
 
-  private boolean changeStatus(ElementStatus elementStatus) {
-    boolean changed = this.status != elementStatus;
+  /** Change the status, updating the counts of subscribers if it matters to them */
+  private boolean setStatus(ElementStatus elementStatus) {
+    ElementStatus previous = this.status;
+    if (previous == elementStatus) {
+      return false;
+    }
     this.status = elementStatus;
-    return changed;
+    if (toBroadcasterStatus(previous) != toBroadcasterStatus(elementStatus)) {
+      for (int i = 0; i < subscriberCount; ++i) {
+        ElementHandleAdapter handle = subscribers[i];
+        if (handle.getSubscriptionType() == SubscriptionType.STRONG) {
+          handle.getSubscriber().countBroadcaster(previous, -1);
+          handle.getSubscriber().countBroadcaster(elementStatus, 1);
+        }
+      }
+    }
+    return true;
   }
 
-  public boolean updateSubscriber(ElementHandleAdapter<K, S> handle, boolean add) {
+  /**
+   * Add or remove a subscribed handle, removing swaps the last handle in its place
+   *
+   * <p>This is synchronized as units of several downstream entities may subscribe at the same time
+   */
+  synchronized boolean updateSubscriber(ElementHandleAdapter<K, S> handle, boolean add) {
+    int index = handle.getSubscriberIndex();
     if (add) {
-      return this.subscribers.add(handle);
+      if (index >= 0) {
+        return false;
+      }
+      if (subscriberCount == subscribers.length) {
+        subscribers = Arrays.copyOf(subscribers, Math.max(2, subscriberCount * 2));
+      }
+      handle.setSubscriberIndex(subscriberCount);
+      subscribers[subscriberCount++] = handle;
     } else {
-      return this.subscribers.remove(handle);
+      if (index < 0) {
+        return false;
+      }
+      ElementHandleAdapter last = subscribers[--subscriberCount];
+      subscribers[index] = last;
+      last.setSubscriberIndex(index);
+      subscribers[subscriberCount] = null;
+      handle.setSubscriberIndex(-1);
     }
+    return true;
   }
 
-  public boolean updateBroadcaster(ElementHandleAdapter handle, boolean add) {
-    if (add) {
-      return this.broadcasters.add(handle);
+  /** The handles of this unit, to broadcasters that haven't been evicted */
+  List<ElementHandleAdapter> getHandles() {
+    List<ElementHandleAdapter> results = new ArrayList<>(handleCount);
+    for (int i = 0; i < handleCount; ++i) {
+      if (!handles[i].getBroadcaster().isEvicted()) {
+        results.add(handles[i]);
+      }
+    }
+    return results;
+  }
+
+  List<ElementTimerImpl> getPendingTimers() {
+    List<ElementTimerImpl> results = new ArrayList<>();
+    if (timers != null) {
+      for (ElementTimerImpl timer : timers) {
+        if (timer.getState() == TimerState.READY) {
+          results.add(timer);
+        }
+      }
+    }
+    return results;
+  }
+
+  /** Set the status, update context and state of a unit restored from a snapshot */
+  void restore(ElementStatus status, UpdateContext updateContext, S state) {
+    Preconditions.checkState(subscriberCount == 0, "%s is already subscribed to", this);
+    this.status = status;
+    this.updateContext = updateContext;
+    if (status == ElementStatus.OK) {
+      getStates().set(slot, state);
+    }
+  }
+
+  void cancelTimers() {
+    if (timers != null) {
+      for (ElementTimerImpl timer : timers) {
+        if (timer.getState() == TimerState.READY) {
+          timer.cancel();
+        }
+      }
+      timers = null;
+    }
+  }
+
+  void addTimer(ElementTimerImpl timer) {
+    if (timers == null) {
+      timers = new ArrayList<>();
     } else {
-      return this.broadcasters.remove(handle);
+      // Timers that triggered or got cancelled get added back when rescheduled
+      timers.removeIf(t -> t.getState() != TimerState.READY);
+    }
+    timers.add(timer);
+  }
+
+  /**
+   * Whether nothing but the entity refers to this unit, so it can be dropped
+   *
+   * <p>Only units that never updated qualify, the entity would create them the same way again
+   */
+  boolean isUnreferenced() {
+    if (!isNew() || references != 0 || subscriberCount != 0 || notifications != 0) {
+      return false;
+    }
+    for (int i = 0; i < handleCount; ++i) {
+      if (handles[i].getSubscriberIndex() >= 0) {
+        return false;
+      }
+    }
+    if (timers != null) {
+      for (ElementTimerImpl timer : timers) {
+        if (timer.getState() == TimerState.READY) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean isNew() {
+    return status == ElementStatus.SHADOW || status == ElementStatus.CREATED;
+  }
+
+  /** Called when a handle to this unit is dropped, with its subscriber */
+  private void releaseReference() {
+    if (REFERENCES.decrementAndGet(this) == 0 && isNew()) {
+      entityManager.markReleased(this);
+    }
+  }
+
+  /**
+   * Unlink this unit from its subscribers and broadcasters, and cancel its timers
+   *
+   * <p>Called between cycles, once the entity dropped the unit. STRONG subscribers stop counting
+   * this unit as not ready, and get updated next cycle. Handles to this unit that are kept by
+   * updaters show it as {@link ElementStatus#DELETED}, and ignore subscriptions. Snapshots skip
+   * them, they may still be in the saved records of units that aren't subscribed.
+   */
+  void evict() {
+    Preconditions.checkState(!evicted, "%s is already evicted", this);
+    setStatus(ElementStatus.DELETED);
+    evicted = true;
+    for (int i = 0; i < subscriberCount; ++i) {
+      ElementHandleAdapter handle = subscribers[i];
+      ElementUnit subscriber = handle.getSubscriber();
+      if (handle.getSubscriptionType() == SubscriptionType.STRONG) {
+        subscriber.countBroadcaster(status, -1);
+        subscriber.stain();
+      }
+      // So the next checkpoint doesn't keep its handle to this unit
+      subscriber.getEntityManager().markUnsaved(subscriber);
+      handle.detach();
+    }
+    subscribers = NO_HANDLES;
+    subscriberCount = 0;
+    for (int i = 0; i < handleCount; ++i) {
+      ElementHandleAdapter handle = handles[i];
+      ElementUnit broadcaster = handle.getBroadcaster();
+      if (!broadcaster.isEvicted()) {
+        broadcaster.updateSubscriber(handle, false);
+        broadcaster.releaseReference();
+      }
+      handle.detach();
     }
+    handles = NO_HANDLES;
+    handleCount = 0;
+    handleIndex = null;
+    cancelTimers();
+    updater = null;
+    toolbox = null;
+    pendingEvents = null;
+    updatedHandles = null;
+    pendingCreations = null;
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this).add("entityKey", entityKey).add("key", key).toString();
+    return MoreObjects.toStringHelper(this)
+        .add("entityKey", getEntityKey())
+        .add("key", key)
+        .toString();
   }
 
-  public <E> void queueEvent(Event<E> event) {
-    pendingEvents.add(event);
-    ++notifications;
+  <E> void queueEvent(EventChannel<E> channel, E event) {
+    if (pendingEvents == null) {
+      pendingEvents = new PendingEvents();
+    }
+    pendingEvents.add(channel, event);
+    stain();
+  }
+
+  List<Event> getEvents() {
+    return pendingEvents == null ? Collections.emptyList() : pendingEvents.getAll();
+  }
+
+  <E> List<E> getEvents(EventChannel<E> channel) {
+    return pendingEvents == null ? Collections.emptyList() : pendingEvents.get(channel);
+  }
+
+  <E> E getLatestEvent(EventChannel<E> channel) {
+    return pendingEvents == null ? null : pendingEvents.getLatest(channel);
   }
 
-  public void queueCreation(ElementUnit unit) {
+  /** @return true if this is the first creation queued since the last flush */
+  boolean queueCreation(ElementUnit unit) {
+    if (pendingCreations == null) {
+      pendingCreations = new LinkedHashSet<>();
+    }
+    boolean first = pendingCreations.isEmpty();
     pendingCreations.add(unit);
+    return first;
   }
 
-  public void flushCreations() {
-    for (ElementUnit creation : pendingCreations) {
-      this.onNewElement(new ElementHandleAdapter<>(creation, this));
+  /**
+   * Notify the updater of the creations targeted at this unit, followed by the {@code shared}
+   * creations it hasn't been notified of yet
+   *
+   * <p>Unless this unit looked up a creation already, the updater gets a handle that isn't kept,
+   * nor refers to the creation, until it subscribes to it. Most creations are ignored by most of
+   * the units they're notified to.
+   */
+  void flushCreations(Collection<ElementUnit> shared) {
+    boolean hasPending = pendingCreations != null && !pendingCreations.isEmpty();
+    if (updater != null) { // SHADOW units have nobody to notify
+      if (hasPending) {
+        for (ElementUnit creation : pendingCreations) {
+          this.onNewElement(getAnnouncedHandle(creation));
+        }
+      }
+      for (ElementUnit creation : shared) {
+        if (!hasPending || !pendingCreations.contains(creation)) {
+          this.onNewElement(getAnnouncedHandle(creation));
+        }
+      }
     }
-    pendingCreations.clear();
+    // Creations come in bursts, the set isn't kept around
+    pendingCreations = null;
   }
 }
@@ -4,36 +4,68 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import org.aa.olympus.api.EngineFactory;
 import org.aa.olympus.api.EntityKey;
 import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.HashingStrategy;
+import org.aa.olympus.api.StateCodec;
 import org.aa.olympus.impl.EngineBuilderImpl.EntityUnit;
 import org.slf4j.LoggerFactory;
 
-/** Turn a {@link EngineBuilderImpl} into an {@link EngineImpl} */
-final class EngineAssembler {
-
-  private final EngineBuilderImpl builder;
-
-  private EngineContext engineContext;
-  private TimerStore timerStore;
-  private Map<EntityKey, Set<EntityKey>> entityToDependencies;
-  private Map<EntityKey, Set<EntityKey>> entityToDependents;
-  private List<EntityKey> topologicalSort;
-  private Map<EntityKey, EntityManager> entities;
-  private Map<EntityKey, SourceManager> sources;
-  private Map<EventChannel, List<EntityManager>> channelToEntities;
+/**
+ * Turn a {@link EngineBuilderImpl} into {@link EngineImpl}
+ *
+ * <p>The definition of the builder is copied, checked and sorted once, when the assembler is
+ * created. Each call to {@link #create()} then only instantiates the managers of a new engine, so
+ * it can be called many times, from any thread.
+ */
+final class EngineAssembler implements EngineFactory {
+
+  private final Set<EventChannel> eventChannels;
+  private final Map<EntityKey, EntityUnit> units;
+  private final Map<EntityKey, HashingStrategy> keyHashing;
+  private final Map<EntityKey, StateCodec> offHeap;
+  private final SnapshotCodecs snapshotCodecs;
+  private final Path snapshot;
+  private final Path checkpoints;
+  private final Path journal;
+  private final ForkJoinPool forkJoinPool;
+
+  private final Map<EntityKey, Set<EntityKey>> entityToDependencies;
+  private final Map<EntityKey, Set<EntityKey>> entityToDependents;
+  private final List<EntityKey> topologicalSort;
+  private final List<List<EntityKey>> levels;
 
   EngineAssembler(EngineBuilderImpl builder) {
-    this.builder = builder;
+    this.eventChannels = ImmutableSet.copyOf(builder.eventChannels);
+    this.units = ImmutableMap.copyOf(builder.entities);
+    this.keyHashing = ImmutableMap.copyOf(builder.keyHashing);
+    this.offHeap = ImmutableMap.copyOf(builder.offHeap);
+    this.snapshotCodecs =
+        new SnapshotCodecs(builder.keyCodecs, builder.stateCodecs, builder.eventCodecs);
+    this.snapshot = builder.snapshot;
+    this.checkpoints = builder.checkpoints;
+    this.journal = builder.journal;
+    this.forkJoinPool = builder.forkJoinPool;
+
+    this.entityToDependencies = createDependencies();
+    this.entityToDependents = reverseDependencies();
+    ImmutableList.Builder<List<EntityKey>> levels = ImmutableList.builder();
+    this.topologicalSort = sort(levels);
+    this.levels = levels.build();
   }
 
   private static Map<EntityKey, Set<EntityKey>> deepCopy(Map<EntityKey, Set<EntityKey>> input) {
@@ -49,42 +81,55 @@ final class EngineAssembler {
     return builder.build();
   }
 
-  EngineImpl assemble() {
-    createContext();
-    createTimerStore();
-    createDependencies();
-    reverseDependencies();
-    sort();
-    prepareManagers();
-    buildEntities();
-    mapChannelToEntities();
-    return new EngineImpl(
-        engineContext, timerStore, topologicalSort, sources, entities, channelToEntities);
-  }
-
-  private void createContext() {
-    engineContext = new EngineContext(LoggerFactory.getLogger(EngineImpl.class.getName()));
+  @Override
+  public EngineImpl create() {
+    EngineContext engineContext = createContext();
+    TimerStore timerStore = new TimerStore(engineContext);
+    Map<EntityKey, EntityManager> entities = buildEntities(engineContext, timerStore);
+    EngineImpl engine =
+        new EngineImpl(
+            engineContext,
+            timerStore,
+            topologicalSort,
+            levels,
+            new HashMap<>(),
+            entities,
+            mapChannelToEntities(entities),
+            snapshotCodecs,
+            checkpoints,
+            journal);
+    if (snapshot != null) {
+      try {
+        if (Files.isDirectory(snapshot)) {
+          EngineCheckpoints.restore(engine, snapshot);
+        } else {
+          EngineSnapshot.restore(engine, snapshot);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return engine;
   }
 
-  private void createTimerStore() {
-    timerStore = new TimerStore(engineContext);
+  private EngineContext createContext() {
+    return new EngineContext(LoggerFactory.getLogger(EngineImpl.class.getName()), forkJoinPool);
   }
 
-  private void createDependencies() {
-    entityToDependencies =
-        builder.entities.values().stream()
-            .collect(Collectors.toMap(EntityUnit::getEntityKey, EntityUnit::getDependencies));
-    entityToDependencies = makeImmutable(entityToDependencies);
+  private Map<EntityKey, Set<EntityKey>> createDependencies() {
+    return makeImmutable(
+        units.values().stream()
+            .collect(Collectors.toMap(EntityUnit::getEntityKey, EntityUnit::getDependencies)));
   }
 
   private Set<EntityKey> getAllKeys() {
-    Set<EntityKey> results = new HashSet<>(builder.entities.size());
-    results.addAll(builder.entities.keySet());
+    Set<EntityKey> results = new HashSet<>(units.size());
+    results.addAll(units.keySet());
     return results;
   }
 
-  private void reverseDependencies() {
-    entityToDependents = new HashMap<>();
+  private Map<EntityKey, Set<EntityKey>> reverseDependencies() {
+    Map<EntityKey, Set<EntityKey>> entityToDependents = new HashMap<>();
     getAllKeys().forEach(p -> entityToDependents.put(p, new HashSet<>()));
 
     for (Map.Entry<EntityKey, Set<EntityKey>> entry : entityToDependencies.entrySet()) {
@@ -92,27 +137,26 @@ final class EngineAssembler {
         entityToDependents.get(entityKey).add(entry.getKey());
       }
     }
-    entityToDependents = makeImmutable(entityToDependents);
-  }
-
-  private void prepareManagers() {
-    this.entities = new HashMap<>();
-    this.sources = new HashMap<>();
+    return makeImmutable(entityToDependents);
   }
 
-  private void buildEntities() {
-
+  private Map<EntityKey, EntityManager> buildEntities(
+      EngineContext engineContext, TimerStore timerStore) {
+    Map<EntityKey, EntityManager> entities = new HashMap<>();
     for (EntityKey entityKey : topologicalSort) {
-      EngineBuilderImpl.EntityUnit entity = builder.entities.get(entityKey);
+      EngineBuilderImpl.EntityUnit entity = units.get(entityKey);
       Preconditions.checkArgument(entity != null);
       entities.put(
           entity.getEntityKey(),
           entity.createManager(
               engineContext,
               timerStore,
-              getDependenciesManagers((entity.getEntityKey())),
-              getDependents(entity.getEntityKey())));
+              getDependenciesManagers(entities, entity.getEntityKey()),
+              getDependents(entity.getEntityKey()),
+              keyHashing.get(entityKey),
+              offHeap.get(entityKey)));
     }
+    return entities;
   }
 
   Set<EntityKey> getDependencies(EntityKey entityKey) {
@@ -123,14 +167,16 @@ final class EngineAssembler {
     return entityToDependents.getOrDefault(entityKey, Collections.emptySet());
   }
 
-  private Map<EntityKey, EntityManager> getDependenciesManagers(EntityKey entityKey) {
+  private Map<EntityKey, EntityManager> getDependenciesManagers(
+      Map<EntityKey, EntityManager> entities, EntityKey entityKey) {
 
     return getDependencies(entityKey).stream()
         .map(p -> Preconditions.checkNotNull(entities.get(p), "Missing deps %s", p))
         .collect(Collectors.toMap(EntityManager::getKey, p -> p));
   }
 
-  private void mapChannelToEntities() {
+  private Map<EventChannel, List<EntityManager>> mapChannelToEntities(
+      Map<EntityKey, EntityManager> entities) {
 
     Map<EventChannel, List<EntityManager>> results = new HashMap<>();
     for (EntityManager entityManager : entities.values()) {
@@ -139,12 +185,24 @@ final class EngineAssembler {
         results.computeIfAbsent(eventChannel, p -> new ArrayList<>()).add(entityManager);
       }
     }
-    this.channelToEntities =
-        results.entrySet().stream()
-            .collect(Collectors.toMap(Entry::getKey, p -> ImmutableList.copyOf(p.getValue())));
+    // Keep the order of registration, events are propagated by channel in that order
+    ImmutableMap.Builder<EventChannel, List<EntityManager>> ordered = ImmutableMap.builder();
+    for (EventChannel eventChannel : eventChannels) {
+      List<EntityManager> subscribers = results.get(eventChannel);
+      if (subscribers != null) {
+        ordered.put(eventChannel, ImmutableList.copyOf(subscribers));
+      }
+    }
+    return ordered.build();
   }
 
-  private void sort() {
+  /**
+   * Sort the entities in topological order, grouping them by level.
+   *
+   * <p>Entities of a level only depend on entities of previous levels, so they can be updated at
+   * the same time.
+   */
+  private List<EntityKey> sort(ImmutableList.Builder<List<EntityKey>> levels) {
     Map<EntityKey, Set<EntityKey>> local = deepCopy(entityToDependencies);
     List<EntityKey> results = new ArrayList<>();
     while (!local.isEmpty()) {
@@ -157,7 +215,8 @@ final class EngineAssembler {
       }
       toRemove.forEach(local::remove);
       local.values().forEach(p -> p.removeAll(toRemove));
+      levels.add(ImmutableList.copyOf(toRemove));
     }
-    topologicalSort = ImmutableList.copyOf(results);
+    return ImmutableList.copyOf(results);
   }
 }
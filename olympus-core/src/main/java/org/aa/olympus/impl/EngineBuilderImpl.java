@@ -2,24 +2,40 @@ package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import org.aa.olympus.api.Codec;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.Engine;
 import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EngineFactory;
 import org.aa.olympus.api.EntityKey;
 import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.HashingStrategy;
 import org.aa.olympus.api.SimpleElementManager;
+import org.aa.olympus.api.StateCodec;
 
 public final class EngineBuilderImpl implements EngineBuilder {
 
-  Set<EventChannel> eventChannels = new HashSet<>();
+  Set<EventChannel> eventChannels = new LinkedHashSet<>();
   Map<EntityKey, EntityUnit> entities = new HashMap<>();
+  Map<EntityKey, HashingStrategy> keyHashing = new HashMap<>();
+  Map<EntityKey, StateCodec> offHeap = new HashMap<>();
+  Map<EntityKey, Codec> keyCodecs = new HashMap<>();
+  Map<EntityKey, Codec> stateCodecs = new HashMap<>();
+  Path snapshot = null;
+  Path checkpoints = null;
+  Map<EventChannel, Codec> eventCodecs = new HashMap<>();
+  Path journal = null;
+  ForkJoinPool forkJoinPool = null;
 
   private static void checkNoDuplicate(Collection<EntityKey> keys, String name) {
     Preconditions.checkArgument(keys.stream().map(EntityKey::getName).noneMatch(name::equals));
@@ -70,9 +86,69 @@ public final class EngineBuilderImpl implements EngineBuilder {
         ImmutableSet.of());
   }
 
+  @Override
+  public <K> EngineBuilder keyHashing(EntityKey<K, ?> key, HashingStrategy<? super K> hashing) {
+    Preconditions.checkArgument(exists(key), "Unknown entity %s", key);
+    keyHashing.put(key, Preconditions.checkNotNull(hashing));
+    return this;
+  }
+
+  @Override
+  public <S> EngineBuilder offHeap(EntityKey<?, S> key, StateCodec<S> codec) {
+    Preconditions.checkArgument(exists(key), "Unknown entity %s", key);
+    Preconditions.checkArgument(codec.getSize() > 0, "Invalid state size %s", codec.getSize());
+    offHeap.put(key, codec);
+    return this;
+  }
+
+  @Override
+  public <K, S> EngineBuilder snapshotCodecs(
+      EntityKey<K, S> key, Codec<K> keyCodec, Codec<S> stateCodec) {
+    Preconditions.checkArgument(exists(key), "Unknown entity %s", key);
+    keyCodecs.put(key, Preconditions.checkNotNull(keyCodec));
+    stateCodecs.put(key, Preconditions.checkNotNull(stateCodec));
+    return this;
+  }
+
+  @Override
+  public EngineBuilder restoreFrom(Path snapshot) {
+    this.snapshot = Preconditions.checkNotNull(snapshot);
+    return this;
+  }
+
+  @Override
+  public EngineBuilder checkpointTo(Path directory) {
+    this.checkpoints = Preconditions.checkNotNull(directory);
+    return this;
+  }
+
+  @Override
+  public <E> EngineBuilder eventCodec(EventChannel<E> channel, Codec<E> codec) {
+    Preconditions.checkArgument(eventChannels.contains(channel), "Unknown channel %s", channel);
+    eventCodecs.put(channel, Preconditions.checkNotNull(codec));
+    return this;
+  }
+
+  @Override
+  public EngineBuilder journalTo(Path directory) {
+    this.journal = Preconditions.checkNotNull(directory);
+    return this;
+  }
+
+  @Override
+  public EngineBuilder runInParallel(ForkJoinPool forkJoinPool) {
+    this.forkJoinPool = Preconditions.checkNotNull(forkJoinPool);
+    return this;
+  }
+
+  @Override
+  public EngineFactory prepare() {
+    return new EngineAssembler(this);
+  }
+
   @Override
   public Engine build() {
-    return new EngineAssembler(this).assemble();
+    return new EngineAssembler(this).create();
   }
 
   /** Check key doesn't exists already */
@@ -140,10 +216,20 @@ public final class EngineBuilderImpl implements EngineBuilder {
         EngineContext engineContext,
         TimerStore timerStore,
         Map<EntityKey, EntityManager> dependencies,
-        Set<EntityKey> dependents) {
+        Set<EntityKey> dependents,
+        HashingStrategy<? super K> hashing,
+        StateCodec<S> codec) {
       Preconditions.checkArgument(dependencies.keySet().equals(this.dependencies));
       return new EntityManager<>(
-          engineContext, timerStore, entityKey, elementManager, dependencies, dependents, channels);
+          engineContext,
+          timerStore,
+          entityKey,
+          elementManager,
+          dependencies,
+          dependents,
+          channels,
+          hashing,
+          codec);
     }
 
     public EntityKey<K, S> getEntityKey() {
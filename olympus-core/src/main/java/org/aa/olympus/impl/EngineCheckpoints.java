@@ -0,0 +1,367 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.impl.EngineSnapshot.Header;
+
+/**
+ * Writes incremental checkpoints of an engine to a directory, and restores them
+ *
+ * <p>Each checkpoint is a segment file, numbered in sequence, with the units that changed since the
+ * previous checkpoint and the keys of the units evicted since then. The first checkpoint of an
+ * engine has all the units, unless the engine was restored from the same directory. Segments before
+ * the latest full one are ignored.
+ *
+ * <p>Segments are written through a {@link BatchedFileWriter} to a temporary file, and then moved
+ * in place. After {@link #COMPACTION_THRESHOLD} incremental segments, they are merged in the
+ * background into a full segment, that replaces the latest of them. Checkpoints go to new segments
+ * in the meantime.
+ */
+final class EngineCheckpoints {
+
+  static final int MAGIC = 0x4F4C5943;
+  static final int VERSION = 2;
+  static final int COMPACTION_THRESHOLD = 8;
+
+  // Each record after the header starts with one of these
+  private static final byte ENTITY = 0;
+  private static final byte EVICTED = 1;
+  private static final byte UNIT = 2;
+
+  private final EngineImpl engine;
+  private final EngineSnapshot snapshot;
+  private final SegmentDirectory segments;
+  /** The latest segment, or -1 until the directory has been listed */
+  private long sequence = -1;
+  /** Whether the next checkpoint has all the units */
+  private boolean full = true;
+  /** Incremental segments since the latest full one, or the latest compaction */
+  private int incremental = 0;
+
+  private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+  EngineCheckpoints(EngineImpl engine, Path directory) {
+    this.engine = engine;
+    this.snapshot = new EngineSnapshot(engine);
+    this.segments = segments(directory);
+  }
+
+  private static SegmentDirectory segments(Path directory) {
+    return new SegmentDirectory(directory, "checkpoint-", ".seg");
+  }
+
+  /** The latest compaction, completed if none is running */
+  CompletableFuture<Void> getCompaction() {
+    return compaction;
+  }
+
+  void checkpoint() throws IOException {
+    if (sequence < 0) {
+      Files.createDirectories(segments.getDirectory());
+      sequence = segments.getLatest();
+    }
+    long next = sequence + 1;
+    Path target = segments.get(next);
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    Header header = snapshot.getHeader();
+    try (BatchedFileWriter writer = new BatchedFileWriter(temporary)) {
+      writer.write(
+          buffer -> {
+            buffer.putInt(MAGIC).putInt(VERSION).put((byte) (full ? 1 : 0));
+            snapshot.writeHeader(buffer, header);
+          });
+      for (int i = 0; i < snapshot.getEntityKeys().size(); ++i) {
+        writeEntity(writer, i, snapshot.getEntityManager(i));
+      }
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    for (int i = 0; i < snapshot.getEntityKeys().size(); ++i) {
+      snapshot.getEntityManager(i).clearUnsaved();
+    }
+    sequence = next;
+    if (full) {
+      full = false;
+      incremental = 0;
+    } else if (++incremental >= COMPACTION_THRESHOLD && compaction.isDone()) {
+      startCompaction();
+    }
+  }
+
+  private <K, S> void writeEntity(RecordWriter writer, int index, EntityManager<K, S> manager)
+      throws IOException {
+    if (!full && !manager.hasUnsaved()) {
+      return;
+    }
+    Codec<K> keyCodec = snapshot.getCodecs().getKeyCodec(manager.getKey());
+    Codec<S> stateCodec = snapshot.getCodecs().getStateCodec(manager.getKey());
+    writer.write(buffer -> buffer.put(ENTITY).putInt(index));
+    if (full) {
+      for (ElementUnit<K, S> unit : manager.getUnits()) {
+        writeUnit(writer, unit, keyCodec, stateCodec);
+      }
+    } else {
+      // Evictions go first, evicted keys may have been created again since
+      for (K key : manager.getUnsavedEvictions()) {
+        writer.write(
+            buffer -> {
+              buffer.put(EVICTED);
+              keyCodec.write(buffer, key);
+            });
+      }
+      for (ElementUnit<K, S> unit : manager.getUnsaved()) {
+        if (!unit.isEvicted()) {
+          writeUnit(writer, unit, keyCodec, stateCodec);
+        }
+      }
+    }
+  }
+
+  private <K, S> void writeUnit(
+      RecordWriter writer, ElementUnit<K, S> unit, Codec<K> keyCodec, Codec<S> stateCodec)
+      throws IOException {
+    writer.write(
+        buffer -> {
+          buffer.put(UNIT);
+          snapshot.writeUnit(buffer, unit, keyCodec, stateCodec);
+        });
+  }
+
+  private void startCompaction() {
+    long upTo = sequence;
+    incremental = 0;
+    compaction =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                compact(upTo);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+    compaction.whenComplete(
+        (result, error) -> {
+          if (error != null) {
+            engine
+                .getEngineContext()
+                .getErrorLogger()
+                .error("Failed to compact checkpoints up to {}", upTo, error);
+          }
+        });
+  }
+
+  /** Merge the segments up to {@code upTo} into a full one, and delete the ones before it */
+  void compact(long upTo) throws IOException {
+    Path target = segments.get(upTo);
+    Path temporary = target.resolveSibling(target.getFileName() + ".compacting");
+    List<Segment> merged = openSegments(segments, snapshot, upTo);
+    try {
+      if (merged.size() > 1) {
+        Header header = merged.get(merged.size() - 1).header;
+        try (BatchedFileWriter writer = new BatchedFileWriter(temporary)) {
+          writer.write(
+              buffer -> {
+                buffer.putInt(MAGIC).putInt(VERSION).put((byte) 1);
+                snapshot.writeHeader(buffer, header);
+              });
+          for (int i = 0; i < snapshot.getEntityKeys().size(); ++i) {
+            compactEntity(writer, merged, i, snapshot.getEntityManager(i));
+          }
+        }
+      }
+    } finally {
+      closeAll(merged);
+    }
+    if (merged.size() > 1) {
+      Files.move(
+          temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    for (long previous : segments.list()) {
+      if (previous < upTo) {
+        Files.deleteIfExists(segments.get(previous));
+      }
+    }
+  }
+
+  private <K> void compactEntity(
+      RecordWriter writer, List<Segment> segments, int index, EntityManager<K, ?> manager)
+      throws IOException {
+    Map<K, ByteBuffer> units =
+        merge(segments, index, snapshot.getCodecs().getKeyCodec(manager.getKey()));
+    if (!units.isEmpty()) {
+      writer.write(buffer -> buffer.put(ENTITY).putInt(index));
+      for (ByteBuffer unit : units.values()) {
+        writer.write(buffer -> buffer.put(UNIT).put(unit.duplicate()));
+      }
+    }
+  }
+
+  /** Restore the units of the latest full segment of {@code directory} and the ones after it */
+  static void restore(EngineImpl engine, Path directory) throws IOException {
+    EngineSnapshot snapshot = new EngineSnapshot(engine);
+    List<Segment> segments = openSegments(segments(directory), snapshot, Long.MAX_VALUE);
+    try {
+      Preconditions.checkState(!segments.isEmpty(), "No checkpoint in %s", directory);
+      Segment latest = segments.get(segments.size() - 1);
+      snapshot.startRestore(latest.header);
+      for (int i = 0; i < snapshot.getEntityKeys().size(); ++i) {
+        restoreEntity(snapshot, segments, i, snapshot.getEntityManager(i));
+      }
+      snapshot.finishRestore();
+
+      EngineCheckpoints checkpoints = engine.getCheckpoints();
+      if (checkpoints != null && isSame(checkpoints.segments.getDirectory(), directory)) {
+        // Carry on from the restored segments
+        checkpoints.sequence = latest.sequence;
+        checkpoints.full = false;
+        checkpoints.incremental = segments.size() - 1;
+        for (int i = 0; i < snapshot.getEntityKeys().size(); ++i) {
+          snapshot.getEntityManager(i).clearUnsaved();
+        }
+      }
+    } finally {
+      closeAll(segments);
+    }
+  }
+
+  private static <K, S> void restoreEntity(
+      EngineSnapshot snapshot, List<Segment> segments, int index, EntityManager<K, S> manager)
+      throws IOException {
+    Codec<K> keyCodec = snapshot.getCodecs().getKeyCodec(manager.getKey());
+    Codec<S> stateCodec = snapshot.getCodecs().getStateCodec(manager.getKey());
+    for (ByteBuffer unit : merge(segments, index, keyCodec).values()) {
+      snapshot.restoreUnit(unit, manager, keyCodec, stateCodec);
+    }
+  }
+
+  /**
+   * The latest record of each unit of an entity, copied, in the order the units were first written
+   *
+   * <p>Segments are read in lockstep, one entity at a time, so only the units of one entity are
+   * held in memory.
+   */
+  private static <K> Map<K, ByteBuffer> merge(List<Segment> segments, int index, Codec<K> keyCodec)
+      throws IOException {
+    Map<K, ByteBuffer> units = new LinkedHashMap<>();
+    for (Segment segment : segments) {
+      if (segment.record != null && segment.tag == ENTITY && segment.entity == index) {
+        segment.advance();
+        while (segment.record != null && segment.tag != ENTITY) {
+          ByteBuffer copy =
+              ByteBuffer.allocate(segment.record.remaining()).order(ByteOrder.nativeOrder());
+          copy.put(segment.record);
+          // Through Buffer, ByteBuffer only overrides these from Java 9
+          ((Buffer) copy).flip();
+          K key = keyCodec.read(copy);
+          ((Buffer) copy).rewind();
+          if (segment.tag == EVICTED) {
+            units.remove(key);
+          } else {
+            units.put(key, copy);
+          }
+          segment.advance();
+        }
+      }
+    }
+    return units;
+  }
+
+  /** Open the latest full segment up to {@code upTo}, and the ones after it, in order */
+  private static List<Segment> openSegments(
+      SegmentDirectory directory, EngineSnapshot snapshot, long upTo) throws IOException {
+    List<Long> sequences = directory.list();
+    List<Segment> segments = new ArrayList<>();
+    try {
+      for (int i = sequences.size() - 1; i >= 0; --i) {
+        if (sequences.get(i) <= upTo) {
+          Segment segment =
+              new Segment(sequences.get(i), directory.get(sequences.get(i)), snapshot);
+          segments.add(segment);
+          if (segment.full) {
+            Collections.reverse(segments);
+            return segments;
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      closeAll(segments);
+      throw e;
+    }
+    closeAll(segments);
+    Preconditions.checkState(
+        segments.isEmpty(), "No full checkpoint in %s", directory.getDirectory());
+    return segments;
+  }
+
+  private static boolean isSame(Path left, Path right) {
+    return left.toAbsolutePath().normalize().equals(right.toAbsolutePath().normalize());
+  }
+
+  private static void closeAll(List<Segment> segments) throws IOException {
+    for (Segment segment : segments) {
+      segment.close();
+    }
+  }
+
+  /** Reads the records of a segment, one at a time */
+  private static final class Segment implements Closeable {
+
+    private final long sequence;
+    private final MappedFileReader reader;
+    private final boolean full;
+    private final Header header;
+    /** The next record, after its tag, or null at the end */
+    private ByteBuffer record;
+
+    private byte tag;
+    private int entity;
+
+    private Segment(long sequence, Path path, EngineSnapshot snapshot) throws IOException {
+      this.sequence = sequence;
+      this.reader = new MappedFileReader(path);
+      try {
+        ByteBuffer header = reader.next();
+        Preconditions.checkState(header.getInt() == MAGIC, "Not a checkpoint: %s", path);
+        int version = header.getInt();
+        Preconditions.checkState(version == VERSION, "Unsupported checkpoint version %s", version);
+        this.full = header.get() != 0;
+        this.header = snapshot.readHeader(header);
+        advance();
+      } catch (IOException | RuntimeException e) {
+        reader.close();
+        throw e;
+      }
+    }
+
+    private void advance() throws IOException {
+      if (reader.hasNext()) {
+        record = reader.next();
+        tag = record.get();
+        if (tag == ENTITY) {
+          entity = record.getInt();
+        }
+      } else {
+        record = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
@@ -1,15 +1,21 @@
 package org.aa.olympus.impl;
 
+import java.util.concurrent.ForkJoinPool;
 import org.aa.olympus.api.UpdateContext;
 import org.slf4j.Logger;
 
 public final class EngineContext {
 
   private final Logger errorLogger;
-  private UpdateContext latestContext;
+  private final ForkJoinPool forkJoinPool;
+  // Read by every thread updating elements
+  private volatile UpdateContext latestContext;
+  // The id of the latest cycle in the journal, which only differs from the update id in replays
+  private int journalId = 0;
 
-  public EngineContext(Logger errorLogger) {
+  public EngineContext(Logger errorLogger, ForkJoinPool forkJoinPool) {
     this.errorLogger = errorLogger;
+    this.forkJoinPool = forkJoinPool;
     this.latestContext = UpdateContextImpl.NONE;
   }
 
@@ -17,6 +23,16 @@ public final class EngineContext {
     return errorLogger;
   }
 
+  /** The pool used to run updates in parallel, or null if the engine runs on the caller thread */
+  ForkJoinPool getForkJoinPool() {
+    return forkJoinPool;
+  }
+
+  /** Whether units may get stained by several threads at the same time */
+  boolean isParallel() {
+    return forkJoinPool != null;
+  }
+
   public UpdateContext getLatestContext() {
     return latestContext;
   }
@@ -24,4 +40,12 @@ public final class EngineContext {
   void setLatestContext(UpdateContext latestContext) {
     this.latestContext = latestContext;
   }
+
+  int getJournalId() {
+    return journalId;
+  }
+
+  void setJournalId(int journalId) {
+    this.journalId = journalId;
+  }
 }
@@ -2,55 +2,108 @@ package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import org.aa.olympus.api.ElementView;
 import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineRunner;
 import org.aa.olympus.api.EntityKey;
-import org.aa.olympus.api.Event;
 import org.aa.olympus.api.EventChannel;
 import org.aa.olympus.api.Notifier;
 import org.aa.olympus.api.UpdateContext;
 
-// TODO: consider adding an extra layer of abstraction to run the engine
+/**
+ * Runs the cycles of the engine on the calling thread, see {@link EngineRunner} to run it on a
+ * thread of its own
+ */
 final class EngineImpl implements Engine {
 
   private final EngineContext engineContext;
   private final TimerStore timerStore;
   private final List<EntityKey> sorted;
+  private final List<List<EntityManager>> levels;
   private final Map<EntityKey, SourceManager> sources;
   private final Map<EntityKey, EntityManager> entities;
   private final Map<EventChannel, List<EntityManager>> channelToEntities;
-  private final List<EventImpl> pendingEvents = new ArrayList<>();
+  /** Events waiting for the next cycle, by channel, in the order channels were registered */
+  private final ImmutableMap<EventChannel, EventBatch> batches;
+
+  private final SnapshotCodecs snapshotCodecs;
+  /** Null unless checkpoints are enabled */
+  private final EngineCheckpoints checkpoints;
+  /** Null unless the journal is enabled */
+  private final EventJournal journal;
 
   EngineImpl(
       EngineContext engineContext,
       TimerStore timerStore,
       List<EntityKey> sorted,
+      List<List<EntityKey>> levels,
       Map<EntityKey, SourceManager> sources,
       Map<EntityKey, EntityManager> entities,
-      Map<EventChannel, List<EntityManager>> channelToEntities) {
+      Map<EventChannel, List<EntityManager>> channelToEntities,
+      SnapshotCodecs snapshotCodecs,
+      Path checkpointDirectory,
+      Path journalDirectory) {
     this.engineContext = engineContext;
+    this.snapshotCodecs = snapshotCodecs;
     this.timerStore = timerStore;
     this.sorted = sorted;
     this.sources = ImmutableMap.copyOf(sources);
     this.entities = ImmutableMap.copyOf(entities);
     this.channelToEntities = ImmutableMap.copyOf(channelToEntities);
+    ImmutableMap.Builder<EventChannel, EventBatch> batches = ImmutableMap.builder();
+    this.channelToEntities.forEach((k, v) -> batches.put(k, new EventBatch<>(k, v)));
+    this.batches = batches.build();
+    ImmutableList.Builder<List<EntityManager>> levelManagers = ImmutableList.builder();
+    for (List<EntityKey> level : levels) {
+      ImmutableList.Builder<EntityManager> managers = ImmutableList.builder();
+      level.forEach(p -> managers.add(this.entities.get(p)));
+      levelManagers.add(managers.build());
+    }
+    this.levels = levelManagers.build();
+    if (checkpointDirectory != null) {
+      this.entities.values().forEach(EntityManager::enableCheckpoints);
+      this.checkpoints = new EngineCheckpoints(this, checkpointDirectory);
+    } else {
+      this.checkpoints = null;
+    }
+    this.journal =
+        journalDirectory != null
+            ? new EventJournal(journalDirectory, this.batches.keySet(), snapshotCodecs)
+            : null;
   }
 
   @Override
   public void runOnce(LocalDateTime time) {
+    runOnce(time, this.engineContext.getLatestContext().getUpdateId() + 1);
+  }
+
+  /** Run a cycle, as the cycle {@code journalId} of the journal being replayed */
+  void runOnce(LocalDateTime time, int journalId) {
     Preconditions.checkArgument(!time.isBefore(this.engineContext.getLatestContext().getTime()));
-    this.engineContext.setLatestContext(
-        new UpdateContextImpl(time, this.engineContext.getLatestContext().getUpdateId() + 1));
+    int updateId = this.engineContext.getLatestContext().getUpdateId() + 1;
+    if (journal != null) {
+      journal.commit(time, journalId);
+    }
+    this.engineContext.setLatestContext(new UpdateContextImpl(time, updateId));
+    this.engineContext.setJournalId(journalId);
     flushTimers();
     propagateEvents();
     propagateCreations();
     propagateUpdates();
+    reclaimUnits();
   }
 
   @Override
@@ -63,22 +116,34 @@ final class EngineImpl implements Engine {
   }
 
   private void propagateUpdates() {
+    ForkJoinPool forkJoinPool = engineContext.getForkJoinPool();
+    if (forkJoinPool == null) {
+      for (EntityKey entityKey : sorted) {
+        EntityManager<?, ?> entityManager = entities.get(entityKey);
+        entityManager.run();
+      }
+    } else {
+      for (List<EntityManager> level : levels) {
+        if (level.size() == 1) {
+          level.get(0).run();
+        } else {
+          forkJoinPool.invoke(new RunEntitiesTask(level, 0, level.size()));
+        }
+      }
+    }
+  }
 
-    for (EntityKey entityKey : sorted) {
-      EntityManager<?, ?> entityManager = entities.get(entityKey);
-      entityManager.run();
+  /** Downstream entities go first, as evicting their units releases upstream units */
+  private void reclaimUnits() {
+    for (int i = sorted.size() - 1; i >= 0; --i) {
+      entities.get(sorted.get(i)).reclaim();
     }
   }
 
   private void propagateEvents() {
-    for (Event event : pendingEvents) {
-      List<EntityManager> entities =
-          channelToEntities.getOrDefault(event.getChannel(), Collections.emptyList());
-      for (EntityManager entity : entities) {
-        entity.processEvent(event);
-      }
+    for (EventBatch batch : batches.values()) {
+      batch.propagate();
     }
-    pendingEvents.clear();
   }
 
   private void propagateCreations() {
@@ -90,6 +155,7 @@ final class EngineImpl implements Engine {
     for (EntityKey entityKey : sorted) {
       EntityManager<?, ?> entityManager = entities.get(entityKey);
       entityManager.flushCreations();
+      entityManager.clearCreated();
     }
   }
 
@@ -104,20 +170,13 @@ final class EngineImpl implements Engine {
       EntityManager<KB, SB> broadcasters, EntityManager<KS, SS> subscribers) {
 
     List<ElementUnit<KB, SB>> createdUnits = broadcasters.getCreated();
-    for (ElementUnit<KB, SB> createdUnit : createdUnits) {
-      Notifier<KS> notifier =
-          new Notifier<KS>() {
-            @Override
-            public void notifyElement(KS elementKey) {
-              // TODO: this is two heavy for a callback
-              subscribers.get(elementKey, true).queueCreation(createdUnit);
-            }
-
-            @Override
-            public void notifyAllElements() {
-              subscribers.queueCreation(createdUnit);
-            }
-          };
+    if (createdUnits.isEmpty()) {
+      return;
+    }
+    CreationNotifier<KS> notifier = new CreationNotifier<>(subscribers);
+    for (int i = 0; i < createdUnits.size(); ++i) {
+      ElementUnit<KB, SB> createdUnit = createdUnits.get(i);
+      notifier.createdUnit = createdUnit;
       subscribers
           .getElementManager()
           .onNewKey(broadcasters.getKey(), createdUnit.getKey(), notifier);
@@ -128,7 +187,7 @@ final class EngineImpl implements Engine {
   public <K, S> S getState(EntityKey<K, S> entityKey, K key) {
     EntityManager<K, S> entityManager = getEntityManager(entityKey);
     Preconditions.checkArgument(entityManager != null, "Unknown entity %s", entityKey);
-    ElementUnit<K, S> unit = entityManager.get(key, false);
+    ElementUnit<K, S> unit = entityManager.find(key);
     if (unit != null) {
       return unit.getState();
     } else {
@@ -140,14 +199,78 @@ final class EngineImpl implements Engine {
   public <K, S> ElementView<K, S> getElement(EntityKey<K, S> entityKey, K key) {
     EntityManager<K, S> entityManager = getEntityManager(entityKey);
     Preconditions.checkArgument(entityManager != null, "Unknown entity %s", entityKey);
-    ElementUnit<K, S> unit = entityManager.get(key, false);
-    if (unit != null) {
-      return unit;
-    } else {
-      return null;
+    // Units get evicted and created again, creating a SHADOW unit would keep it forever
+    return new DetachedView<>(entityManager, key);
+  }
+
+  EngineContext getEngineContext() {
+    return engineContext;
+  }
+
+  /** The entities, in topological order */
+  List<EntityKey> getSortedKeys() {
+    return sorted;
+  }
+
+  SnapshotCodecs getSnapshotCodecs() {
+    return snapshotCodecs;
+  }
+
+  @Override
+  public void writeSnapshot(Path file) throws IOException {
+    passLazyCreations();
+    EngineSnapshot.write(this, file);
+  }
+
+  @Override
+  public LocalDateTime getNextTimerAt() {
+    return timerStore.getNextTimerAt();
+  }
+
+  @Override
+  public long replay(Path journal) throws IOException {
+    return replay(journal, false);
+  }
+
+  @Override
+  public long replay(Path journal, boolean exact) throws IOException {
+    // The replayed cycles would be appended to the segments being read
+    Preconditions.checkArgument(
+        this.journal == null
+            || !this.journal
+                .getDirectory()
+                .toAbsolutePath()
+                .normalize()
+                .equals(journal.toAbsolutePath().normalize()),
+        "Can't replay %s into its own engine",
+        journal);
+    return JournalReplay.replay(this, journal, exact);
+  }
+
+  @Override
+  public void checkpoint() throws IOException {
+    Preconditions.checkState(
+        checkpoints != null, "Checkpoints are not enabled, see EngineBuilder#checkpointTo");
+    passLazyCreations();
+    checkpoints.checkpoint();
+  }
+
+  /** Snapshots only keep the creations units have been passed */
+  private void passLazyCreations() {
+    for (EntityManager<?, ?> entityManager : entities.values()) {
+      entityManager.passLazyCreations();
     }
   }
 
+  /** The channels with subscribers, in the order they were registered */
+  Set<EventChannel> getEventChannels() {
+    return batches.keySet();
+  }
+
+  EngineCheckpoints getCheckpoints() {
+    return checkpoints;
+  }
+
   <K, S> EntityManager<K, S> getEntityManager(EntityKey<K, S> entityKey) {
     // This is safe as the EntityKet guarantees this through equality
     return (EntityManager<K, S>) entities.get(entityKey);
@@ -177,23 +300,108 @@ final class EngineImpl implements Engine {
       return Collections.emptyList();
     } else {
       List<ElementView<K, S>> modified = new ArrayList<>();
-      for (ElementUnit<K, S> unit : getEntityManager(entityKey).getUnits().values()) {
-        if (unit.getUpdateContext().getUpdateId() > previous.getUpdateId()) {
-          modified.add(unit);
-        }
-      }
+      forEachUpdated(entityKey, previous, modified::add);
       return modified;
     }
   }
 
+  @Override
+  public <K, S> int forEachUpdated(
+      EntityKey<K, S> entityKey,
+      UpdateContext previous,
+      Consumer<? super ElementView<K, S>> consumer) {
+    EntityManager<K, S> entityManager = getEntityManager(entityKey);
+    Preconditions.checkArgument(entityManager != null, "Unknown entity %s", entityKey);
+    if (previous.getUpdateId() >= getLatestContext().getUpdateId()) {
+      return 0;
+    } else {
+      return entityManager.forEachUpdated(previous.getUpdateId(), consumer);
+    }
+  }
+
   @Override
   public <E> Engine injectEvent(EventChannel<E> channel, E event) {
+    @SuppressWarnings("unchecked") // batches are indexed by channel
+    EventBatch<E> batch = batches.get(channel);
     Preconditions.checkArgument(
-        channelToEntities.containsKey(channel),
-        "%s is not subscribed to %s",
-        channel,
-        channelToEntities.keySet());
-    this.pendingEvents.add(new EventImpl<>(channel, event));
+        batch != null, "%s is not subscribed to %s", channel, channelToEntities.keySet());
+    Preconditions.checkNotNull(event);
+    if (journal != null) {
+      journal.append(channel, event);
+    }
+    batch.events.add(event);
     return this;
   }
+
+  /** Events of a channel waiting for the next cycle, and the entities they go to */
+  private static final class EventBatch<E> {
+
+    private final EventChannel<E> channel;
+    private final List<EntityManager> entities;
+    private final List<E> events = new ArrayList<>();
+    private final List<E> view = Collections.unmodifiableList(events);
+
+    private EventBatch(EventChannel<E> channel, List<EntityManager> entities) {
+      this.channel = channel;
+      this.entities = entities;
+    }
+
+    void propagate() {
+      if (!events.isEmpty()) {
+        for (EntityManager<?, ?> entity : entities) {
+          entity.processEvents(channel, view);
+        }
+        events.clear();
+      }
+    }
+  }
+
+  /**
+   * Forwards the keys returned by {@link org.aa.olympus.api.ElementManager#onNewKey} to the
+   * subscribing entity. It's reused for all the units created in a broadcasting entity.
+   */
+  private static final class CreationNotifier<K> implements Notifier<K> {
+
+    private final EntityManager<K, ?> subscribers;
+    private ElementUnit createdUnit;
+
+    private CreationNotifier(EntityManager<K, ?> subscribers) {
+      this.subscribers = subscribers;
+    }
+
+    @Override
+    public void notifyElement(K elementKey) {
+      subscribers.queueCreation(elementKey, createdUnit);
+    }
+
+    @Override
+    public void notifyAllElements() {
+      subscribers.queueCreation(createdUnit);
+    }
+  }
+
+  /** Runs a range of independent entities, splitting it in halves */
+  private static final class RunEntitiesTask extends RecursiveAction {
+
+    private final List<EntityManager> entities;
+    private final int from;
+    private final int to;
+
+    private RunEntitiesTask(List<EntityManager> entities, int from, int to) {
+      this.entities = entities;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        entities.get(from).run();
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new RunEntitiesTask(entities, from, middle), new RunEntitiesTask(entities, middle, to));
+      }
+    }
+  }
 }
@@ -0,0 +1,311 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.UpdateContext;
+
+/**
+ * Writes the elements of an engine to a memory-mapped file, and restores them in a new engine
+ *
+ * <p>The file is a sequence of records of a {@link MappedFileWriter}: a header with the latest
+ * context and the names of the entities in topological order, then for each entity a record with
+ * its number of units, followed by one record per unit. Units are restored in the same order, so
+ * the broadcasters of a unit are restored before it.
+ *
+ * <p>Units are created again by their {@link org.aa.olympus.api.ElementManager}, and then get back
+ * their status, update context, state, handles, subscriptions and pending timers. Updaters are
+ * notified again of the handles they were notified of and kept, by subscribing to them or looking
+ * them up, and the broadcasters they subscribe to are reported as updated at the next cycle, so
+ * they can rebuild their internal state. Timers set by updaters while being restored are moved to
+ * the ones of the snapshot.
+ */
+final class EngineSnapshot {
+
+  static final int MAGIC = 0x4F4C5953;
+  static final int VERSION = 2;
+
+  private static final ElementStatus[] STATUSES = ElementStatus.values();
+  private static final SubscriptionType[] SUBSCRIPTION_TYPES = SubscriptionType.values();
+
+  private final EngineImpl engine;
+  private final SnapshotCodecs codecs;
+  private final List<EntityKey> entityKeys;
+  private final Map<EntityKey, Integer> indexes = new HashMap<>();
+
+  EngineSnapshot(EngineImpl engine) {
+    this.engine = engine;
+    this.codecs = engine.getSnapshotCodecs();
+    this.entityKeys = engine.getSortedKeys();
+    for (int i = 0; i < entityKeys.size(); ++i) {
+      indexes.put(entityKeys.get(i), i);
+    }
+  }
+
+  static void write(EngineImpl engine, Path path) throws IOException {
+    try (MappedFileWriter writer = new MappedFileWriter(path)) {
+      new EngineSnapshot(engine).write(writer);
+    }
+  }
+
+  static void restore(EngineImpl engine, Path path) throws IOException {
+    try (MappedFileReader reader = new MappedFileReader(path)) {
+      new EngineSnapshot(engine).restore(reader);
+    }
+  }
+
+  List<EntityKey> getEntityKeys() {
+    return entityKeys;
+  }
+
+  SnapshotCodecs getCodecs() {
+    return codecs;
+  }
+
+  EntityManager<?, ?> getEntityManager(int index) {
+    return engine.getEntityManager((EntityKey<?, ?>) entityKeys.get(index));
+  }
+
+  private void write(MappedFileWriter writer) throws IOException {
+    writer.write(
+        buffer -> {
+          buffer.putInt(MAGIC).putInt(VERSION);
+          writeHeader(buffer, getHeader());
+        });
+    for (int i = 0; i < entityKeys.size(); ++i) {
+      writeEntity(writer, i, getEntityManager(i));
+    }
+  }
+
+  /** The header of the engine as it is now */
+  Header getHeader() {
+    return new Header(engine.getLatestContext(), engine.getEngineContext().getJournalId());
+  }
+
+  /** Write the latest context, the journal id and the names of the entities */
+  void writeHeader(ByteBuffer buffer, Header header) {
+    writeContext(buffer, header.latestContext);
+    buffer.putInt(header.journalId);
+    buffer.putInt(entityKeys.size());
+    for (EntityKey entityKey : entityKeys) {
+      Codecs.STRING.write(buffer, entityKey.getName());
+    }
+  }
+
+  /** Read a header written by {@link #writeHeader}, checking the entities match */
+  Header readHeader(ByteBuffer buffer) {
+    UpdateContext latestContext = readContext(buffer);
+    int journalId = buffer.getInt();
+    int entityCount = buffer.getInt();
+    Preconditions.checkState(
+        entityCount == entityKeys.size(),
+        "Snapshot has %s entities, expected %s",
+        entityCount,
+        entityKeys.size());
+    for (EntityKey entityKey : entityKeys) {
+      String name = Codecs.STRING.read(buffer);
+      Preconditions.checkState(
+          name.equals(entityKey.getName()), "Expected %s in snapshot, got %s", entityKey, name);
+    }
+    return new Header(latestContext, journalId);
+  }
+
+  private <K, S> void writeEntity(MappedFileWriter writer, int index, EntityManager<K, S> manager)
+      throws IOException {
+    Codec<K> keyCodec = codecs.getKeyCodec(manager.getKey());
+    Codec<S> stateCodec = codecs.getStateCodec(manager.getKey());
+    int count = manager.getUnitCount();
+    writer.write(buffer -> buffer.putInt(index).putInt(count));
+    for (ElementUnit<K, S> unit : manager.getUnits()) {
+      writer.write(buffer -> writeUnit(buffer, unit, keyCodec, stateCodec));
+    }
+  }
+
+  <K, S> void writeUnit(
+      ByteBuffer buffer, ElementUnit<K, S> unit, Codec<K> keyCodec, Codec<S> stateCodec) {
+    keyCodec.write(buffer, unit.getKey());
+    buffer.put((byte) unit.getStatus().ordinal());
+    writeContext(buffer, unit.getUpdateContext());
+    if (unit.getStatus() == ElementStatus.OK) {
+      stateCodec.write(buffer, unit.getState());
+    }
+    List<ElementHandleAdapter> handles = unit.getHandles();
+    buffer.putInt(handles.size());
+    for (ElementHandleAdapter handle : handles) {
+      writeHandle(buffer, handle);
+    }
+    List<ElementTimerImpl> timers = unit.getPendingTimers();
+    buffer.putInt(timers.size());
+    for (ElementTimerImpl timer : timers) {
+      writeTime(buffer, timer.getTimerAt());
+      buffer.putLong(timer.getPeriod().getSeconds()).putInt(timer.getPeriod().getNano());
+    }
+  }
+
+  private <K, S> void writeHandle(ByteBuffer buffer, ElementHandleAdapter<K, S> handle) {
+    buffer.putInt(indexes.get(handle.getEntityKey()));
+    codecs.getKeyCodec(handle.getEntityKey()).write(buffer, handle.getKey());
+    buffer.put((byte) handle.getSubscriptionType().ordinal());
+    buffer.put((byte) (handle.isAnnounced() ? 1 : 0));
+  }
+
+  private void restore(MappedFileReader reader) throws IOException {
+    ByteBuffer header = reader.next();
+    Preconditions.checkState(header.getInt() == MAGIC, "Not a snapshot");
+    int version = header.getInt();
+    Preconditions.checkState(version == VERSION, "Unsupported snapshot version %s", version);
+    startRestore(readHeader(header));
+    for (int i = 0; i < entityKeys.size(); ++i) {
+      restoreEntity(reader, i, getEntityManager(i));
+    }
+    finishRestore();
+  }
+
+  /** Called before restoring units, updaters are created in the latest context */
+  void startRestore(Header header) {
+    engine.getEngineContext().setLatestContext(header.latestContext);
+    engine.getEngineContext().setJournalId(header.journalId);
+  }
+
+  /** Restored units have been created already as far as their subscribers are concerned */
+  void finishRestore() {
+    for (int i = 0; i < entityKeys.size(); ++i) {
+      getEntityManager(i).clearCreated();
+    }
+  }
+
+  private <K, S> void restoreEntity(MappedFileReader reader, int index, EntityManager<K, S> manager)
+      throws IOException {
+    Codec<K> keyCodec = codecs.getKeyCodec(manager.getKey());
+    Codec<S> stateCodec = codecs.getStateCodec(manager.getKey());
+    ByteBuffer header = reader.next();
+    Preconditions.checkState(header.getInt() == index, "Corrupted snapshot");
+    int count = header.getInt();
+    for (int i = 0; i < count; ++i) {
+      restoreUnit(reader.next(), manager, keyCodec, stateCodec);
+    }
+  }
+
+  /** Restore a unit written by {@link #writeUnit}, after the units of upstream entities */
+  <K, S> void restoreUnit(
+      ByteBuffer record, EntityManager<K, S> manager, Codec<K> keyCodec, Codec<S> stateCodec) {
+    K key = keyCodec.read(record);
+    ElementStatus status = STATUSES[record.get()];
+    UpdateContext updateContext = readContext(record);
+    S state = status == ElementStatus.OK ? stateCodec.read(record) : null;
+    ElementUnit<K, S> unit = manager.get(key, status != ElementStatus.SHADOW);
+    unit.restore(status, updateContext, state);
+
+    int handleCount = record.getInt();
+    List<ElementHandleAdapter> handles = new ArrayList<>(handleCount);
+    List<SubscriptionType> subscriptions = new ArrayList<>(handleCount);
+    for (int i = 0; i < handleCount; ++i) {
+      ElementUnit<?, ?> broadcaster = readBroadcaster(record);
+      SubscriptionType subscription = SUBSCRIPTION_TYPES[record.get()];
+      boolean announced = record.get() != 0;
+      if (broadcaster == null) {
+        // Evicted after this unit was last saved, it was DELETED to the updater anyway
+        continue;
+      }
+      ElementHandleAdapter handle = unit.getHandle(broadcaster);
+      handles.add(handle);
+      subscriptions.add(subscription);
+      if (announced && unit.getUpdater() != null) {
+        unit.onNewElement(handle);
+      }
+    }
+    for (int i = 0; i < handles.size(); ++i) {
+      handles.get(i).subscribe(subscriptions.get(i));
+    }
+    for (int i = 0; i < handles.size(); ++i) {
+      if (handles.get(i).getSubscriberIndex() >= 0) {
+        unit.stain(handles.get(i));
+      }
+    }
+
+    restoreTimers(record, manager, unit);
+  }
+
+  /**
+   * Move the timers set by the updater while being restored to the ones of the snapshot with the
+   * same period, in order, so the updater keeps valid references to them
+   *
+   * <p>Snapshot timers without a match are created, updater timers without a match are cancelled.
+   */
+  private <K, S> void restoreTimers(
+      ByteBuffer record, EntityManager<K, S> manager, ElementUnit<K, S> unit) {
+    List<ElementTimerImpl> created = unit.getPendingTimers();
+    int timerCount = record.getInt();
+    for (int i = 0; i < timerCount; ++i) {
+      LocalDateTime timerAt = readTime(record);
+      Duration period = Duration.ofSeconds(record.getLong(), record.getInt());
+      ElementTimerImpl match = null;
+      for (int j = 0; j < created.size() && match == null; ++j) {
+        if (created.get(j).getPeriod().equals(period)) {
+          match = created.remove(j);
+        }
+      }
+      if (match != null) {
+        match.reschedule(timerAt);
+      } else {
+        unit.addTimer(manager.getTimerStore().create(unit, timerAt, period));
+      }
+    }
+    for (ElementTimerImpl timer : created) {
+      timer.cancel();
+    }
+  }
+
+  /** @return the broadcaster, or null if it was evicted */
+  private ElementUnit<?, ?> readBroadcaster(ByteBuffer record) {
+    return readBroadcaster(record, getEntityManager(record.getInt()));
+  }
+
+  private <K> ElementUnit<K, ?> readBroadcaster(ByteBuffer record, EntityManager<K, ?> manager) {
+    K key = codecs.getKeyCodec(manager.getKey()).read(record);
+    return manager.find(key);
+  }
+
+  /** The latest context of an engine, and the id of its latest cycle in the journal */
+  static final class Header {
+    final UpdateContext latestContext;
+    final int journalId;
+
+    Header(UpdateContext latestContext, int journalId) {
+      this.latestContext = latestContext;
+      this.journalId = journalId;
+    }
+  }
+
+  private static void writeContext(ByteBuffer buffer, UpdateContext context) {
+    buffer.putInt(context.getUpdateId());
+    writeTime(buffer, context.getTime());
+  }
+
+  private static UpdateContext readContext(ByteBuffer buffer) {
+    int updateId = buffer.getInt();
+    LocalDateTime time = readTime(buffer);
+    return updateId == 0 ? UpdateContextImpl.NONE : new UpdateContextImpl(time, updateId);
+  }
+
+  private static void writeTime(ByteBuffer buffer, LocalDateTime time) {
+    buffer.putLong(time.toEpochSecond(ZoneOffset.UTC)).putInt(time.getNano());
+  }
+
+  private static LocalDateTime readTime(ByteBuffer buffer) {
+    return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+  }
+}
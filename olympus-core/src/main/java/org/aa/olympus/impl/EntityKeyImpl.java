@@ -13,12 +13,31 @@ public class EntityKeyImpl<K, S> implements EntityKey<K, S> {
   private final String name;
   private final TypeToken<K> keyType;
   private final TypeToken<S> stateType;
+  private final StateKind stateKind;
 
   public EntityKeyImpl(String name, TypeToken<K> keyType, TypeToken<S> stateType) {
+    this(name, keyType, stateType, StateKind.OBJECT);
+  }
+
+  private EntityKeyImpl(
+      String name, TypeToken<K> keyType, TypeToken<S> stateType, StateKind stateKind) {
     Preconditions.checkArgument(!Strings.isNullOrEmpty(name));
     this.name = name;
     this.keyType = Preconditions.checkNotNull(keyType);
     this.stateType = Preconditions.checkNotNull(stateType);
+    this.stateKind = stateKind;
+  }
+
+  public static <K> EntityKeyImpl<K, Double> doubleKey(String name, TypeToken<K> keyType) {
+    return new EntityKeyImpl<>(name, keyType, TypeToken.of(Double.class), StateKind.DOUBLE);
+  }
+
+  public static <K> EntityKeyImpl<K, Long> longKey(String name, TypeToken<K> keyType) {
+    return new EntityKeyImpl<>(name, keyType, TypeToken.of(Long.class), StateKind.LONG);
+  }
+
+  public static <K> EntityKeyImpl<K, Integer> intKey(String name, TypeToken<K> keyType) {
+    return new EntityKeyImpl<>(name, keyType, TypeToken.of(Integer.class), StateKind.INT);
   }
 
   public String getName() {
@@ -51,6 +70,23 @@ public class EntityKeyImpl<K, S> implements EntityKey<K, S> {
     return (K) key;
   }
 
+  /** A store for the states of the elements of this entity, primitive for primitive keys */
+  @SuppressWarnings("unchecked") // primitive kinds have the matching state type
+  StateStore<S> createStateStore() {
+    switch (stateKind) {
+      case OBJECT:
+        return new ObjectStateStore<>();
+      case DOUBLE:
+        return (StateStore<S>) new DoubleStateStore();
+      case LONG:
+        return (StateStore<S>) new LongStateStore();
+      case INT:
+        return (StateStore<S>) new IntStateStore();
+      default:
+        throw new UnsupportedValueException(StateKind.class, stateKind);
+    }
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(name, keyType, stateType);
@@ -66,7 +102,8 @@ public class EntityKeyImpl<K, S> implements EntityKey<K, S> {
       EntityKeyImpl that = (EntityKeyImpl) other;
       return this.name.equals(that.name)
           && this.stateType == that.stateType
-          && this.keyType == that.keyType;
+          && this.keyType == that.keyType
+          && this.stateKind == that.stateKind;
     }
   }
 
@@ -74,4 +111,11 @@ public class EntityKeyImpl<K, S> implements EntityKey<K, S> {
   public String toString() {
     return MoreObjects.toStringHelper(this).add("name", name).toString();
   }
+
+  private enum StateKind {
+    OBJECT,
+    DOUBLE,
+    LONG,
+    INT
+  }
 }
@@ -3,32 +3,62 @@ package org.aa.olympus.impl;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import org.aa.olympus.api.BatchNotifier;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementStatus;
 import org.aa.olympus.api.EntityKey;
-import org.aa.olympus.api.Event;
 import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.HashingStrategy;
+import org.aa.olympus.api.StateCodec;
 
 final class EntityManager<K, S> {
 
+  /** Number of units updated by each task, when updating in parallel */
+  private static final int CHUNK_SIZE = 256;
+  /** Lazy creations are passed to all the units once this many have piled up */
+  static final int LAZY_CREATIONS_LIMIT = 4096;
+
   private final EngineContext engineContext;
   private final TimerStore timerStore;
   private final EntityKey<K, S> key;
   private final ElementManager<K, S> elementManager;
   private final ImmutableMap<EntityKey, EntityManager> dependencies;
-  private final EventNotifer<K> notifier = new EventNotifer<>();
   private final Set<EntityKey> dependents;
   private final Set<EventChannel> eventChannels;
-  private final Set<ElementUnit> pendingCreations = new LinkedHashSet<>();
+  /** Creations to notify to every unit of this entity, in order of notification */
+  private final Set<ElementUnit> sharedCreations = new LinkedHashSet<>();
+  /** Units that have creations targeted at them, in order of first notification */
+  private final List<ElementUnit<K, S>> notifiedOfCreations = new ArrayList<>();
+  /** Shared creations not passed to all units yet, if they're passed lazily */
+  private final List<ElementUnit> lazyCreations = new ArrayList<>();
+
+  private final KeyIndex<K, ElementUnit<K, S>> units;
+  private final StateStore<S> states;
+  /** Units that have been stained since the last {@link #run()}, in order of first notification */
+  private final List<ElementUnit<K, S>> dirty = new ArrayList<>();
 
-  private final Map<K, ElementUnit<K, S>> units = new HashMap<>();
+  private final ChangeLog<K, S> changeLog = new ChangeLog<>();
+  /** Units that got an updater since the last {@link #clearCreated()}, in order of creation */
+  private final List<ElementUnit<K, S>> created = new ArrayList<>();
+  /** Units that got deleted since the last {@link #reclaim()} */
+  private final List<ElementUnit<K, S>> deleted = new ArrayList<>();
+  /** Units that lost their last handle since the last {@link #reclaim()} */
+  private final List<ElementUnit<K, S>> released = new ArrayList<>();
+  /** Units that changed since the last checkpoint, if checkpoints are enabled */
+  private List<ElementUnit<K, S>> unsaved = null;
+  /** Keys of the units evicted since the last checkpoint, if checkpoints are enabled */
+  private List<K> unsavedEvictions = null;
 
   EntityManager(
       EngineContext engineContext,
@@ -38,6 +68,32 @@ final class EntityManager<K, S> {
       Map<EntityKey, EntityManager> dependencies,
       Set<EntityKey> dependents,
       Set<EventChannel> eventChannels) {
+    this(
+        engineContext,
+        timerStore,
+        key,
+        elementManager,
+        dependencies,
+        dependents,
+        eventChannels,
+        null,
+        null);
+  }
+
+  /**
+   * @param hashing how to index the elements by key, or null for the default
+   * @param codec to store the states off heap, or null
+   */
+  EntityManager(
+      EngineContext engineContext,
+      TimerStore timerStore,
+      EntityKey<K, S> key,
+      ElementManager<K, S> elementManager,
+      Map<EntityKey, EntityManager> dependencies,
+      Set<EntityKey> dependents,
+      Set<EventChannel> eventChannels,
+      HashingStrategy<? super K> hashing,
+      StateCodec<S> codec) {
     this.engineContext = engineContext;
     this.timerStore = timerStore;
     this.key = key;
@@ -45,65 +101,249 @@ final class EntityManager<K, S> {
     this.dependencies = ImmutableMap.copyOf(dependencies);
     this.dependents = ImmutableSet.copyOf(dependents);
     this.eventChannels = ImmutableSet.copyOf(eventChannels);
+    this.states = StateStore.create(key, codec);
+    this.units = KeyIndex.create(key.getKeyType(), hashing);
   }
 
   public EntityKey<K, S> getKey() {
     return key;
   }
 
-  Map<K, ElementUnit<K, S>> getUnits() {
-    return Collections.unmodifiableMap(this.units); // TODO: cache
-  }
-
   Set<EntityKey> getDependencies() {
     return dependencies.keySet();
   }
 
+  ImmutableMap<EntityKey, EntityManager> getDependencyManagers() {
+    return dependencies;
+  }
+
+  EngineContext getEngineContext() {
+    return engineContext;
+  }
+
+  TimerStore getTimerStore() {
+    return timerStore;
+  }
+
+  StateStore<S> getStateStore() {
+    return states;
+  }
+
   ElementManager<K, S> getElementManager() {
     return elementManager;
   }
 
-  ElementUnit<K, S> get(K key, boolean createUpdater) {
+  /**
+   * Get or create the unit for {@code key}
+   *
+   * <p>This is synchronized as elements of several downstream entities may look up elements of this
+   * entity at the same time
+   */
+  synchronized ElementUnit<K, S> get(K key, boolean createUpdater) {
     ElementUnit<K, S> unit = units.get(key);
     if (unit == null) {
-      unit = new ElementUnit<>(engineContext, timerStore, this.key, key, dependencies);
+      unit = new ElementUnit<>(this, key, states.allocate());
       units.put(key, unit);
+      markUnsaved(unit);
     }
     if (unit.getStatus() == ElementStatus.SHADOW && createUpdater) {
       unit.createUpdater(elementManager);
+      created.add(unit);
+      markUnsaved(unit);
     }
     return unit;
   }
 
+  /** Get the unit for {@code key}, or null, without creating it */
+  synchronized ElementUnit<K, S> find(K key) {
+    return units.get(key);
+  }
+
+  /** The units, in no particular order. They must not be created or evicted while iterating */
+  Iterable<ElementUnit<K, S>> getUnits() {
+    return units.values();
+  }
+
+  synchronized int getUnitCount() {
+    return units.size();
+  }
+
+  void markDirty(ElementUnit<K, S> unit) {
+    synchronized (dirty) {
+      dirty.add(unit);
+    }
+  }
+
+  /** Update the units that got notified during this cycle, ignoring the ones that didn't */
   void run() {
-    for (ElementUnit<K, S> element : units.values()) {
-      if (element.getNotifications() != 0) {
-        element.update();
+    ForkJoinPool forkJoinPool = engineContext.getForkJoinPool();
+    if (forkJoinPool != null && dirty.size() > CHUNK_SIZE && elementManager.concurrentUpdates()) {
+      UpdateUnitsTask<K, S> task = new UpdateUnitsTask<>(dirty, 0, dirty.size());
+      if (ForkJoinTask.getPool() == forkJoinPool) {
+        task.invoke();
+      } else {
+        forkJoinPool.invoke(task);
+      }
+    } else {
+      // Not using an iterator as units may get stained while updating
+      for (int i = 0; i < dirty.size(); ++i) {
+        dirty.get(i).update();
+      }
+    }
+    changeLog.record(engineContext.getLatestContext().getUpdateId(), dirty);
+    if (unsaved != null) {
+      for (int i = 0; i < dirty.size(); ++i) {
+        markUnsaved(dirty.get(i));
+      }
+    }
+    for (int i = 0; i < dirty.size(); ++i) {
+      if (dirty.get(i).getStatus() == ElementStatus.DELETED) {
+        deleted.add(dirty.get(i));
+      }
+    }
+    dirty.clear();
+  }
+
+  /** Called between cycles, when a unit without a state loses its last reference */
+  void markReleased(ElementUnit<K, S> unit) {
+    released.add(unit);
+  }
+
+  /**
+   * Evict the units that got deleted and the ones that nobody refers to anymore
+   *
+   * <p>This is called at the end of each cycle, from the downstream entities to the upstream ones,
+   * as evicting units releases their broadcasters. Deleted elements only come back if they get
+   * created again. Units that got stained in the meantime are kept, they get another chance to
+   * update.
+   *
+   * @return the number of evicted units
+   */
+  synchronized int reclaim() {
+    int evicted = 0;
+    for (int i = 0; i < deleted.size(); ++i) {
+      ElementUnit<K, S> unit = deleted.get(i);
+      if (!unit.isEvicted()
+          && unit.getStatus() == ElementStatus.DELETED
+          && unit.getNotifications() == 0) {
+        evict(unit);
+        ++evicted;
+      }
+    }
+    deleted.clear();
+    if (!released.isEmpty()) {
+      // Units created during this cycle haven't been propagated yet
+      Set<ElementUnit<K, S>> pending = Sets.newIdentityHashSet();
+      pending.addAll(created);
+      for (int i = 0; i < released.size(); ++i) {
+        ElementUnit<K, S> unit = released.get(i);
+        if (!unit.isEvicted() && unit.isUnreferenced() && !pending.contains(unit)) {
+          evict(unit);
+          ++evicted;
+        }
+      }
+      released.clear();
+    }
+    return evicted;
+  }
+
+  private void evict(ElementUnit<K, S> unit) {
+    ElementUnit<K, S> removed = units.remove(unit.getKey());
+    Preconditions.checkState(removed == unit, "%s is not indexed", unit);
+    unit.evict();
+    states.release(unit.getSlot());
+    if (unsavedEvictions != null) {
+      unsavedEvictions.add(unit.getKey());
+    }
+  }
+
+  /** Start keeping track of the units that change, for {@link EngineCheckpoints} */
+  synchronized void enableCheckpoints() {
+    if (unsaved == null) {
+      unsaved = new ArrayList<>();
+      unsavedEvictions = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Queue {@code unit} for the next checkpoint, if checkpoints are enabled
+   *
+   * <p>Updated units are queued after running, sequentially. Units get queued concurrently when
+   * they are created by several downstream entities, hence the lock.
+   */
+  void markUnsaved(ElementUnit<K, S> unit) {
+    if (unsaved != null) {
+      synchronized (unsaved) {
+        if (unit.markUnsaved()) {
+          unsaved.add(unit);
+        }
       }
     }
   }
 
+  /** The units that changed since the last checkpoint, some of them may have been evicted */
+  List<ElementUnit<K, S>> getUnsaved() {
+    return unsaved;
+  }
+
+  /** The keys of the units evicted since the last checkpoint, some may have been created again */
+  List<K> getUnsavedEvictions() {
+    return unsavedEvictions;
+  }
+
+  boolean hasUnsaved() {
+    return !unsaved.isEmpty() || !unsavedEvictions.isEmpty();
+  }
+
+  /** Called once the changes have been written in a checkpoint */
+  void clearUnsaved() {
+    for (int i = 0; i < unsaved.size(); ++i) {
+      unsaved.get(i).clearUnsaved();
+    }
+    unsaved.clear();
+    unsavedEvictions.clear();
+  }
+
+  /**
+   * Call {@code consumer} for each unit that updated after {@code previousId}
+   *
+   * <p>This only looks at the units that changed, unless {@code previousId} is older than the
+   * history of the {@link ChangeLog}, in which case all units are scanned.
+   *
+   * @return the number of units
+   */
+  int forEachUpdated(int previousId, Consumer<? super ElementUnit<K, S>> consumer) {
+    int latestId = engineContext.getLatestContext().getUpdateId();
+    int count = changeLog.forEachSince(previousId, latestId, consumer);
+    if (count < 0) {
+      count = 0;
+      for (ElementUnit<K, S> unit : units.values()) {
+        if (unit.getUpdateId() > previousId) {
+          consumer.accept(unit);
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
   List<ElementUnit<K, S>> getCreated() {
-    return units.values().stream()
-        .filter(p -> p.getStatus() == ElementStatus.CREATED)
-        .collect(Collectors.toList());
+    return created;
+  }
+
+  /** Called once per cycle, when all dependents have been notified of the created units */
+  void clearCreated() {
+    created.clear();
   }
 
   public Set<EventChannel> getEventChannels() {
     return eventChannels;
   }
 
-  public <E> void processEvent(Event<E> event) {
-    Preconditions.checkArgument(eventChannels.contains(event.getChannel()));
-    Preconditions.checkArgument(this.notifier.isEmpty());
-    elementManager.onEvent(event, this.notifier);
-    for (K key : notifier.getToNotify()) {
-      get(key, true).queueEvent(event);
-    }
-    if (notifier.getNotifyAll()) {
-      this.units.values().forEach(p -> p.queueEvent(event));
-    }
-    notifier.reset();
+  /** Route the events injected in {@code channel} during this cycle */
+  <E> void processEvents(EventChannel<E> channel, List<E> events) {
+    Preconditions.checkArgument(eventChannels.contains(channel));
+    elementManager.onEvents(channel, events, new ChannelNotifier<>(channel));
   }
 
   @Override
@@ -123,25 +363,137 @@ final class EntityManager<K, S> {
     return builder.toString();
   }
 
-  public <SB, KB> void onNewKey(EntityKey<KB, SB> entityKey, KB newKey) {
-    elementManager.onNewKey(entityKey, newKey, notifier);
-  }
-
-  public void checkNotifierEmpty() {
-    Preconditions.checkArgument(notifier.isEmpty());
+  /** Queue a creation for the unit of {@code key} only */
+  public <SB, KB> void queueCreation(K key, ElementUnit<KB, SB> createdUnit) {
+    ElementUnit<K, S> unit = get(key, true);
+    if (unit.queueCreation(createdUnit)) {
+      notifiedOfCreations.add(unit);
+    }
   }
 
+  /** Queue a creation for all the units, it's recorded once for the whole entity */
   public <SB, KB> void queueCreation(ElementUnit<KB, SB> createdUnit) {
-    pendingCreations.add(createdUnit);
+    sharedCreations.add(createdUnit);
   }
 
+  /**
+   * Notify units of the creations queued for them
+   *
+   * <p>Only the units with targeted creations are visited, unless some creations were queued for
+   * all units.
+   */
   public void flushCreations() {
-    for (ElementUnit<K, S> unit : this.units.values()) {
-      for (ElementUnit created : pendingCreations) {
-        unit.queueCreation(created);
+    if (!sharedCreations.isEmpty() && elementManager.lazyCreations()) {
+      flushLazyCreations();
+    } else if (sharedCreations.isEmpty()) {
+      for (int i = 0; i < notifiedOfCreations.size(); ++i) {
+        notifiedOfCreations.get(i).flushCreations(Collections.emptySet());
+      }
+    } else {
+      for (ElementUnit<K, S> unit : this.units.values()) {
+        unit.flushCreations(sharedCreations);
+      }
+      sharedCreations.clear();
+    }
+    notifiedOfCreations.clear();
+  }
+
+  /**
+   * Only visit the units with targeted creations, they get the shared ones right away. The others
+   * get them before their next update, see {@link #catchUpCreations}.
+   */
+  private void flushLazyCreations() {
+    int count = lazyCreations.size() + sharedCreations.size();
+    for (int i = 0; i < notifiedOfCreations.size(); ++i) {
+      ElementUnit<K, S> unit = notifiedOfCreations.get(i);
+      catchUpCreations(unit, false);
+      unit.flushCreations(sharedCreations);
+      unit.setCreationsSeen(count);
+    }
+    lazyCreations.addAll(sharedCreations);
+    sharedCreations.clear();
+    if (lazyCreations.size() >= LAZY_CREATIONS_LIMIT) {
+      passLazyCreations();
+    }
+  }
+
+  /**
+   * Pass {@code unit} the lazy creations it hasn't been passed yet
+   *
+   * @param updating whether {@code unit} is about to update
+   */
+  void catchUpCreations(ElementUnit<K, S> unit, boolean updating) {
+    if (unit.getCreationsSeen() < lazyCreations.size()) {
+      unit.passCreations(lazyCreations, updating);
+    }
+  }
+
+  /**
+   * Pass the lazy creations to all the units that haven't been passed them yet, and forget them
+   *
+   * <p>This is done between cycles, before snapshots and when the creations pile up.
+   */
+  void passLazyCreations() {
+    if (!lazyCreations.isEmpty()) {
+      for (ElementUnit<K, S> unit : units.values()) {
+        catchUpCreations(unit, false);
+        unit.setCreationsSeen(0);
+      }
+      lazyCreations.clear();
+    }
+  }
+
+  /** How many lazy creations units created now have been passed already */
+  int getLazyCreationCount() {
+    return lazyCreations.size();
+  }
+
+  /** Queues the events of a channel in the units they're delivered to */
+  private final class ChannelNotifier<E> implements BatchNotifier<K, E> {
+
+    private final EventChannel<E> channel;
+
+    private ChannelNotifier(EventChannel<E> channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public void notifyElement(K elementKey, E event) {
+      get(elementKey, true).queueEvent(channel, event);
+    }
+
+    @Override
+    public void notifyAllElements(E event) {
+      for (ElementUnit<K, S> unit : units.values()) {
+        unit.queueEvent(channel, event);
+      }
+    }
+  }
+
+  /** Updates a range of units, splitting it until it fits in a chunk */
+  private static final class UpdateUnitsTask<K, S> extends RecursiveAction {
+
+    private final List<ElementUnit<K, S>> units;
+    private final int from;
+    private final int to;
+
+    private UpdateUnitsTask(List<ElementUnit<K, S>> units, int from, int to) {
+      this.units = units;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK_SIZE) {
+        for (int i = from; i < to; ++i) {
+          units.get(i).update();
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new UpdateUnitsTask<>(units, from, middle), new UpdateUnitsTask<>(units, middle, to));
       }
-      unit.flushCreations();
     }
-    pendingCreations.clear();
   }
 }
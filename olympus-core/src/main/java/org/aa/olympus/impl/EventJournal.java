@@ -0,0 +1,147 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.EventChannel;
+
+/**
+ * Appends the events injected in an engine, and its cycles, to memory-mapped segments
+ *
+ * <p>Each segment starts with the names of the channels. It's followed by a record per event, with
+ * the index of its channel, and a record per cycle, with its time and journal id. Events are
+ * written to the mapping as they are injected, without system calls. The segment is forced to the
+ * disk once per cycle, before the cycle runs.
+ *
+ * <p>Segments are mapped in one go, {@link #SEGMENT_SIZE} bytes, which preallocates them. A new
+ * segment is started at the first cycle past {@link #ROLL_THRESHOLD}. The space after the last
+ * record is left zeroed until the segment is rolled over. As the size of a record is written last,
+ * readers stop at the first empty record.
+ */
+final class EventJournal {
+
+  static final int MAGIC = 0x4F4C594A;
+  static final int VERSION = 1;
+  static final int SEGMENT_SIZE = 64 << 20;
+  static final int ROLL_THRESHOLD = SEGMENT_SIZE - SEGMENT_SIZE / 8;
+
+  static final byte EVENT = 1;
+  static final byte CYCLE = 2;
+
+  private final SegmentDirectory segments;
+  private final List<EventChannel> channels;
+  private final ImmutableMap<EventChannel, Integer> indexes;
+  private final Codec[] codecs;
+  // Reused for every event, to avoid allocating a record per event
+  private final Consumer<ByteBuffer> eventRecord = this::writeEvent;
+
+  /** The current segment, or 0 until the directory has been listed */
+  private long sequence = 0;
+  /** Null until the first record */
+  private MappedFileWriter writer = null;
+
+  private int pendingIndex;
+  private Object pendingEvent;
+
+  EventJournal(Path directory, Collection<EventChannel> channels, SnapshotCodecs snapshotCodecs) {
+    this.segments = segments(directory);
+    this.channels = ImmutableList.copyOf(channels);
+    ImmutableMap.Builder<EventChannel, Integer> indexes = ImmutableMap.builder();
+    this.codecs = new Codec[this.channels.size()];
+    for (int i = 0; i < this.channels.size(); ++i) {
+      indexes.put(this.channels.get(i), i);
+      codecs[i] = snapshotCodecs.getEventCodec(this.channels.get(i));
+    }
+    this.indexes = indexes.build();
+  }
+
+  static SegmentDirectory segments(Path directory) {
+    return new SegmentDirectory(directory, "journal-", ".log");
+  }
+
+  Path getDirectory() {
+    return segments.getDirectory();
+  }
+
+  <E> void append(EventChannel<E> channel, E event) {
+    pendingIndex = indexes.get(channel);
+    pendingEvent = event;
+    try {
+      getWriter().write(eventRecord);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      pendingEvent = null;
+    }
+  }
+
+  @SuppressWarnings("unchecked") // codecs match their channel
+  private void writeEvent(ByteBuffer buffer) {
+    buffer.put(EVENT).putInt(pendingIndex);
+    codecs[pendingIndex].write(buffer, pendingEvent);
+  }
+
+  /**
+   * Write the start of a cycle, and flush the segment to the disk
+   *
+   * <p>Cycles are recorded under their journal id, which is their update id unless the engine is
+   * replaying another journal.
+   */
+  void commit(LocalDateTime time, int journalId) {
+    try {
+      MappedFileWriter current = getWriter();
+      current.write(
+          buffer ->
+              buffer
+                  .put(CYCLE)
+                  .putLong(time.toEpochSecond(ZoneOffset.UTC))
+                  .putInt(time.getNano())
+                  .putInt(journalId));
+      current.force();
+      if (current.position() >= ROLL_THRESHOLD) {
+        current.close();
+        writer = null;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private MappedFileWriter getWriter() throws IOException {
+    if (writer == null) {
+      if (sequence == 0) {
+        Files.createDirectories(segments.getDirectory());
+        sequence = segments.getLatest();
+      }
+      ++sequence;
+      FileChannel channel =
+          FileChannel.open(
+              segments.get(sequence),
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      writer = new MappedFileWriter(channel, 0L, SEGMENT_SIZE);
+      writer.write(
+          buffer -> {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(channels.size());
+            for (EventChannel eventChannel : channels) {
+              Codecs.STRING.write(buffer, eventChannel.getName());
+            }
+          });
+    }
+    return writer;
+  }
+}
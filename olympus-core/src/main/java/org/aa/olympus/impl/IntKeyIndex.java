@@ -0,0 +1,56 @@
+package org.aa.olympus.impl;
+
+/** Indexes integer keys without boxing them in the table */
+final class IntKeyIndex<V> extends OpenKeyIndex<Integer, V> {
+
+  private int[] keys = new int[MIN_CAPACITY];
+
+  @Override
+  int find(Integer key) {
+    return find(key.intValue());
+  }
+
+  private int find(int value) {
+    int mask = values.length - 1;
+    int slot = mix(value) & mask;
+    while (values[slot] != null && keys[slot] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @Override
+  int hashAt(int slot) {
+    return mix(keys[slot]);
+  }
+
+  @Override
+  void setKey(int slot, Integer key) {
+    keys[slot] = key;
+  }
+
+  @Override
+  void moveKey(int from, int to) {
+    keys[to] = keys[from];
+  }
+
+  @Override
+  void clearKey(int slot) {
+    keys[slot] = 0;
+  }
+
+  @Override
+  void resize(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldValues.length; ++i) {
+      if (oldValues[i] != null) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
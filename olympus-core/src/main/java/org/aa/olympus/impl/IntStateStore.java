@@ -0,0 +1,45 @@
+package org.aa.olympus.impl;
+
+import java.util.Arrays;
+
+/** Stores states as primitive ints */
+final class IntStateStore extends StateStore<Integer> {
+
+  // Volatile so readers see the pages the writer added
+  private volatile int[][] pages = new int[0][];
+
+  @Override
+  void addPage(int page) {
+    int[][] current = pages;
+    if (page == current.length) {
+      current = Arrays.copyOf(current, Math.max(4, page * 2));
+    }
+    current[page] = new int[PAGE_SIZE];
+    pages = current;
+  }
+
+  @Override
+  Integer get(int slot) {
+    return getInt(slot);
+  }
+
+  @Override
+  void set(int slot, Integer state) {
+    setInt(slot, state);
+  }
+
+  @Override
+  void clear(int slot) {
+    setInt(slot, 0);
+  }
+
+  @Override
+  int getInt(int slot) {
+    return pages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+  }
+
+  @Override
+  void setInt(int slot, int state) {
+    pages[slot >>> PAGE_BITS][slot & PAGE_MASK] = state;
+  }
+}
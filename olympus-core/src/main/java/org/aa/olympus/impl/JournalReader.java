@@ -0,0 +1,144 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.EventChannel;
+
+/**
+ * Reads the segments of an {@link EventJournal} in order, one entry at a time
+ *
+ * <p>Events are decoded straight from the mapped segments. Channels are matched by name with the
+ * ones of the reading engine.
+ */
+final class JournalReader implements Closeable {
+
+  private final SegmentDirectory segments;
+  private final List<Long> sequences;
+  private final Map<String, EventChannel> channelsByName = new HashMap<>();
+  private final SnapshotCodecs snapshotCodecs;
+
+  private int segmentIndex = -1;
+  private MappedFileReader reader = null;
+  private EventChannel[] channels;
+  private Codec[] codecs;
+
+  private boolean cycle;
+  private EventChannel channel;
+  private Object event;
+  private LocalDateTime time;
+  private int updateId;
+
+  JournalReader(Path directory, Collection<EventChannel> channels, SnapshotCodecs snapshotCodecs)
+      throws IOException {
+    this.segments = EventJournal.segments(directory);
+    this.sequences = segments.list();
+    channels.forEach(p -> channelsByName.put(p.getName(), p));
+    this.snapshotCodecs = snapshotCodecs;
+  }
+
+  /**
+   * Move to the next entry
+   *
+   * @return false at the end of the journal
+   */
+  boolean next() throws IOException {
+    while (true) {
+      if (reader == null && !openNext()) {
+        return false;
+      }
+      if (reader.hasNext()) {
+        ByteBuffer record = reader.next();
+        // The rest of the segment hasn't been written
+        if (record.hasRemaining()) {
+          read(record);
+          return true;
+        }
+      }
+      reader.close();
+      reader = null;
+    }
+  }
+
+  private boolean openNext() throws IOException {
+    if (++segmentIndex >= sequences.size()) {
+      return false;
+    }
+    Path path = segments.get(sequences.get(segmentIndex));
+    // Segments are mapped in one go, as they were written
+    reader = new MappedFileReader(path, EventJournal.SEGMENT_SIZE);
+    ByteBuffer header = reader.next();
+    Preconditions.checkState(header.getInt() == EventJournal.MAGIC, "Not a journal: %s", path);
+    int version = header.getInt();
+    Preconditions.checkState(
+        version == EventJournal.VERSION, "Unsupported journal version %s", version);
+    int count = header.getInt();
+    channels = new EventChannel[count];
+    codecs = new Codec[count];
+    for (int i = 0; i < count; ++i) {
+      String name = Codecs.STRING.read(header);
+      channels[i] = channelsByName.get(name);
+      Preconditions.checkState(channels[i] != null, "Unknown channel %s in %s", name, path);
+      codecs[i] = snapshotCodecs.getEventCodec(channels[i]);
+    }
+    return true;
+  }
+
+  private void read(ByteBuffer record) {
+    byte tag = record.get();
+    if (tag == EventJournal.EVENT) {
+      int index = record.getInt();
+      cycle = false;
+      channel = channels[index];
+      event = codecs[index].read(record);
+    } else {
+      Preconditions.checkState(tag == EventJournal.CYCLE, "Corrupted journal");
+      cycle = true;
+      channel = null;
+      event = null;
+      time = LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC);
+      updateId = record.getInt();
+    }
+  }
+
+  /** Whether the current entry is the start of a cycle, rather than an event */
+  boolean isCycle() {
+    return cycle;
+  }
+
+  EventChannel getChannel() {
+    return channel;
+  }
+
+  Object getEvent() {
+    return event;
+  }
+
+  /** The time of the current cycle */
+  LocalDateTime getTime() {
+    return time;
+  }
+
+  /** The update id of the current cycle */
+  int getUpdateId() {
+    return updateId;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+  }
+}
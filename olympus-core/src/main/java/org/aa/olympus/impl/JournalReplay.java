@@ -0,0 +1,92 @@
+package org.aa.olympus.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.aa.olympus.api.EventChannel;
+
+/**
+ * Replays the journal of an engine into another one, in simulated time
+ *
+ * <p>Events are decoded from the mapped segments and held until the start of their cycle is read.
+ * Timers due before that cycle fire first, in cycles of their own at their deadline, unless the
+ * replay is exact. Then the events are injected and the cycle runs at its recorded time. Events
+ * after the last cycle are injected, but not run.
+ *
+ * <p>Cycles the engine already ran, as it was restored from a checkpoint or a snapshot taken after
+ * them, are skipped with their events. The engine keeps the id of the latest recorded cycle it ran,
+ * apart from its update id which also counts the timer cycles, and saves it in its snapshots.
+ */
+final class JournalReplay {
+
+  private final EngineImpl engine;
+  /** Recorded cycles up to this id are skipped, as the engine already ran them */
+  private final int skipped;
+  /** Only run the recorded cycles, timers fire in the first one after their deadline */
+  private final boolean exact;
+
+  private EventChannel[] channels = new EventChannel[1024];
+  private Object[] events = new Object[1024];
+  private int pending = 0;
+  private long count = 0;
+
+  private JournalReplay(EngineImpl engine, boolean exact) {
+    this.engine = engine;
+    this.exact = exact;
+    this.skipped = engine.getEngineContext().getJournalId();
+  }
+
+  /** @return the number of replayed events */
+  static long replay(EngineImpl engine, Path directory, boolean exact) throws IOException {
+    JournalReplay replay = new JournalReplay(engine, exact);
+    try (JournalReader reader =
+        new JournalReader(directory, engine.getEventChannels(), engine.getSnapshotCodecs())) {
+      while (reader.next()) {
+        if (reader.isCycle()) {
+          replay.runUntil(reader.getTime(), reader.getUpdateId());
+        } else {
+          replay.add(reader.getChannel(), reader.getEvent());
+        }
+      }
+    }
+    replay.inject();
+    return replay.count;
+  }
+
+  private void add(EventChannel channel, Object event) {
+    if (pending == events.length) {
+      channels = Arrays.copyOf(channels, pending * 2);
+      events = Arrays.copyOf(events, pending * 2);
+    }
+    channels[pending] = channel;
+    events[pending] = event;
+    ++pending;
+  }
+
+  private void runUntil(LocalDateTime time, int updateId) {
+    if (updateId <= skipped) {
+      Arrays.fill(events, 0, pending, null);
+      pending = 0;
+      return;
+    }
+    for (LocalDateTime timerAt = exact ? null : engine.getNextTimerAt();
+        timerAt != null && timerAt.isBefore(time);
+        timerAt = engine.getNextTimerAt()) {
+      // Not a recorded cycle, the engine stays at the latest recorded one
+      engine.runOnce(timerAt, engine.getEngineContext().getJournalId());
+    }
+    inject();
+    engine.runOnce(time, updateId);
+  }
+
+  @SuppressWarnings("unchecked") // events were decoded by the codec of their channel
+  private void inject() {
+    for (int i = 0; i < pending; ++i) {
+      engine.injectEvent(channels[i], events[i]);
+      events[i] = null;
+    }
+    count += pending;
+    pending = 0;
+  }
+}
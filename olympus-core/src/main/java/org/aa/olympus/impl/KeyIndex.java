@@ -0,0 +1,82 @@
+package org.aa.olympus.impl;
+
+import com.google.common.reflect.TypeToken;
+import java.util.HashMap;
+import java.util.Map;
+import org.aa.olympus.api.HashingStrategy;
+
+/**
+ * Indexes the elements of an entity by key
+ *
+ * <p>Integer and long keys get open addressing indexes on primitive arrays, keys with a {@link
+ * HashingStrategy} get an open addressing index using it, other keys a {@link HashMap}.
+ */
+abstract class KeyIndex<K, V> {
+
+  /** Tables are grown when they're more than half full */
+  static final int MIN_CAPACITY = 16;
+
+  @SuppressWarnings("unchecked") // the key type is checked
+  static <K, V> KeyIndex<K, V> create(TypeToken<K> keyType, HashingStrategy<? super K> hashing) {
+    if (hashing != null) {
+      return new StrategyKeyIndex<>(hashing);
+    } else if (keyType.getRawType() == Integer.class) {
+      return (KeyIndex<K, V>) new IntKeyIndex<V>();
+    } else if (keyType.getRawType() == Long.class) {
+      return (KeyIndex<K, V>) new LongKeyIndex<V>();
+    } else {
+      return new HashKeyIndex<>();
+    }
+  }
+
+  /** Spreads the bits of a hash, as tables are indexed by its low bits */
+  static int mix(int hash) {
+    int mixed = hash * 0x9E3779B9;
+    return mixed ^ (mixed >>> 16);
+  }
+
+  /** @return the value of {@code key}, or null */
+  abstract V get(K key);
+
+  /** Add {@code key}, that isn't in the index */
+  abstract void put(K key, V value);
+
+  /** @return the value that was removed, or null */
+  abstract V remove(K key);
+
+  abstract int size();
+
+  /** The values, in no particular order. The index must not be modified while iterating */
+  abstract Iterable<V> values();
+
+  /** The default index */
+  static final class HashKeyIndex<K, V> extends KeyIndex<K, V> {
+
+    private final Map<K, V> map = new HashMap<>();
+
+    @Override
+    V get(K key) {
+      return map.get(key);
+    }
+
+    @Override
+    void put(K key, V value) {
+      map.put(key, value);
+    }
+
+    @Override
+    V remove(K key) {
+      return map.remove(key);
+    }
+
+    @Override
+    int size() {
+      return map.size();
+    }
+
+    @Override
+    Iterable<V> values() {
+      return map.values();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.aa.olympus.impl;
+
+/** Indexes long keys without boxing them in the table */
+final class LongKeyIndex<V> extends OpenKeyIndex<Long, V> {
+
+  private long[] keys = new long[MIN_CAPACITY];
+
+  @Override
+  int find(Long key) {
+    return find(key.longValue());
+  }
+
+  private int find(long value) {
+    int mask = values.length - 1;
+    int slot = mix(hash(value)) & mask;
+    while (values[slot] != null && keys[slot] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @Override
+  int hashAt(int slot) {
+    return mix(hash(keys[slot]));
+  }
+
+  @Override
+  void setKey(int slot, Long key) {
+    keys[slot] = key;
+  }
+
+  @Override
+  void moveKey(int from, int to) {
+    keys[to] = keys[from];
+  }
+
+  @Override
+  void clearKey(int slot) {
+    keys[slot] = 0;
+  }
+
+  @Override
+  void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldValues.length; ++i) {
+      if (oldValues[i] != null) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int hash(long value) {
+    return (int) (value ^ (value >>> 32));
+  }
+}
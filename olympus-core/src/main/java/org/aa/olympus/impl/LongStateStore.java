@@ -0,0 +1,45 @@
+package org.aa.olympus.impl;
+
+import java.util.Arrays;
+
+/** Stores states as primitive longs */
+final class LongStateStore extends StateStore<Long> {
+
+  // Volatile so readers see the pages the writer added
+  private volatile long[][] pages = new long[0][];
+
+  @Override
+  void addPage(int page) {
+    long[][] current = pages;
+    if (page == current.length) {
+      current = Arrays.copyOf(current, Math.max(4, page * 2));
+    }
+    current[page] = new long[PAGE_SIZE];
+    pages = current;
+  }
+
+  @Override
+  Long get(int slot) {
+    return getLong(slot);
+  }
+
+  @Override
+  void set(int slot, Long state) {
+    setLong(slot, state);
+  }
+
+  @Override
+  void clear(int slot) {
+    setLong(slot, 0);
+  }
+
+  @Override
+  long getLong(int slot) {
+    return pages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+  }
+
+  @Override
+  void setLong(int slot, long state) {
+    pages[slot >>> PAGE_BITS][slot & PAGE_MASK] = state;
+  }
+}
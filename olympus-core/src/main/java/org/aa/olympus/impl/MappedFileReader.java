@@ -0,0 +1,90 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Reads the records of a {@link MappedFileWriter}, mapping the file by windows */
+final class MappedFileReader implements Closeable {
+
+  private final FileChannel channel;
+  private final long size;
+  /** Offset of the window in the file */
+  private long base;
+
+  private final int window;
+
+  private MappedByteBuffer buffer;
+  /** Returned for each record, it's a view of the current window */
+  private ByteBuffer record;
+
+  MappedFileReader(Path path) throws IOException {
+    this(path, MappedFileWriter.INITIAL_WINDOW);
+  }
+
+  /** Read a file, mapping at least {@code window} bytes at a time */
+  MappedFileReader(Path path, int window) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), 0L, -1L, window);
+  }
+
+  /** Read the records from {@code position} to {@code end}, or the end of the file if negative */
+  MappedFileReader(FileChannel channel, long position, long end) throws IOException {
+    this(channel, position, end, MappedFileWriter.INITIAL_WINDOW);
+  }
+
+  private MappedFileReader(FileChannel channel, long position, long end, int window)
+      throws IOException {
+    this.channel = channel;
+    this.size = end < 0 ? channel.size() : end;
+    this.window = window;
+    map(position, window);
+  }
+
+  private void map(long position, int window) throws IOException {
+    buffer =
+        channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+    buffer.order(ByteOrder.nativeOrder());
+    // MappedByteBuffer only overrides duplicate() from Java 17
+    record = ((ByteBuffer) buffer).duplicate().order(buffer.order());
+    base = position;
+  }
+
+  /** The position in the file of the next record */
+  long position() {
+    return base + buffer.position();
+  }
+
+  boolean hasNext() {
+    return position() < size;
+  }
+
+  /** The next record, valid until the next call, the same buffer is reused for every record */
+  ByteBuffer next() throws IOException {
+    if (buffer.remaining() < Integer.BYTES) {
+      map(position(), window);
+    }
+    int length = buffer.getInt(buffer.position());
+    Preconditions.checkState(
+        length >= 0 && position() + Integer.BYTES + length <= size, "Corrupted record");
+    if (buffer.remaining() < Integer.BYTES + length) {
+      map(position(), Math.max(window, Integer.BYTES + length));
+    }
+    int start = buffer.position() + Integer.BYTES;
+    // Through Buffer, ByteBuffer only overrides these from Java 9
+    ((Buffer) record).limit(start + length).position(start);
+    ((Buffer) buffer).position(start + length);
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,102 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Writes records in a memory-mapped file, each prefixed with its size
+ *
+ * <p>The file is mapped by windows starting at a record. When a record overflows the window, the
+ * window is mapped again from the start of the record, twice as big, and the record is written
+ * again. The file is truncated to its content when closed.
+ */
+final class MappedFileWriter implements RecordWriter, Closeable {
+
+  static final int INITIAL_WINDOW = 1 << 20;
+
+  private final FileChannel channel;
+  /** Offset of the window in the file */
+  private long base = 0;
+
+  private int window;
+  private MappedByteBuffer buffer;
+
+  MappedFileWriter(Path path) throws IOException {
+    this(
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE),
+        0L);
+  }
+
+  /** Write after {@code position}, in a file opened for reading and writing */
+  MappedFileWriter(FileChannel channel, long position) throws IOException {
+    this(channel, position, INITIAL_WINDOW);
+  }
+
+  /** Write after {@code position}, mapping {@code window} bytes at a time, growing the file */
+  MappedFileWriter(FileChannel channel, long position, int window) throws IOException {
+    this.channel = channel;
+    this.window = window;
+    this.base = position;
+    map(position);
+  }
+
+  private void map(long position) throws IOException {
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, window);
+    buffer.order(ByteOrder.nativeOrder());
+    base = position;
+  }
+
+  /** The position in the file where the next record goes */
+  long position() {
+    return base + buffer.position();
+  }
+
+  @Override
+  public void write(Consumer<? super ByteBuffer> record) throws IOException {
+    while (true) {
+      int start = buffer.position();
+      try {
+        buffer.putInt(0);
+        record.accept(buffer);
+        buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        return;
+      } catch (BufferOverflowException e) {
+        Preconditions.checkState(
+            start != 0 || window < Integer.MAX_VALUE / 2, "Record too big for %s bytes", window);
+        if (start == 0) {
+          window *= 2;
+        }
+        map(base + start);
+      }
+    }
+  }
+
+  /** Flush the written records to the file */
+  void force() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      buffer.force();
+      channel.truncate(position());
+    } finally {
+      channel.close();
+    }
+  }
+}
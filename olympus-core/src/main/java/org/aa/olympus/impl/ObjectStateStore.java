@@ -0,0 +1,36 @@
+package org.aa.olympus.impl;
+
+import java.util.Arrays;
+
+/** Stores states as references */
+final class ObjectStateStore<S> extends StateStore<S> {
+
+  // Volatile so readers see the pages the writer added
+  private volatile Object[][] pages = new Object[0][];
+
+  @Override
+  void addPage(int page) {
+    Object[][] current = pages;
+    if (page == current.length) {
+      current = Arrays.copyOf(current, Math.max(4, page * 2));
+    }
+    current[page] = new Object[PAGE_SIZE];
+    pages = current;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only states are stored
+  S get(int slot) {
+    return (S) pages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+  }
+
+  @Override
+  void set(int slot, S state) {
+    pages[slot >>> PAGE_BITS][slot & PAGE_MASK] = state;
+  }
+
+  @Override
+  void clear(int slot) {
+    set(slot, null);
+  }
+}
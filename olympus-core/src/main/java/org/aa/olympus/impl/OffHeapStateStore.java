@@ -0,0 +1,140 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.StateCodec;
+
+/**
+ * Stores states in direct buffers, encoded by a {@link StateCodec}
+ *
+ * <p>Buffers are allocated by segments of {@link #SEGMENT_SIZE} slots, so the number of buffers
+ * stays low for large entities. States of the {@link Codecs} are read and written without boxing.
+ */
+class OffHeapStateStore<S> extends StateStore<S> {
+
+  static final int SEGMENT_BITS = 16;
+  static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+  static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private final StateCodec<S> codec;
+  private final int stateSize;
+  // Volatile so readers see the segments the writer added
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+  OffHeapStateStore(StateCodec<S> codec) {
+    this.codec = codec;
+    this.stateSize = codec.getSize();
+    Preconditions.checkArgument(
+        stateSize > 0 && stateSize <= Integer.MAX_VALUE / SEGMENT_SIZE,
+        "Invalid state size %s",
+        stateSize);
+  }
+
+  @SuppressWarnings("unchecked") // the codecs match the stores
+  static <S> OffHeapStateStore<S> create(StateCodec<S> codec) {
+    if (codec == Codecs.DOUBLE) {
+      return (OffHeapStateStore<S>) new Doubles();
+    } else if (codec == Codecs.LONG) {
+      return (OffHeapStateStore<S>) new Longs();
+    } else if (codec == Codecs.INT) {
+      return (OffHeapStateStore<S>) new Ints();
+    } else {
+      return new OffHeapStateStore<>(codec);
+    }
+  }
+
+  @Override
+  final void addPage(int page) {
+    int segment = page >>> (SEGMENT_BITS - PAGE_BITS);
+    ByteBuffer[] current = segments;
+    if (segment == current.length) {
+      current = Arrays.copyOf(current, Math.max(4, segment * 2));
+    }
+    if (current[segment] == null) {
+      current[segment] =
+          ByteBuffer.allocateDirect(SEGMENT_SIZE * stateSize).order(ByteOrder.nativeOrder());
+    }
+    segments = current;
+  }
+
+  final ByteBuffer segment(int slot) {
+    return segments[slot >>> SEGMENT_BITS];
+  }
+
+  final int offset(int slot) {
+    return (slot & SEGMENT_MASK) * stateSize;
+  }
+
+  @Override
+  S get(int slot) {
+    return codec.read(segment(slot), offset(slot));
+  }
+
+  @Override
+  void set(int slot, S state) {
+    codec.write(segment(slot), offset(slot), state);
+  }
+
+  @Override
+  final void clear(int slot) {
+    ByteBuffer segment = segment(slot);
+    int offset = offset(slot);
+    for (int i = 0; i < stateSize; ++i) {
+      segment.put(offset + i, (byte) 0);
+    }
+  }
+
+  static final class Doubles extends OffHeapStateStore<Double> {
+
+    Doubles() {
+      super(Codecs.DOUBLE);
+    }
+
+    @Override
+    double getDouble(int slot) {
+      return segment(slot).getDouble(offset(slot));
+    }
+
+    @Override
+    void setDouble(int slot, double state) {
+      segment(slot).putDouble(offset(slot), state);
+    }
+  }
+
+  static final class Longs extends OffHeapStateStore<Long> {
+
+    Longs() {
+      super(Codecs.LONG);
+    }
+
+    @Override
+    long getLong(int slot) {
+      return segment(slot).getLong(offset(slot));
+    }
+
+    @Override
+    void setLong(int slot, long state) {
+      segment(slot).putLong(offset(slot), state);
+    }
+  }
+
+  static final class Ints extends OffHeapStateStore<Integer> {
+
+    Ints() {
+      super(Codecs.INT);
+    }
+
+    @Override
+    int getInt(int slot) {
+      return segment(slot).getInt(offset(slot));
+    }
+
+    @Override
+    void setInt(int slot, int state) {
+      segment(slot).putInt(offset(slot), state);
+    }
+  }
+}
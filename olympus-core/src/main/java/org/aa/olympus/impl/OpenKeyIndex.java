@@ -0,0 +1,100 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.AbstractIterator;
+import java.util.Iterator;
+
+/**
+ * An index with linear probing in a table of a power of two size, where the values are null for
+ * empty slots. Subclasses store the keys in parallel arrays.
+ */
+abstract class OpenKeyIndex<K, V> extends KeyIndex<K, V> {
+
+  Object[] values = new Object[MIN_CAPACITY];
+  private int size = 0;
+
+  /** @return the slot of {@code key}, or the empty slot where it would go */
+  abstract int find(K key);
+
+  /** The mixed hash of the key in {@code slot} */
+  abstract int hashAt(int slot);
+
+  abstract void setKey(int slot, K key);
+
+  abstract void moveKey(int from, int to);
+
+  abstract void clearKey(int slot);
+
+  /** Allocate tables of {@code capacity} and put back the entries of the current ones */
+  abstract void resize(int capacity);
+
+  @Override
+  @SuppressWarnings("unchecked") // only values are stored
+  final V get(K key) {
+    return (V) values[find(key)];
+  }
+
+  @Override
+  final void put(K key, V value) {
+    if ((size + 1) * 2 > values.length) {
+      resize(values.length * 2);
+    }
+    int slot = find(key);
+    setKey(slot, key);
+    values[slot] = value;
+    ++size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only values are stored
+  final V remove(K key) {
+    int slot = find(key);
+    V value = (V) values[slot];
+    if (value == null) {
+      return null;
+    }
+    // Shift back the entries that probed past the removed one, so lookups don't stop early
+    int mask = values.length - 1;
+    int hole = slot;
+    for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+      int home = hashAt(next) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        values[hole] = values[next];
+        moveKey(next, hole);
+        hole = next;
+      }
+    }
+    values[hole] = null;
+    clearKey(hole);
+    --size;
+    return value;
+  }
+
+  @Override
+  final int size() {
+    return size;
+  }
+
+  @Override
+  final Iterable<V> values() {
+    return this::iterator;
+  }
+
+  private Iterator<V> iterator() {
+    Object[] table = values;
+    return new AbstractIterator<V>() {
+      private int slot = 0;
+
+      @Override
+      @SuppressWarnings("unchecked") // only values are stored
+      protected V computeNext() {
+        while (slot < table.length) {
+          Object value = table[slot++];
+          if (value != null) {
+            return (V) value;
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+}
@@ -0,0 +1,136 @@
+package org.aa.olympus.impl;
+
+import com.google.common.base.Preconditions;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.aa.olympus.api.Event;
+import org.aa.olympus.api.EventChannel;
+
+/**
+ * Events queued for an element until its next update, in one bucket per channel.
+ *
+ * <p>Payloads are stored as they were injected. Buckets are kept from one update to the next, the
+ * ones that received events since the last {@link #clear()} come first, in order of arrival. As
+ * events are propagated channel by channel, that's the order in which they were delivered.
+ */
+final class PendingEvents {
+
+  private static final Bucket[] NO_BUCKETS = new Bucket[0];
+
+  private Bucket[] buckets = NO_BUCKETS;
+  /** Number of buckets, at the start of {@link #buckets}, that have events */
+  private int active = 0;
+  /** All the events, wrapped on demand */
+  private List<Event> all = null;
+
+  <E> void add(EventChannel<E> channel, E event) {
+    int index = indexOf(channel);
+    if (index < 0) {
+      index = buckets.length;
+      buckets = Arrays.copyOf(buckets, index + 1);
+      buckets[index] = new Bucket(channel);
+    }
+    Bucket bucket = buckets[index];
+    if (bucket.size == 0) {
+      buckets[index] = buckets[active];
+      buckets[active] = bucket;
+      ++active;
+    }
+    bucket.append(event);
+    all = null;
+  }
+
+  @SuppressWarnings("unchecked") // buckets are indexed by channel
+  <E> List<E> get(EventChannel<E> channel) {
+    int index = indexOf(channel);
+    return index < 0 ? Collections.emptyList() : (List<E>) buckets[index];
+  }
+
+  @SuppressWarnings("unchecked") // buckets are indexed by channel
+  <E> E getLatest(EventChannel<E> channel) {
+    int index = indexOf(channel);
+    if (index < 0 || index >= active) {
+      return null;
+    } else {
+      Bucket bucket = buckets[index];
+      return (E) bucket.events[bucket.size - 1];
+    }
+  }
+
+  @SuppressWarnings("unchecked") // buckets are indexed by channel
+  List<Event> getAll() {
+    if (all == null) {
+      if (active == 0) {
+        all = Collections.emptyList();
+      } else {
+        List<Event> results = new ArrayList<>();
+        for (int i = 0; i < active; ++i) {
+          Bucket bucket = buckets[i];
+          for (int j = 0; j < bucket.size; ++j) {
+            results.add(new EventImpl<>(bucket.channel, bucket.events[j]));
+          }
+        }
+        all = Collections.unmodifiableList(results);
+      }
+    }
+    return all;
+  }
+
+  void clear() {
+    for (int i = 0; i < active; ++i) {
+      buckets[i].reset();
+    }
+    active = 0;
+    all = null;
+  }
+
+  private int indexOf(EventChannel channel) {
+    for (int i = 0; i < buckets.length; ++i) {
+      if (buckets[i].channel.equals(channel)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** The events of one channel in a growable array, it's its own read only view */
+  private static final class Bucket extends AbstractList<Object> implements RandomAccess {
+
+    private static final Object[] NO_EVENTS = new Object[0];
+
+    private final EventChannel channel;
+    private Object[] events = NO_EVENTS;
+    private int size = 0;
+
+    private Bucket(EventChannel channel) {
+      this.channel = channel;
+    }
+
+    void append(Object event) {
+      if (size == events.length) {
+        events = Arrays.copyOf(events, Math.max(2, size * 2));
+      }
+      events[size++] = event;
+    }
+
+    void reset() {
+      Arrays.fill(events, 0, size, null);
+      size = 0;
+    }
+
+    @Override
+    public Object get(int index) {
+      Preconditions.checkElementIndex(index, size);
+      return events[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package org.aa.olympus.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Writes records to a file, each prefixed with its size, to be read by a {@link MappedFileReader}
+ */
+interface RecordWriter {
+
+  /**
+   * Write a record, from the current position of the buffer
+   *
+   * <p>{@code record} may be called again with a bigger buffer if it overflows the first one.
+   */
+  void write(Consumer<? super ByteBuffer> record) throws IOException;
+}
@@ -0,0 +1,54 @@
+package org.aa.olympus.impl;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Segment files of a directory, numbered in sequence */
+final class SegmentDirectory {
+
+  private final Path directory;
+  private final String prefix;
+  private final String suffix;
+
+  SegmentDirectory(Path directory, String prefix, String suffix) {
+    this.directory = directory;
+    this.prefix = prefix;
+    this.suffix = suffix;
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  /** The sequence numbers of the segments, in order */
+  List<Long> list() throws IOException {
+    List<Long> sequences = new ArrayList<>();
+    if (Files.isDirectory(directory)) {
+      try (DirectoryStream<Path> paths =
+          Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+        for (Path path : paths) {
+          String name = path.getFileName().toString();
+          sequences.add(
+              Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+        }
+      }
+    }
+    Collections.sort(sequences);
+    return sequences;
+  }
+
+  /** The latest sequence number, or 0 if there are no segments */
+  long getLatest() throws IOException {
+    List<Long> sequences = list();
+    return sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1);
+  }
+
+  Path get(long sequence) {
+    return directory.resolve(String.format("%s%016d%s", prefix, sequence, suffix));
+  }
+}
@@ -0,0 +1,91 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableMap;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.SingletonKey;
+
+/**
+ * The codecs of the keys and states of each entity, and of the events of each channel, with
+ * defaults for common types
+ */
+final class SnapshotCodecs {
+
+  private static final Codec<SingletonKey> SINGLETON =
+      new Codec<SingletonKey>() {
+        @Override
+        public void write(ByteBuffer buffer, SingletonKey value) {}
+
+        @Override
+        public SingletonKey read(ByteBuffer buffer) {
+          return SingletonKey.getInstance();
+        }
+      };
+
+  private static final ImmutableMap<Class<?>, Codec<?>> DEFAULTS =
+      ImmutableMap.<Class<?>, Codec<?>>builder()
+          .put(String.class, Codecs.STRING)
+          .put(Double.class, Codecs.of(Codecs.DOUBLE))
+          .put(Long.class, Codecs.of(Codecs.LONG))
+          .put(Integer.class, Codecs.of(Codecs.INT))
+          .put(SingletonKey.class, SINGLETON)
+          .build();
+
+  private final Map<EntityKey, Codec> keyCodecs;
+  private final Map<EntityKey, Codec> stateCodecs;
+  private final Map<EventChannel, Codec> eventCodecs;
+
+  SnapshotCodecs(
+      Map<EntityKey, Codec> keyCodecs,
+      Map<EntityKey, Codec> stateCodecs,
+      Map<EventChannel, Codec> eventCodecs) {
+    this.keyCodecs = ImmutableMap.copyOf(keyCodecs);
+    this.stateCodecs = ImmutableMap.copyOf(stateCodecs);
+    this.eventCodecs = ImmutableMap.copyOf(eventCodecs);
+  }
+
+  @SuppressWarnings("unchecked") // codecs are registered for the entity's types
+  <K> Codec<K> getKeyCodec(EntityKey<K, ?> entityKey) {
+    return (Codec<K>) get(keyCodecs, entityKey, entityKey.getKeyType().getRawType(), "keys");
+  }
+
+  @SuppressWarnings("unchecked") // codecs are registered for the entity's types
+  <S> Codec<S> getStateCodec(EntityKey<?, S> entityKey) {
+    return (Codec<S>) get(stateCodecs, entityKey, entityKey.getStateType().getRawType(), "states");
+  }
+
+  @SuppressWarnings("unchecked") // codecs are registered for the channel's type
+  <E> Codec<E> getEventCodec(EventChannel<E> channel) {
+    Codec<?> codec = eventCodecs.get(channel);
+    if (codec == null) {
+      codec = DEFAULTS.get(channel.getEventType().getRawType());
+    }
+    if (codec == null) {
+      throw new IllegalStateException(
+          String.format(
+              "No codec for the events of %s, see %s#eventCodec",
+              channel, EngineBuilder.class.getSimpleName()));
+    }
+    return (Codec<E>) codec;
+  }
+
+  private static Codec<?> get(
+      Map<EntityKey, Codec> codecs, EntityKey entityKey, Class<?> type, String what) {
+    Codec<?> codec = codecs.get(entityKey);
+    if (codec == null) {
+      codec = DEFAULTS.get(type);
+    }
+    if (codec == null) {
+      throw new IllegalStateException(
+          String.format(
+              "No codec for the %s of %s, see %s#snapshotCodecs",
+              what, entityKey, EngineBuilder.class.getSimpleName()));
+    }
+    return codec;
+  }
+}
@@ -1,6 +1,5 @@
 package org.aa.olympus.impl;
 
-import java.util.Map;
 import org.aa.olympus.api.ElementManager;
 import org.aa.olympus.api.ElementUpdater;
 import org.aa.olympus.api.EntityKey;
@@ -12,40 +11,23 @@ final class SourceManager<K, S> {
 
   private final EntityManager<K, S> entityManager;
 
-  private final Map<K, SourceUnit<K, S>> units;
-
-  SourceManager(Map<K, SourceUnit<K, S>> units, EntityManager<K, S> entityManager) {
-    this.units = units;
+  SourceManager(EntityManager<K, S> entityManager) {
     this.entityManager = entityManager;
   }
 
+  /** Set the state of {@code key}, a null state deletes the element at the next cycle */
+  @SuppressWarnings("unchecked") // the entity is managed by an ElementManagerAdapter
   void setState(K key, S state) {
-    SourceUnit<K, S> unit = units.get(key);
-    if (unit == null) {
-      ElementUnit<K, S> elementUnit = entityManager.get(key, true);
-      unit = units.get(key);
-      unit.setElementUnit(elementUnit);
-      elementUnit.stain();
-    } else if (!unit.ready()) {
-      ElementUnit<K, S> elementUnit = entityManager.get(key, false);
-      unit.setElementUnit(elementUnit);
-      elementUnit.stain();
-    }
-    unit.setState(state);
+    ElementUnit<K, S> elementUnit = entityManager.get(key, true);
+    ((SourceUnit<K, S>) elementUnit.getUpdater()).setState(state);
+    elementUnit.stain();
   }
 
   static final class ElementManagerAdapter<K, S> implements ElementManager<K, S> {
-    private final Map<K, SourceUnit<K, S>> units;
-
-    ElementManagerAdapter(Map<K, SourceUnit<K, S>> units) {
-      this.units = units;
-    }
 
     @Override
     public ElementUpdater<S> create(K key, UpdateContext updateContext, Toolbox toolbox) {
-      SourceUnit<K, S> unit = new SourceUnit<>();
-      units.put(key, unit);
-      return unit;
+      return new SourceUnit<>();
     }
 
     @Override
@@ -0,0 +1,100 @@
+package org.aa.olympus.impl;
+
+import java.util.Arrays;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.StateCodec;
+
+/**
+ * Stores the states of the elements of an entity, in one slot per element.
+ *
+ * <p>Slots are in pages of {@link #PAGE_SIZE} that never move once allocated, so reading states
+ * while slots get allocated is safe. Slots are allocated under the lock of the {@link
+ * EntityManager}, and each slot is only written by the update of its element. Slots of evicted
+ * elements are reused by the next allocations.
+ *
+ * <p>Primitive stores override the primitive accessors, the default ones box and unbox.
+ */
+abstract class StateStore<S> {
+
+  static final int PAGE_BITS = 10;
+  static final int PAGE_SIZE = 1 << PAGE_BITS;
+  static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private int size = 0;
+  /** Released slots, as a stack */
+  private int[] free = new int[0];
+
+  private int freeCount = 0;
+
+  /** @param codec to store the states off heap, or null */
+  static <S> StateStore<S> create(EntityKey<?, S> entityKey, StateCodec<S> codec) {
+    if (codec != null) {
+      return OffHeapStateStore.create(codec);
+    } else if (entityKey instanceof EntityKeyImpl) {
+      return ((EntityKeyImpl<?, S>) entityKey).createStateStore();
+    } else {
+      return new ObjectStateStore<>();
+    }
+  }
+
+  int allocate() {
+    if (freeCount > 0) {
+      return free[--freeCount];
+    }
+    int slot = size++;
+    if ((slot & PAGE_MASK) == 0) {
+      addPage(slot >>> PAGE_BITS);
+    }
+    return slot;
+  }
+
+  /** Clear {@code slot} and make it available, its element must not read it anymore */
+  void release(int slot) {
+    clear(slot);
+    if (freeCount == free.length) {
+      free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+    }
+    free[freeCount++] = slot;
+  }
+
+  /** The number of slots in use */
+  int size() {
+    return size - freeCount;
+  }
+
+  /** Allocate page {@code page}, the pages before it exist */
+  abstract void addPage(int page);
+
+  abstract S get(int slot);
+
+  abstract void set(int slot, S state);
+
+  abstract void clear(int slot);
+
+  double getDouble(int slot) {
+    return ((Number) get(slot)).doubleValue();
+  }
+
+  @SuppressWarnings("unchecked") // only called for states of this type
+  void setDouble(int slot, double state) {
+    set(slot, (S) Double.valueOf(state));
+  }
+
+  long getLong(int slot) {
+    return ((Number) get(slot)).longValue();
+  }
+
+  @SuppressWarnings("unchecked") // only called for states of this type
+  void setLong(int slot, long state) {
+    set(slot, (S) Long.valueOf(state));
+  }
+
+  int getInt(int slot) {
+    return ((Number) get(slot)).intValue();
+  }
+
+  @SuppressWarnings("unchecked") // only called for states of this type
+  void setInt(int slot, int state) {
+    set(slot, (S) Integer.valueOf(state));
+  }
+}
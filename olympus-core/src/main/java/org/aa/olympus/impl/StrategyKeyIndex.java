@@ -0,0 +1,71 @@
+package org.aa.olympus.impl;
+
+import org.aa.olympus.api.HashingStrategy;
+
+/** Indexes keys with a {@link HashingStrategy}, keeping their hashes next to them */
+final class StrategyKeyIndex<K, V> extends OpenKeyIndex<K, V> {
+
+  private final HashingStrategy<? super K> hashing;
+  private Object[] keys = new Object[MIN_CAPACITY];
+  private int[] hashes = new int[MIN_CAPACITY];
+
+  StrategyKeyIndex(HashingStrategy<? super K> hashing) {
+    this.hashing = hashing;
+  }
+
+  @Override
+  int find(K key) {
+    return find(key, mix(hashing.hash(key)));
+  }
+
+  @SuppressWarnings("unchecked") // only keys are stored
+  private int find(K key, int hash) {
+    int mask = values.length - 1;
+    int slot = hash & mask;
+    while (values[slot] != null && (hashes[slot] != hash || !hashing.equals((K) keys[slot], key))) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @Override
+  int hashAt(int slot) {
+    return hashes[slot];
+  }
+
+  @Override
+  void setKey(int slot, K key) {
+    keys[slot] = key;
+    hashes[slot] = mix(hashing.hash(key));
+  }
+
+  @Override
+  void moveKey(int from, int to) {
+    keys[to] = keys[from];
+    hashes[to] = hashes[from];
+  }
+
+  @Override
+  void clearKey(int slot) {
+    keys[slot] = null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only keys are stored
+  void resize(int capacity) {
+    Object[] oldKeys = keys;
+    int[] oldHashes = hashes;
+    Object[] oldValues = values;
+    keys = new Object[capacity];
+    hashes = new int[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldValues.length; ++i) {
+      if (oldValues[i] != null) {
+        int slot = find((K) oldKeys[i], oldHashes[i]);
+        keys[slot] = oldKeys[i];
+        hashes[slot] = oldHashes[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
@@ -1,53 +1,235 @@
 package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.time.ZoneOffset;
+import org.aa.olympus.api.TimerState;
 
+/**
+ * Stores pending timers in a hierarchical timing wheel.
+ *
+ * <p>Deadlines are converted to ticks of one nanosecond since the epoch (UTC), with the sign bit
+ * flipped so ticks compare as unsigned longs. The wheel has {@link #LEVELS} levels of {@link
+ * #SLOTS} slots: a timer goes to the level of the highest 6 bits digit where its deadline differs
+ * from the current tick, in the slot of its deadline's digit. Slots are intrusive linked lists, so
+ * adding and cancelling a timer is O(1). As time goes by, slots of higher levels get cascaded to
+ * lower levels, and slots of the first level hold timers of the exact same tick, which get
+ * triggered.
+ */
 public final class TimerStore {
 
+  private static final int BITS = 6;
+  private static final int SLOTS = 1 << BITS;
+  private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
   private final EngineContext engineContext;
-  private final Map<LocalDateTime, List<ElementTimerImpl>> timers = new TreeMap<>();
+  private final ElementTimerImpl[] heads = new ElementTimerImpl[LEVELS * SLOTS];
+  private final ElementTimerImpl[] tails = new ElementTimerImpl[LEVELS * SLOTS];
+  /** For each level, one bit per non empty slot */
+  private final long[] occupied = new long[LEVELS];
+  /** Timers due at this tick or before have been triggered */
+  private long current = 0L;
+
+  private int size = 0;
 
   public TimerStore(EngineContext engineContext) {
     this.engineContext = engineContext;
   }
 
-  ElementTimerImpl create(ElementUnit unit, LocalDateTime timerAt) {
-    Preconditions.checkArgument(
-        timerAt.isAfter(engineContext.getLatestContext().getTime()),
-        "Cannot set timer in the past: {} vs {}",
-        timerAt,
-        engineContext.getLatestContext());
-    List<ElementTimerImpl> slot = timers.computeIfAbsent(timerAt, k -> new ArrayList<>());
-    ElementTimerImpl timer = new ElementTimerImpl(unit, timerAt, this, slot);
-    slot.add(timer);
+  synchronized ElementTimerImpl create(ElementUnit unit, LocalDateTime timerAt, Duration period) {
+    checkInFuture(timerAt);
+    ElementTimerImpl timer = new ElementTimerImpl(unit, timerAt, toTick(timerAt), period, this);
+    schedule(timer);
+    ++size;
     return timer;
   }
 
-  void removeSlot(LocalDateTime timerAt) {
-    List<ElementTimerImpl> timers = this.timers.remove(timerAt);
-    Preconditions.checkArgument(
-        timers != null && timers.isEmpty(),
-        "Only empty slots can be removed: %s %s",
-        timerAt,
-        timers);
+  synchronized void reschedule(ElementTimerImpl timer, LocalDateTime timerAt) {
+    checkInFuture(timerAt);
+    long deadline = toTick(timerAt);
+    if (timer.getState() == TimerState.READY) {
+      unlink(timer);
+    } else {
+      ++size;
+    }
+    timer.moveTo(timerAt, deadline);
+    schedule(timer);
+  }
+
+  synchronized void cancel(ElementTimerImpl timer) {
+    unlink(timer);
+    --size;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * The deadline of the next timer, or null if there are none
+   *
+   * <p>Timers of lower levels are due before the ones of higher levels, and slots of a level are in
+   * order, so the next timer is in the first slot of the lowest non empty level.
+   */
+  synchronized LocalDateTime getNextTimerAt() {
+    for (int level = 0; level < LEVELS; ++level) {
+      if (occupied[level] != 0L) {
+        ElementTimerImpl next = heads[level * SLOTS + Long.numberOfTrailingZeros(occupied[level])];
+        for (ElementTimerImpl timer = next.next; timer != null; timer = timer.next) {
+          if (Long.compareUnsigned(timer.deadline, next.deadline) < 0) {
+            next = timer;
+          }
+        }
+        return next.getTimerAt();
+      }
+    }
+    return null;
   }
 
-  int notifyNext(LocalDateTime limit) {
+  /**
+   * Trigger all the timers due at or before {@code limit}
+   *
+   * @return the number of triggered timers
+   */
+  synchronized int notifyNext(LocalDateTime limit) {
+    long limitTick = toLimitTick(limit);
     int results = 0;
-    for (Map.Entry<LocalDateTime, List<ElementTimerImpl>> entry : timers.entrySet()) {
-      if (entry.getKey().isAfter(limit)) {
+    while (Long.compareUnsigned(current, limitTick) < 0) {
+      int level = 0;
+      while (level < LEVELS && occupied[level] == 0L) {
+        ++level;
+      }
+      if (level == LEVELS) {
         break;
-      } else {
-        entry.getValue().forEach(ElementTimerImpl::trigger);
-        entry.getValue().clear();
-        results += entry.getValue().size();
+      }
+      // Timers of the lowest non empty level are due before any other timer
+      int slot = Long.numberOfTrailingZeros(occupied[level]);
+      int shift = level * BITS;
+      long higher = shift + BITS >= Long.SIZE ? 0L : current & (-1L << (shift + BITS));
+      long slotStart = higher | ((long) slot << shift);
+      if (Long.compareUnsigned(slotStart, limitTick) > 0) {
+        break;
+      }
+      current = slotStart;
+      ElementTimerImpl timer = detach(level * SLOTS + slot, level, slot);
+      while (timer != null) {
+        ElementTimerImpl next = timer.next;
+        timer.previous = null;
+        timer.next = null;
+        if (timer.deadline == current) {
+          timer.trigger();
+          ++results;
+          if (!timer.isRecurring() || !rearm(timer, limitTick)) {
+            --size;
+          }
+        } else {
+          schedule(timer);
+        }
+        timer = next;
       }
     }
+    if (Long.compareUnsigned(current, limitTick) < 0) {
+      current = limitTick;
+    }
     return results;
   }
+
+  /**
+   * Move a recurring timer to its first occurrence after {@code limitTick}, occurrences in between
+   * are skipped
+   *
+   * @return false if the next occurrence is out of range
+   */
+  private boolean rearm(ElementTimerImpl timer, long limitTick) {
+    try {
+      long period = timer.getPeriod().toNanos();
+      long periods = Long.divideUnsigned(limitTick - timer.deadline, period) + 1;
+      LocalDateTime timerAt = timer.getTimerAt().plusNanos(Math.multiplyExact(periods, period));
+      timer.moveTo(timerAt, toTick(timerAt));
+    } catch (ArithmeticException | IllegalArgumentException | DateTimeException e) {
+      return false;
+    }
+    schedule(timer);
+    return true;
+  }
+
+  private void checkInFuture(LocalDateTime timerAt) {
+    Preconditions.checkArgument(
+        timerAt.isAfter(engineContext.getLatestContext().getTime()),
+        "Cannot set timer in the past: %s vs %s",
+        timerAt,
+        engineContext.getLatestContext());
+  }
+
+  private void schedule(ElementTimerImpl timer) {
+    long diff = timer.deadline ^ current;
+    Preconditions.checkState(
+        diff != 0L && Long.compareUnsigned(timer.deadline, current) > 0,
+        "Timer %s is not after the current tick",
+        timer.getTimerAt());
+    int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(diff)) / BITS;
+    int slot = (int) (timer.deadline >>> (level * BITS)) & (SLOTS - 1);
+    int bucket = level * SLOTS + slot;
+    timer.bucket = bucket;
+    ElementTimerImpl tail = tails[bucket];
+    if (tail == null) {
+      heads[bucket] = timer;
+      occupied[level] |= 1L << slot;
+    } else {
+      tail.next = timer;
+      timer.previous = tail;
+    }
+    tails[bucket] = timer;
+  }
+
+  private void unlink(ElementTimerImpl timer) {
+    int bucket = timer.bucket;
+    if (timer.previous == null) {
+      heads[bucket] = timer.next;
+    } else {
+      timer.previous.next = timer.next;
+    }
+    if (timer.next == null) {
+      tails[bucket] = timer.previous;
+    } else {
+      timer.next.previous = timer.previous;
+    }
+    timer.previous = null;
+    timer.next = null;
+    if (heads[bucket] == null) {
+      occupied[bucket / SLOTS] &= ~(1L << (bucket % SLOTS));
+    }
+  }
+
+  private ElementTimerImpl detach(int bucket, int level, int slot) {
+    ElementTimerImpl head = heads[bucket];
+    heads[bucket] = null;
+    tails[bucket] = null;
+    occupied[level] &= ~(1L << slot);
+    return head;
+  }
+
+  static long toTick(LocalDateTime time) {
+    try {
+      long nanos =
+          Math.addExact(
+              Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), NANOS_PER_SECOND),
+              time.getNano());
+      return nanos ^ Long.MIN_VALUE;
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Timer out of range: " + time, e);
+    }
+  }
+
+  /** Times out of range get the first or the last tick, as no timer can be set there */
+  private static long toLimitTick(LocalDateTime time) {
+    try {
+      return toTick(time);
+    } catch (IllegalArgumentException e) {
+      return time.getYear() < 1970 ? 0L : -1L;
+    }
+  }
 }
@@ -1,10 +1,9 @@
 package org.aa.olympus.impl;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 import org.aa.olympus.api.ElementHandle;
 import org.aa.olympus.api.ElementTimer;
 import org.aa.olympus.api.EntityKey;
@@ -12,58 +11,68 @@ import org.aa.olympus.api.Event;
 import org.aa.olympus.api.EventChannel;
 import org.aa.olympus.api.Toolbox;
 
-// TODO: One toolbox per ElementUnit
 // TODO: prefetch deps
 // TODO: how to deal with multiple subscriptions
 public class ToolboxImpl implements Toolbox {
 
-  private final TimerStore timerStore;
-  private final ImmutableMap<EntityKey, EntityManager> dependencies;
-  private final ElementUnit unit;
-  private final List<Event> events;
+  private final ElementUnit<?, ?> unit;
 
-  public ToolboxImpl(
-      TimerStore timerStore,
-      ImmutableMap<EntityKey, EntityManager> dependencies,
-      ElementUnit unit,
-      List<Event> events) {
-    this.timerStore = timerStore;
-    this.dependencies = dependencies;
+  public ToolboxImpl(ElementUnit<?, ?> unit) {
     this.unit = unit;
-    this.events = events;
   }
 
   @Override
   public <K, S> ElementHandle<K, S> get(EntityKey<K, S> entityKey, K elementKey) {
 
-    Preconditions.checkArgument(
-        dependencies.containsKey(entityKey),
-        "Cannot %s see elements from to %s. You must declare %s as a dependency of %s",
-        unit.getEntityKey(),
-        entityKey,
-        unit.getEntityKey(),
-        entityKey);
     @SuppressWarnings("unchecked") // we know this is safe
-    EntityManager<K, S> entityManager = (EntityManager<K, S>) dependencies.get(entityKey);
+    EntityManager<K, S> entityManager =
+        (EntityManager<K, S>) unit.getEntityManager().getDependencyManagers().get(entityKey);
+    if (entityManager == null) {
+      // Not using Preconditions as its varargs would allocate on every lookup
+      throw new IllegalArgumentException(
+          String.format(
+              "Cannot %s see elements from to %s. You must declare %s as a dependency of %s",
+              unit.getEntityKey(), entityKey, unit.getEntityKey(), entityKey));
+    }
     ElementUnit<K, S> broadcaster = entityManager.get(elementKey, true);
-    return broadcaster.createHandleAdapter(unit);
+    return unit.getHandle(broadcaster);
+  }
+
+  @Override
+  public List<ElementHandle<?, ?>> getUpdatedHandles() {
+    return unit.getUpdatedHandles();
   }
 
   @Override
   public List<Event> getEvents() {
-    return events;
+    return unit.getEvents();
   }
 
   @Override
   public <E> List<E> getEvents(EventChannel<E> channel) {
-    return events.stream()
-        .filter(e -> e.getChannel().equals(channel))
-        .map(channel::castEvent)
-        .collect(Collectors.toList());
+    return unit.getEvents(channel);
+  }
+
+  @Override
+  public <E> E getLatestEvent(EventChannel<E> channel) {
+    return unit.getLatestEvent(channel);
   }
 
   @Override
   public ElementTimer setTimer(LocalDateTime timerAt) {
-    return timerStore.create(this.unit, timerAt);
+    ElementTimerImpl timer =
+        unit.getEntityManager().getTimerStore().create(this.unit, timerAt, Duration.ZERO);
+    unit.addTimer(timer);
+    return timer;
+  }
+
+  @Override
+  public ElementTimer setTimer(LocalDateTime timerAt, Duration period) {
+    Preconditions.checkArgument(
+        !period.isNegative() && !period.isZero(), "Timer period must be positive: %s", period);
+    ElementTimerImpl timer =
+        unit.getEntityManager().getTimerStore().create(this.unit, timerAt, period);
+    unit.addTimer(timer);
+    return timer;
   }
 }
@@ -0,0 +1,62 @@
+package org.aa.olympus.examples;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.examples.PositionTracking.PositionKey;
+
+/**
+ * Measures the heap used by the engine per element, for the {@link PositionTracking} example.
+ *
+ * <p>The keys are allocated before the first measurement, so they're not accounted for. This is not
+ * a unit test, run it manually with {@code [positions]} as argument.
+ */
+public final class PositionTrackingFootprint {
+
+  private static final int PRODUCTS = 1_000;
+  private static final int MATURITIES = 10;
+  private static final int BATCH_SIZE = 100_000;
+
+  private static long usedHeap() {
+    for (int i = 0; i < 5; ++i) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  public static void main(String[] args) {
+    int positions = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+    int accounts = Math.max(1, positions / (PRODUCTS * MATURITIES));
+    PositionKey[] keys = new PositionKey[positions];
+    for (int i = 0; i < positions; ++i) {
+      keys[i] =
+          PositionTracking.key(
+              "P" + (i % PRODUCTS),
+              "M" + (i / PRODUCTS % MATURITIES),
+              "A" + (i / (PRODUCTS * MATURITIES) % accounts));
+    }
+
+    long before = usedHeap();
+    Engine engine = PositionTracking.createEngine();
+    LocalDateTime now = LocalDateTime.of(2019, 1, 1, 0, 0);
+    for (int i = 0; i < positions; ++i) {
+      engine.injectEvent(PositionTracking.POSITION_CHANNEL, KeyValuePair.of(keys[i], 1));
+      if ((i + 1) % BATCH_SIZE == 0) {
+        now = now.plusSeconds(1);
+        engine.runOnce(now);
+      }
+    }
+    engine.runOnce(now.plusSeconds(1));
+    long after = usedHeap();
+
+    int elements = positions + positions / MATURITIES + accounts + 1;
+    System.out.printf(
+        "positions=%,d keys=%,d elements=%,d heap=%,dMB bytes/element=%.0f total=%d%n",
+        positions,
+        keys.length,
+        elements,
+        (after - before) >> 20,
+        (after - before) / (double) elements,
+        engine.getState(PositionTracking.COMPANY, PositionTracking.key(null, null, null)));
+  }
+}
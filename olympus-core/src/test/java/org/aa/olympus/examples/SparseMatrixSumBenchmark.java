@@ -0,0 +1,86 @@
+package org.aa.olympus.examples;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.examples.SparseMatrixSum.Position;
+
+/**
+ * Measures the latency of a cycle that touches a handful of cells, as the number of untouched cells
+ * in the matrix grows.
+ *
+ * <p>This is not a unit test, run it manually with {@code [size...]} as arguments.
+ */
+public final class SparseMatrixSumBenchmark {
+
+  private static final int TOUCHED_PER_CYCLE = 10;
+  private static final int WARM_UP_CYCLES = 200;
+  private static final int MEASURED_CYCLES = 1000;
+
+  private final Engine engine = SparseMatrixSum.createEngine();
+  private final Random random = new Random(42);
+  private final int side;
+  private LocalDateTime now = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+  private SparseMatrixSumBenchmark(int size) {
+    this.side = (int) Math.ceil(Math.sqrt(size));
+  }
+
+  private void update(int row, int col, int value) {
+    engine.injectEvent(
+        SparseMatrixSum.UPDATE_CHANNEL, KeyValuePair.of(Position.of(row, col), value));
+  }
+
+  private void runOnce() {
+    now = now.plusNanos(1000);
+    engine.runOnce(now);
+  }
+
+  private void populate() {
+    for (int row = 0; row < side; ++row) {
+      for (int col = 0; col < side; ++col) {
+        update(row, col, 1);
+      }
+      if (row % 100 == 0) {
+        runOnce();
+      }
+    }
+    runOnce();
+  }
+
+  private void touch() {
+    for (int i = 0; i < TOUCHED_PER_CYCLE; ++i) {
+      update(random.nextInt(side), random.nextInt(side), random.nextInt(100));
+    }
+    runOnce();
+  }
+
+  /** @return the average latency of a cycle, in micro seconds */
+  private double measure() {
+    populate();
+    for (int i = 0; i < WARM_UP_CYCLES; ++i) {
+      touch();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_CYCLES; ++i) {
+      touch();
+    }
+    return (System.nanoTime() - start) / 1_000.0 / MEASURED_CYCLES;
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = {10_000, 100_000, 1_000_000};
+    if (args.length != 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; ++i) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    for (int size : sizes) {
+      SparseMatrixSumBenchmark benchmark = new SparseMatrixSumBenchmark(size);
+      System.out.printf(
+          "cells=%,d touched=%d cycle=%.1fus%n",
+          benchmark.side * benchmark.side, TOUCHED_PER_CYCLE, benchmark.measure());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.LocalDateTime;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.examples.WorldCountExample;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdjacencyTest {
+
+  private EntityManager<String, Integer> entityManager;
+
+  @Before
+  public void setUp() {
+    EngineContext engineContext = new EngineContext(null, null);
+    engineContext.setLatestContext(new UpdateContextImpl(LocalDateTime.of(2019, 1, 1, 0, 0), 1));
+    entityManager =
+        new EntityManager<>(
+            engineContext,
+            new TimerStore(engineContext),
+            WorldCountExample.COUNTER,
+            new WorldCountExample.CounterElementManager(),
+            ImmutableMap.of(),
+            ImmutableSet.of(),
+            ImmutableSet.of());
+  }
+
+  @Test
+  public void testHandlesAboveScanLimit() {
+    ElementUnit<String, Integer> subscriber = entityManager.get("subscriber", false);
+    ElementHandleAdapter[] handles = new ElementHandleAdapter[20];
+    for (int i = 0; i < handles.length; ++i) {
+      handles[i] = subscriber.getHandle(entityManager.get("b" + i, false));
+    }
+    for (int i = 0; i < handles.length; ++i) {
+      ElementUnit<String, Integer> broadcaster = entityManager.get("b" + i, false);
+      Assert.assertSame(handles[i], subscriber.getHandle(broadcaster));
+      Assert.assertSame(broadcaster, handles[i].getBroadcaster());
+    }
+  }
+
+  @Test
+  public void testUnsubscribeSwapsLast() {
+    ElementUnit<String, Integer> broadcaster = entityManager.get("broadcaster", false);
+    ElementHandleAdapter[] handles = new ElementHandleAdapter[3];
+    for (int i = 0; i < handles.length; ++i) {
+      handles[i] = entityManager.get("s" + i, false).getHandle(broadcaster);
+      handles[i].subscribe(SubscriptionType.STRONG);
+      Assert.assertEquals(i, handles[i].getSubscriberIndex());
+    }
+
+    handles[0].subscribe(SubscriptionType.NONE);
+    Assert.assertEquals(-1, handles[0].getSubscriberIndex());
+    Assert.assertEquals(0, handles[2].getSubscriberIndex());
+    Assert.assertEquals(1, handles[1].getSubscriberIndex());
+    Assert.assertFalse(broadcaster.updateSubscriber(handles[0], false));
+
+    handles[0].subscribe(SubscriptionType.OPTIONAL);
+    Assert.assertEquals(2, handles[0].getSubscriberIndex());
+    Assert.assertFalse(broadcaster.updateSubscriber(handles[0], true));
+  }
+}
@@ -0,0 +1,62 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.examples.KeyValuePair;
+import org.aa.olympus.impl.SubscriptionTypeTest.FailOn42Manager;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BroadcasterStatusTest {
+
+  private static final EventChannel<KeyValuePair<String, String>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, String>>() {});
+  private static final EntityKey<String, String> INPUT =
+      Olympus.key("INPUT", String.class, String.class);
+  private static final EntityKey<String, String> FIRST =
+      Olympus.key("FIRST", String.class, String.class);
+  private static final EntityKey<String, String> SECOND =
+      Olympus.key("SECOND", String.class, String.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(FIRST, new FailOn42Manager(INPUT), ImmutableSet.of(INPUT))
+            .registerInnerEntity(SECOND, new FailOn42Manager(FIRST), ImmutableSet.of(FIRST))
+            .build();
+  }
+
+  private void set(String value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of("foo", value)).runOnce();
+  }
+
+  private ElementStatus getStatus(EntityKey<String, String> entityKey) {
+    return engine.getElement(entityKey, "foo").getStatus();
+  }
+
+  @Test
+  public void testUpstreamErrorPropagates() {
+    set("foo");
+    Assert.assertEquals("foo", engine.getState(SECOND, "foo"));
+
+    set("42");
+    Assert.assertEquals(ElementStatus.ERROR, getStatus(FIRST));
+    Assert.assertEquals(ElementStatus.UPSTREAM_ERROR, getStatus(SECOND));
+
+    set("bar");
+    Assert.assertEquals(ElementStatus.OK, getStatus(FIRST));
+    Assert.assertEquals(ElementStatus.OK, getStatus(SECOND));
+    Assert.assertEquals("bar", engine.getState(SECOND, "foo"));
+  }
+}
@@ -0,0 +1,309 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointTest {
+
+  private static final EventChannel<KeyValuePair<String, Integer>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EntityKey<String, Integer> INPUT =
+      Olympus.key("INPUT", String.class, Integer.class);
+  private static final EntityKey<String, Integer> LEAF =
+      Olympus.key("LEAF", String.class, Integer.class);
+  private static final EntityKey<String, Integer> TOTAL =
+      Olympus.key("TOTAL", String.class, Integer.class);
+  private static final EntityKey<String, Integer> WATCHER =
+      Olympus.key("WATCHER", String.class, Integer.class);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+  private LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+
+  @Before
+  public void setUp() {
+    directory = folder.getRoot().toPath().resolve("checkpoints");
+  }
+
+  private static EngineImpl build(Path checkpoints, Path restoreFrom) {
+    return build(TOTAL, new TotalManager(), checkpoints, restoreFrom);
+  }
+
+  /** With {@code downstream} depending on the leaves */
+  private static EngineImpl build(
+      EntityKey<String, Integer> downstream,
+      ElementManager<String, Integer> manager,
+      Path checkpoints,
+      Path restoreFrom) {
+    EngineBuilder builder =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(LEAF, new LeafManager(), ImmutableSet.of(INPUT))
+            .registerInnerEntity(downstream, manager, ImmutableSet.of(LEAF));
+    if (checkpoints != null) {
+      builder.checkpointTo(checkpoints);
+    }
+    if (restoreFrom != null) {
+      builder.restoreFrom(restoreFrom);
+    }
+    return (EngineImpl) builder.build();
+  }
+
+  private void run(EngineImpl engine, String key, int value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of(key, value));
+    now = now.plusMinutes(1);
+    engine.runOnce(now);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testIncremental() throws IOException {
+    EngineImpl engine = build(directory, null);
+    for (int i = 0; i < 100; ++i) {
+      run(engine, "key" + i, i + 1);
+    }
+    engine.checkpoint();
+    run(engine, "key0", 10);
+    engine.checkpoint();
+
+    List<Path> segments = segments();
+    Assert.assertEquals(2, segments.size());
+    // Only the input, the leaf and the total that changed
+    Assert.assertTrue(Files.size(segments.get(1)) * 5 < Files.size(segments.get(0)));
+
+    EngineImpl restored = build(null, directory);
+    Assert.assertEquals(10, restored.getState(LEAF, "key0").intValue());
+    Assert.assertEquals(50, restored.getState(LEAF, "key49").intValue());
+    Assert.assertEquals(5059, restored.getState(TOTAL, "total").intValue());
+    Assert.assertEquals(
+        engine.getLatestContext().getUpdateId(), restored.getLatestContext().getUpdateId());
+    run(restored, "key1", 5);
+    Assert.assertEquals(5062, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testEvictions() throws IOException {
+    EngineImpl engine = build(directory, null);
+    run(engine, "_a", 1);
+    run(engine, "b", 2);
+    engine.checkpoint();
+    run(engine, "_a", -1);
+    engine.checkpoint();
+
+    EngineImpl restored = build(null, directory);
+    Assert.assertNull(restored.getState(LEAF, "_a"));
+    Assert.assertEquals(1, restored.getEntityManager(LEAF).getUnitCount());
+    Assert.assertEquals(2, restored.getState(TOTAL, "total").intValue());
+    run(engine, "c", 3);
+    engine.checkpoint();
+    restored = build(null, directory);
+    Assert.assertNull(restored.getState(LEAF, "_a"));
+    Assert.assertEquals(3, restored.getState(LEAF, "c").intValue());
+    Assert.assertEquals(5, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testDeleted() throws IOException {
+    EngineImpl engine = build(directory, null);
+    run(engine, "a", 1);
+    run(engine, "b", 2);
+    engine.checkpoint();
+    run(engine, "a", 0);
+    engine.checkpoint();
+
+    EngineImpl restored = build(null, directory);
+    Assert.assertNull(restored.getState(LEAF, "a"));
+    Assert.assertEquals(1, restored.getEntityManager(LEAF).getUnitCount());
+    // The total was waiting for the next cycle
+    restored.runOnce(now.plusMinutes(1));
+    Assert.assertEquals(2, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testWeakEvictions() throws IOException {
+    EngineImpl engine = build(WATCHER, new WatcherManager(), directory, null);
+    run(engine, "a", 1);
+    run(engine, "b", 2);
+    engine.checkpoint();
+    // The watcher doesn't update, its saved record keeps its handle to "a"
+    run(engine, "a", 0);
+    engine.checkpoint();
+
+    EngineImpl restored = build(WATCHER, new WatcherManager(), null, directory);
+    Assert.assertNull(restored.getState(LEAF, "a"));
+    Assert.assertEquals(2, restored.getState(LEAF, "b").intValue());
+    Assert.assertEquals(2, restored.getState(WATCHER, "watcher").intValue());
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    EngineImpl engine = build(directory, null);
+    run(engine, "_a", 1);
+    engine.checkpoint();
+    for (int i = 0; i < EngineCheckpoints.COMPACTION_THRESHOLD; ++i) {
+      run(engine, "key" + i, i + 1);
+      engine.checkpoint();
+    }
+    engine.getCheckpoints().getCompaction().join();
+    Assert.assertEquals(1, segments().size());
+
+    run(engine, "_a", -1);
+    engine.checkpoint();
+    Assert.assertEquals(2, segments().size());
+    EngineImpl restored = build(null, directory);
+    Assert.assertNull(restored.getState(LEAF, "_a"));
+    Assert.assertEquals(36, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testCarryOn() throws IOException {
+    EngineImpl engine = build(directory, null);
+    run(engine, "a", 1);
+    run(engine, "b", 2);
+    engine.checkpoint();
+
+    EngineImpl restored = build(directory, directory);
+    run(restored, "b", 5);
+    restored.checkpoint();
+    List<Path> segments = segments();
+    Assert.assertEquals(2, segments.size());
+    Assert.assertTrue(Files.size(segments.get(1)) < Files.size(segments.get(0)));
+
+    EngineImpl again = build(null, directory);
+    Assert.assertEquals(5, again.getState(LEAF, "b").intValue());
+    Assert.assertEquals(6, again.getState(TOTAL, "total").intValue());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNotEnabled() throws IOException {
+    build(null, null).checkpoint();
+  }
+
+  /** Copies its input, getting deleted for 0, and for good for negative values */
+  private static final class LeafManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      ElementHandle<String, Integer> input =
+          toolbox.get(INPUT, key).subscribe(SubscriptionType.STRONG);
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          int value = input.getState();
+          if (value < 0) {
+            input.subscribe(SubscriptionType.NONE);
+          }
+          return value <= 0 ? UpdateResult.delete() : UpdateResult.update(value);
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          return true;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  private static final class TotalManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new TotalUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      // Leaves of keys starting with an underscore aren't part of the total
+      if (!((String) key).startsWith("_")) {
+        notifier.notifyElement("total");
+      }
+    }
+  }
+
+  /** Counts the leaves it was told about, without updating when they do */
+  private static final class WatcherManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      List<ElementHandle<String, Integer>> leaves = new ArrayList<>();
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          return UpdateResult.maybe(leaves.size());
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          leaves.add(LEAF.castHandle(handle).subscribe(SubscriptionType.WEAK));
+          return true;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement("watcher");
+    }
+  }
+
+  /** Sums all the leaves, subscribing to them */
+  private static final class TotalUpdater implements ElementUpdater<Integer> {
+
+    private final List<ElementHandle<String, Integer>> leaves = new ArrayList<>();
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.update(leaves.stream().mapToInt(h -> h.getStateOrDefault(0)).sum());
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      leaves.add(LEAF.castHandle(handle).subscribe(SubscriptionType.STRONG));
+      return true;
+    }
+  }
+}
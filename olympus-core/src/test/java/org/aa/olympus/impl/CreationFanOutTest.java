@@ -0,0 +1,231 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CreationFanOutTest {
+
+  private static final EventChannel<KeyValuePair<String, String>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, String>>() {});
+  private static final EntityKey<String, String> SOURCE =
+      Olympus.key("SOURCE", String.class, String.class);
+  private static final EntityKey<String, String> WATCHER =
+      Olympus.key("WATCHER", String.class, String.class);
+  private static final EntityKey<String, String> LAZY_WATCHER =
+      Olympus.key("LAZY_WATCHER", String.class, String.class);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, SOURCE, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(WATCHER, new WatcherManager(false), ImmutableSet.of(SOURCE))
+            .registerInnerEntity(LAZY_WATCHER, new WatcherManager(true), ImmutableSet.of(SOURCE))
+            .build();
+  }
+
+  private void create(String... keys) {
+    for (String key : keys) {
+      engine.injectEvent(CHANNEL, KeyValuePair.of(key, key));
+    }
+    engine.runOnce();
+  }
+
+  private String getWatcher(String key) {
+    return engine.getState(WATCHER, key);
+  }
+
+  @Test
+  public void testTargetedAndShared() {
+    create("w1", "w2");
+    Assert.assertEquals("w1", getWatcher("w1"));
+    Assert.assertEquals("w2", getWatcher("w2"));
+
+    create("*a");
+    Assert.assertEquals("w1,*a", getWatcher("w1"));
+    Assert.assertEquals("w2,*a", getWatcher("w2"));
+
+    // Targeted at w1 and shared, w1 only hears about it once
+    create("*w1");
+    Assert.assertEquals("w1,*a,*w1", getWatcher("w1"));
+    Assert.assertEquals("w2,*a,*w1", getWatcher("w2"));
+
+    create("w3", "*b");
+    Assert.assertEquals("w1,*a,*w1,*b", getWatcher("w1"));
+    Assert.assertEquals("w3,*b", getWatcher("w3"));
+  }
+
+  @Test
+  public void testSharedSkipsShadow() {
+    create("w1");
+    // Toolbox.get creates the elements it looks up, only the engine makes SHADOW units
+    ElementUnit<String, String> ghost =
+        ((EngineImpl) engine).getEntityManager(WATCHER).get("ghost", false);
+    Assert.assertEquals(ElementStatus.SHADOW, ghost.getStatus());
+
+    create("*a");
+    Assert.assertEquals("w1,*a", getWatcher("w1"));
+    Assert.assertSame(ghost, ((EngineImpl) engine).getEntityManager(WATCHER).find("ghost"));
+    Assert.assertEquals(ElementStatus.SHADOW, ghost.getStatus());
+    Assert.assertNull(getWatcher("ghost"));
+  }
+
+  @Test
+  public void testLazy() {
+    create("w1", "w2");
+    Assert.assertEquals("w1", engine.getState(LAZY_WATCHER, "w1"));
+
+    // Watchers only hear about shared creations when they next update
+    create("*a");
+    Assert.assertEquals("w1", engine.getState(LAZY_WATCHER, "w1"));
+    Assert.assertEquals("w2", engine.getState(LAZY_WATCHER, "w2"));
+
+    create("*w1");
+    Assert.assertEquals("w1,*a,*w1", engine.getState(LAZY_WATCHER, "w1"));
+    Assert.assertEquals("w2", engine.getState(LAZY_WATCHER, "w2"));
+
+    // Created in the same cycle, like eager watchers
+    create("w3", "*b");
+    Assert.assertEquals("w3,*b", engine.getState(LAZY_WATCHER, "w3"));
+
+    create("*w2");
+    Assert.assertEquals("w2,*a,*w1,*b,*w2", engine.getState(LAZY_WATCHER, "w2"));
+    create("*w3");
+    Assert.assertEquals("w3,*b,*w2,*w3", engine.getState(LAZY_WATCHER, "w3"));
+  }
+
+  @Test
+  public void testLazyUpdatedHandles() {
+    create("w1");
+    create("*s1");
+    Assert.assertEquals("w1,*s1,+*s1", getWatcher("w1"));
+    Assert.assertEquals("w1", engine.getState(LAZY_WATCHER, "w1"));
+
+    // Updated before the watcher subscribed to it
+    create("*w1");
+    Assert.assertEquals("w1,*s1,+*s1,*w1", getWatcher("w1"));
+    Assert.assertEquals("w1,*s1,*w1,+*s1", engine.getState(LAZY_WATCHER, "w1"));
+  }
+
+  @Test
+  public void testLazyPassedWhenPilingUp() {
+    create("w1");
+    String[] keys = new String[EntityManager.LAZY_CREATIONS_LIMIT];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = "*" + i;
+    }
+    create(keys);
+    Assert.assertEquals(
+        0, ((EngineImpl) engine).getEntityManager(LAZY_WATCHER).getLazyCreationCount());
+    // The watcher asked to update
+    Assert.assertEquals(keys.length + 1, engine.getState(LAZY_WATCHER, "w1").split(",").length);
+  }
+
+  @Test
+  public void testLazyPassedBeforeSnapshot() throws IOException {
+    create("w1", "w2");
+    create("*a");
+    EntityManager<String, String> entityManager =
+        ((EngineImpl) engine).getEntityManager(LAZY_WATCHER);
+    Assert.assertEquals(1, entityManager.getLazyCreationCount());
+
+    engine.writeSnapshot(folder.newFile().toPath());
+    Assert.assertEquals(0, entityManager.getLazyCreationCount());
+    Assert.assertEquals("w1", engine.getState(LAZY_WATCHER, "w1"));
+
+    // Passed once
+    create("*w1");
+    Assert.assertEquals("w1,*a,*w1", engine.getState(LAZY_WATCHER, "w1"));
+  }
+
+  /**
+   * Keys starting with '*' are for all watchers, and for the watcher of the rest of the key if it
+   * starts with 'w'
+   */
+  private static final class WatcherManager implements ElementManager<String, String> {
+
+    private final boolean lazy;
+
+    private WatcherManager(boolean lazy) {
+      this.lazy = lazy;
+    }
+
+    @Override
+    public ElementUpdater<String> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new WatcherUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      String newKey = (String) key;
+      if (newKey.startsWith("*")) {
+        notifier.notifyAllElements();
+        if (newKey.startsWith("*w")) {
+          notifier.notifyElement(newKey.substring(1));
+        }
+      } else {
+        notifier.notifyElement(newKey);
+      }
+    }
+
+    @Override
+    public boolean lazyCreations() {
+      return lazy;
+    }
+  }
+
+  /**
+   * Lists the keys of its new elements, subscribing to the ones starting with "*s", and the keys of
+   * its updated handles prefixed with '+'
+   */
+  private static final class WatcherUpdater implements ElementUpdater<String> {
+
+    private final List<String> seen = new ArrayList<>();
+
+    @Override
+    public UpdateResult<String> update(
+        String previous, UpdateContext updateContext, Toolbox toolbox) {
+      for (ElementHandle<?, ?> updated : toolbox.getUpdatedHandles()) {
+        seen.add("+" + updated.getKey());
+      }
+      return UpdateResult.maybe(String.join(",", seen));
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      String key = (String) handle.getKey();
+      seen.add(key);
+      if (key.startsWith("*s")) {
+        handle.subscribe(SubscriptionType.OPTIONAL);
+      }
+      return true;
+    }
+  }
+}
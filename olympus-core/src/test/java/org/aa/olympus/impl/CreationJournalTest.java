@@ -0,0 +1,82 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.examples.IndexCalculatorExample;
+import org.aa.olympus.examples.IndexCalculatorExample.IndexComposition;
+import org.aa.olympus.examples.IndexCalculatorExample.IndexPricesEntityManager;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CreationJournalTest {
+
+  private final List<String> newPrices = new ArrayList<>();
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(IndexCalculatorExample.COMPOSITION_CHANNEL)
+            .registerEventChannel(IndexCalculatorExample.PRICE_CHANNEL)
+            .eventToEntity(
+                IndexCalculatorExample.COMPOSITION_CHANNEL,
+                IndexCalculatorExample.COMPOSITION,
+                KeyValuePair::getKey,
+                KeyValuePair::getValue)
+            .eventToEntity(
+                IndexCalculatorExample.PRICE_CHANNEL,
+                IndexCalculatorExample.PRICE,
+                KeyValuePair::getKey,
+                KeyValuePair::getValue)
+            .registerInnerEntity(
+                IndexCalculatorExample.INDEX_PRICE,
+                new CountingManager(),
+                ImmutableSet.of(IndexCalculatorExample.PRICE, IndexCalculatorExample.COMPOSITION))
+            .build();
+  }
+
+  @Test
+  public void testCreatedOnlyPropagatedOnce() {
+    engine.injectEvent(
+        IndexCalculatorExample.COMPOSITION_CHANNEL,
+        KeyValuePair.of("TECH", new IndexComposition(ImmutableMap.of("IBM", 1.0))));
+    engine.runOnce();
+    // The index creates the IBM price element, which never gets any price
+    Assert.assertEquals(
+        ElementStatus.CREATED, engine.getElement(IndexCalculatorExample.PRICE, "IBM").getStatus());
+
+    for (int i = 0; i < 5; ++i) {
+      engine.runOnce();
+    }
+    Assert.assertEquals(ImmutableSet.of("IBM").asList(), newPrices);
+
+    engine.injectEvent(IndexCalculatorExample.PRICE_CHANNEL, KeyValuePair.of("GOOGLE", 130.0));
+    engine.injectEvent(IndexCalculatorExample.PRICE_CHANNEL, KeyValuePair.of("IBM", 230.0));
+    engine.runOnce();
+    engine.runOnce();
+    Assert.assertEquals(ImmutableSet.of("IBM", "GOOGLE").asList(), newPrices);
+    Assert.assertEquals(
+        230.0, engine.getElement(IndexCalculatorExample.INDEX_PRICE, "TECH").getState(), 0.0);
+  }
+
+  private final class CountingManager extends IndexPricesEntityManager {
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      if (entityKey.equals(IndexCalculatorExample.PRICE)) {
+        newPrices.add((String) key);
+      }
+      super.onNewKey(entityKey, key, notifier);
+    }
+  }
+}
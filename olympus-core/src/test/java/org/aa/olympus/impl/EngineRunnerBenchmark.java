@@ -0,0 +1,91 @@
+package org.aa.olympus.impl;
+
+import com.google.common.reflect.TypeToken;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineRunner;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.examples.KeyValuePair;
+
+/**
+ * Measures the latency of an idle {@link EngineRunner}, and its throughput under load
+ *
+ * <p>Latency is the round trip of an event and a task reading its result, one at a time. Throughput
+ * is measured with {@code [producers]} threads injecting as fast as they can.
+ *
+ * <p>This is not a unit test, run it manually with {@code [events] [producers]} as arguments.
+ */
+public final class EngineRunnerBenchmark {
+
+  private static final int KEYS = 10_000;
+  private static final int ROUND_TRIPS = 10_000;
+
+  private static final EventChannel<KeyValuePair<Integer, Long>> PRICES =
+      Olympus.channel("PRICES", new TypeToken<KeyValuePair<Integer, Long>>() {});
+  private static final EntityKey<Integer, Long> PRICE = Olympus.longKey("PRICE", Integer.class);
+
+  private static Engine build() {
+    return Olympus.builder()
+        .registerEventChannel(PRICES)
+        .eventToEntity(PRICES, PRICE, KeyValuePair::getKey, KeyValuePair::getValue)
+        .build();
+  }
+
+  private static void latency() throws InterruptedException, ExecutionException {
+    try (EngineRunner runner = EngineRunner.start(build())) {
+      long[] nanos = new long[ROUND_TRIPS];
+      for (int i = 0; i < ROUND_TRIPS; ++i) {
+        long begin = System.nanoTime();
+        runner.injectEvent(PRICES, KeyValuePair.of(i % KEYS, (long) i));
+        runner.submit(p -> p.getLatestContext()).get();
+        nanos[i] = System.nanoTime() - begin;
+      }
+      Arrays.sort(nanos);
+      System.out.println(
+          String.format(
+              "latency: median %,d ns, 99%% %,d ns",
+              nanos[ROUND_TRIPS / 2], nanos[ROUND_TRIPS * 99 / 100]));
+    }
+  }
+
+  private static void throughput(long events, int producers)
+      throws InterruptedException, ExecutionException {
+    try (EngineRunner runner = EngineRunner.start(build())) {
+      Thread[] threads = new Thread[producers];
+      long begin = System.nanoTime();
+      for (int i = 0; i < producers; ++i) {
+        int offset = i;
+        threads[i] =
+            new Thread(
+                () -> {
+                  for (long j = offset; j < events; j += producers) {
+                    runner.injectEvent(PRICES, KeyValuePair.of((int) (j % KEYS), j));
+                  }
+                });
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      runner.submit(p -> p.getLatestContext()).get();
+      long end = System.nanoTime();
+      System.out.println(
+          String.format(
+              "throughput: %,d events in %,d ms, %,d events/s, %,d cycles",
+              events,
+              (end - begin) / 1_000_000,
+              events * 1_000_000_000L / (end - begin),
+              runner.getCycleCount()));
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    long events = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+    int producers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    latency();
+    throughput(events, producers);
+  }
+}
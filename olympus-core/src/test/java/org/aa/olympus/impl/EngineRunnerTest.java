@@ -0,0 +1,210 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineRunner;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EngineRunnerTest {
+
+  private static final EventChannel<String> CHANNEL = Olympus.channel("CHANNEL", String.class);
+  private static final EventChannel<String> OTHER = Olympus.channel("OTHER", String.class);
+  private static final EntityKey<String, String> INPUT =
+      Olympus.key("INPUT", String.class, String.class);
+  private static final EntityKey<String, Integer> TICKS =
+      Olympus.key("TICKS", String.class, Integer.class);
+  private static final Duration PERIOD = Duration.ofMillis(20);
+
+  private Engine engine;
+  private EngineRunner runner;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .registerEventChannel(OTHER)
+            .eventToEntity(CHANNEL, INPUT, p -> p.split("=")[0], p -> p.split("=")[1])
+            .registerInnerEntity(TICKS, new TicksManager(), ImmutableSet.of(INPUT))
+            .build();
+    runner = EngineRunner.start(engine, 256, Duration.ofNanos(50_000));
+  }
+
+  @After
+  public void tearDown() {
+    try {
+      runner.close();
+    } catch (IllegalStateException e) {
+      // Checked by the test
+    }
+  }
+
+  private <K, S> S getState(EntityKey<K, S> entityKey, K key) throws Exception {
+    return runner.submit(p -> p.getState(entityKey, key)).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testInject() throws Exception {
+    runner.injectEvent(CHANNEL, "foo=1");
+    Assert.assertEquals("1", getState(INPUT, "foo"));
+  }
+
+  @Test
+  public void testBatching() throws Exception {
+    int count = 50_000;
+    Thread[] producers = new Thread[2];
+    for (int i = 0; i < producers.length; ++i) {
+      String key = "producer" + i;
+      producers[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < count; ++j) {
+                  runner.injectEvent(CHANNEL, key + "=" + j);
+                }
+              });
+      producers[i].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    Assert.assertEquals(Integer.toString(count - 1), getState(INPUT, "producer0"));
+    Assert.assertEquals(Integer.toString(count - 1), getState(INPUT, "producer1"));
+    Assert.assertTrue(runner.getCycleCount() < producers.length * count);
+  }
+
+  @Test
+  public void testTimers() throws Exception {
+    runner.injectEvent(CHANNEL, "foo=1");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    Integer ticks = null;
+    while ((ticks == null || ticks < 3) && System.nanoTime() < deadline) {
+      Thread.sleep(PERIOD.toMillis());
+      ticks = getState(TICKS, "foo");
+    }
+    Assert.assertNotNull(ticks);
+    Assert.assertTrue(ticks >= 3);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    // Not subscribed to
+    runner.injectEvent(OTHER, "foo");
+    Throwable failure = null;
+    try {
+      runner.submit(Engine::getLatestContext).get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      failure = e.getCause();
+    } catch (IllegalStateException e) {
+      // Failed before the task was submitted
+      failure = e;
+    }
+    Assert.assertEquals("Engine runner failed", failure.getMessage());
+    Assert.assertEquals(IllegalArgumentException.class, failure.getCause().getClass());
+    try {
+      runner.injectEvent(CHANNEL, "foo=1");
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("Engine runner failed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    runner.injectEvent(CHANNEL, "foo=1").injectEvent(CHANNEL, "bar=2");
+    runner.close();
+    // Queued events run before closing
+    Assert.assertEquals("2", engine.getState(INPUT, "bar"));
+    try {
+      runner.submit(Engine::getLatestContext);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("Engine runner is closed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseFromTask() throws Exception {
+    runner.injectEvent(CHANNEL, "foo=1");
+    CompletableFuture<String> closed =
+        runner.submit(
+            p -> {
+              runner.close();
+              return p.getState(INPUT, "foo");
+            });
+    Assert.assertEquals("1", closed.get(5, TimeUnit.SECONDS));
+    try {
+      runner.injectEvent(CHANNEL, "foo=2");
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("Engine runner is closed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseWhileInjecting() throws Exception {
+    int[] accepted = new int[1];
+    Thread producer =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; ; ++i) {
+                  runner.injectEvent(CHANNEL, "foo=" + i);
+                  accepted[0] = i;
+                }
+              } catch (IllegalStateException e) {
+                // Closed
+              }
+            });
+    producer.start();
+    Thread.sleep(20);
+    runner.close();
+    producer.join();
+    // All the events that were accepted ran
+    Assert.assertEquals(Integer.toString(accepted[0]), engine.getState(INPUT, "foo"));
+  }
+
+  /** Counts the timers of each input */
+  private static final class TicksManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      toolbox.setTimer(updateContext.getTime().plus(PERIOD), PERIOD);
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          return UpdateResult.update(previous == null ? 1 : previous + 1);
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+}
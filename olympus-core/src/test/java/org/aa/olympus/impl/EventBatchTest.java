@@ -0,0 +1,103 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.aa.olympus.api.BatchNotifier;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventBatchTest {
+
+  private static final EventChannel<String> FIRST = Olympus.channel("FIRST", String.class);
+  private static final EventChannel<String> SECOND = Olympus.channel("SECOND", String.class);
+  private static final EntityKey<String, String> LOG =
+      Olympus.key("LOG", String.class, String.class);
+
+  private final List<String> batches = new ArrayList<>();
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(SECOND)
+            .registerEventChannel(FIRST)
+            .registerInnerEntity(
+                LOG, new LogManager(), ImmutableSet.of(), ImmutableSet.of(FIRST, SECOND))
+            .build();
+  }
+
+  @Test
+  public void testBatchedByChannel() {
+    engine
+        .injectEvent(FIRST, "a:1")
+        .injectEvent(SECOND, "a:2")
+        .injectEvent(FIRST, "b:3")
+        .injectEvent(FIRST, "a:4")
+        .injectEvent(SECOND, "*:5")
+        .runOnce();
+
+    Assert.assertEquals(ImmutableList.of("SECOND[a:2, *:5]", "FIRST[a:1, b:3, a:4]"), batches);
+    // Channels in order of registration, events in order of injection within a channel
+    Assert.assertEquals("2,5,1,4", engine.getState(LOG, "a"));
+    Assert.assertEquals("3", engine.getState(LOG, "b"));
+
+    engine.injectEvent(SECOND, "*:6").runOnce();
+    Assert.assertEquals("6", engine.getState(LOG, "a"));
+    Assert.assertEquals("6", engine.getState(LOG, "b"));
+  }
+
+  /** Events are "key:value", key "*" is for all elements */
+  private final class LogManager implements ElementManager<String, String> {
+
+    @Override
+    public ElementUpdater<String> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new LogUpdater();
+    }
+
+    @Override
+    public <E> void onEvents(
+        EventChannel<E> channel, List<E> events, BatchNotifier<String, E> notifier) {
+      batches.add(channel.getName() + events);
+      for (E event : events) {
+        String key = ((String) event).split(":")[0];
+        if (key.equals("*")) {
+          notifier.notifyAllElements(event);
+        } else {
+          notifier.notifyElement(key, event);
+        }
+      }
+    }
+  }
+
+  private static final class LogUpdater implements ElementUpdater<String> {
+
+    @Override
+    public UpdateResult<String> update(
+        String previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.update(
+          toolbox.getEvents().stream()
+              .map(p -> ((String) p.getValue()).split(":")[1])
+              .collect(Collectors.joining(",")));
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return false;
+    }
+  }
+}
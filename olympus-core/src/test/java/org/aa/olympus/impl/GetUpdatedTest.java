@@ -0,0 +1,93 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.aa.olympus.api.ElementView;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GetUpdatedTest {
+
+  private static final EventChannel<KeyValuePair<String, String>> SOURCE_CHANNEL =
+      Olympus.channel("SOURCE", new TypeToken<KeyValuePair<String, String>>() {});
+  private static final EntityKey<String, String> SOURCE =
+      Olympus.key("SOURCE", String.class, String.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(SOURCE_CHANNEL)
+            .eventToEntity(SOURCE_CHANNEL, SOURCE, KeyValuePair::getKey, KeyValuePair::getValue)
+            .build();
+  }
+
+  private void inject(String key, String state) {
+    engine.injectEvent(SOURCE_CHANNEL, KeyValuePair.of(key, state));
+  }
+
+  private Set<String> getUpdated(UpdateContext previous) {
+    Set<String> fromList =
+        engine.getUpdated(SOURCE, previous).stream()
+            .map(ElementView::getKey)
+            .collect(Collectors.toSet());
+    Set<String> fromConsumer = new HashSet<>();
+    int count = engine.forEachUpdated(SOURCE, previous, p -> fromConsumer.add(p.getKey()));
+    Assert.assertEquals(fromList, fromConsumer);
+    Assert.assertEquals(fromList.size(), count);
+    return fromList;
+  }
+
+  @Test
+  public void testWithinHistory() {
+    inject("a", "A");
+    inject("b", "B");
+    inject("c", "C");
+    engine.runOnce();
+    UpdateContext first = engine.getLatestContext();
+
+    inject("a", "A2");
+    engine.runOnce();
+    UpdateContext second = engine.getLatestContext();
+
+    inject("b", "B2");
+    inject("a", "A3");
+    engine.runOnce();
+
+    Assert.assertEquals(ImmutableSet.of("a", "b", "c"), getUpdated(UpdateContext.none()));
+    Assert.assertEquals(ImmutableSet.of("a", "b"), getUpdated(first));
+    Assert.assertEquals(ImmutableSet.of("a", "b"), getUpdated(second));
+    Assert.assertEquals(ImmutableSet.of(), getUpdated(engine.getLatestContext()));
+  }
+
+  @Test
+  public void testOlderThanHistory() {
+    inject("a", "A");
+    inject("b", "B");
+    engine.runOnce();
+    UpdateContext first = engine.getLatestContext();
+
+    inject("a", "A2");
+    engine.runOnce();
+    for (int i = 0; i < ChangeLog.HISTORY * 2; ++i) {
+      engine.runOnce();
+    }
+    inject("c", "C");
+    engine.runOnce();
+
+    Assert.assertEquals(ImmutableSet.of("a", "b", "c"), getUpdated(UpdateContext.none()));
+    Assert.assertEquals(ImmutableSet.of("a", "c"), getUpdated(first));
+  }
+}
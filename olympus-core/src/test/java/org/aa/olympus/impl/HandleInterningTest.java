@@ -0,0 +1,230 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HandleInterningTest {
+
+  private static final EventChannel<KeyValuePair<String, Integer>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EntityKey<String, Integer> SOURCE =
+      Olympus.key("SOURCE", String.class, Integer.class);
+  private static final EntityKey<String, Integer> COUNTER =
+      Olympus.key("COUNTER", String.class, Integer.class);
+  private static final EntityKey<String, Integer> EVEN =
+      Olympus.key("EVEN", String.class, Integer.class);
+  private static final EntityKey<String, Integer> KEPT =
+      Olympus.key("KEPT", String.class, Integer.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, SOURCE, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(COUNTER, new CounterManager(), ImmutableSet.of(SOURCE))
+            .registerInnerEntity(EVEN, new EvenManager(), ImmutableSet.of(SOURCE))
+            .registerInnerEntity(KEPT, new KeptManager(), ImmutableSet.of(SOURCE))
+            .build();
+  }
+
+  private Integer set(int value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of("foo", value)).runOnce();
+    return engine.getState(COUNTER, "foo");
+  }
+
+  @Test
+  public void testSameHandle() {
+    Assert.assertEquals(1, set(10).intValue());
+    Assert.assertEquals(2, set(11).intValue());
+    // Unsubscribing through another lookup unsubscribes the handle of the creation
+    Assert.assertEquals(3, set(12).intValue());
+    Assert.assertEquals(3, set(13).intValue());
+  }
+
+  @Test
+  public void testIgnoredCreationsNotKept() {
+    for (int i = 0; i < 10; ++i) {
+      engine.injectEvent(CHANNEL, KeyValuePair.of(Integer.toString(i), i));
+    }
+    engine.runOnce();
+    Assert.assertEquals(20, engine.getState(EVEN, "even").intValue());
+    ElementUnit<String, Integer> even =
+        ((EngineImpl) engine).getEntityManager(EVEN).get("even", false);
+    Assert.assertEquals(5, even.getHandles().size());
+  }
+
+  private Integer setKept(String key, int value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of(key, value)).runOnce();
+    return engine.getState(KEPT, key);
+  }
+
+  @Test
+  public void testLookedUpBeforeCreation() {
+    Assert.assertEquals(1, setKept("early", 10).intValue());
+    Assert.assertEquals(2, setKept("early", 11).intValue());
+    // Unsubscribed through the handle of the creation
+    Assert.assertEquals(3, setKept("early", 12).intValue());
+    Assert.assertEquals(3, setKept("early", 13).intValue());
+  }
+
+  @Test
+  public void testLookedUpAfterCreation() {
+    Assert.assertEquals(1, setKept("late", 10).intValue());
+    Assert.assertEquals(2, setKept("late", 11).intValue());
+    // Unsubscribed through the handle of the creation, which was never subscribed itself
+    Assert.assertEquals(3, setKept("late", 12).intValue());
+    Assert.assertEquals(3, setKept("late", 13).intValue());
+  }
+
+  /** Looks up its source when created for "early" keys, and when it first updates for others */
+  private static final class KeptManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      if (key.startsWith("early")) {
+        toolbox.get(SOURCE, key);
+      }
+      return new KeptUpdater(key);
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /**
+   * Keeps the handle of its creation, subscribing to its source through a lookup, and unsubscribing
+   * through the kept handle after 3 updates
+   */
+  private static final class KeptUpdater implements ElementUpdater<Integer> {
+
+    private final String key;
+    private ElementHandle<?, ?> kept;
+
+    private KeptUpdater(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      int count = previous == null ? 1 : previous + 1;
+      if (count == 1) {
+        toolbox.get(SOURCE, key).subscribe(SubscriptionType.STRONG);
+        Assert.assertEquals(SubscriptionType.STRONG, kept.getSubscriptionType());
+      } else if (count == 3) {
+        kept.subscribe(SubscriptionType.NONE);
+        Assert.assertEquals(SubscriptionType.NONE, toolbox.get(SOURCE, key).getSubscriptionType());
+      }
+      return UpdateResult.update(count);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      kept = handle;
+      return true;
+    }
+  }
+
+  private static final class CounterManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new CounterUpdater(key);
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /** Counts updates, subscribing from its creation and unsubscribing after 3 updates */
+  private static final class CounterUpdater implements ElementUpdater<Integer> {
+
+    private final String key;
+    private ElementHandle<?, ?> created;
+
+    private CounterUpdater(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      ElementHandle<String, Integer> handle = toolbox.get(SOURCE, key);
+      Assert.assertSame(created, handle);
+      Assert.assertSame(handle, toolbox.get(SOURCE, key));
+      int count = previous == null ? 1 : previous + 1;
+      handle.subscribe(count < 3 ? SubscriptionType.STRONG : SubscriptionType.NONE);
+      return UpdateResult.update(count);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      created = handle.subscribe(SubscriptionType.STRONG);
+      return true;
+    }
+  }
+
+  private static final class EvenManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new EvenUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement("even");
+    }
+  }
+
+  /** Sums the sources of even keys, subscribing to them only */
+  private static final class EvenUpdater implements ElementUpdater<Integer> {
+
+    private final List<ElementHandle<String, Integer>> sources = new ArrayList<>();
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.update(sources.stream().mapToInt(h -> h.getStateOrDefault(0)).sum());
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      ElementHandle<String, Integer> source = SOURCE.castHandle(handle);
+      if (source.getKey().matches("[0-9]*[02468]")) {
+        sources.add(source.subscribe(SubscriptionType.STRONG));
+        return true;
+      } else {
+        return false;
+      }
+    }
+  }
+}
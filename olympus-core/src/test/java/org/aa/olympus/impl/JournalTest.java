@@ -0,0 +1,134 @@
+package org.aa.olympus.impl;
+
+import com.google.common.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+
+  private static final EventChannel<KeyValuePair<String, Integer>> PRICES =
+      Olympus.channel("PRICES", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EventChannel<String> NAMES = Olympus.channel("NAMES", String.class);
+  private static final EntityKey<String, Integer> PRICE =
+      Olympus.key("PRICE", String.class, Integer.class);
+  private static final EntityKey<String, String> NAME =
+      Olympus.key("NAME", String.class, String.class);
+
+  private static final Codec<KeyValuePair<String, Integer>> PRICE_CODEC =
+      new Codec<KeyValuePair<String, Integer>>() {
+        @Override
+        public void write(ByteBuffer buffer, KeyValuePair<String, Integer> value) {
+          Codecs.STRING.write(buffer, value.getKey());
+          buffer.putInt(value.getValue());
+        }
+
+        @Override
+        public KeyValuePair<String, Integer> read(ByteBuffer buffer) {
+          return KeyValuePair.of(Codecs.STRING.read(buffer), buffer.getInt());
+        }
+      };
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+  private final LocalDateTime start = LocalDateTime.of(2019, 8, 13, 12, 0);
+
+  @Before
+  public void setUp() {
+    directory = folder.getRoot().toPath().resolve("journal");
+  }
+
+  private EngineBuilder builder() {
+    return Olympus.builder()
+        .registerEventChannel(PRICES)
+        .registerEventChannel(NAMES)
+        .eventToEntity(PRICES, PRICE, KeyValuePair::getKey, KeyValuePair::getValue)
+        .eventToEntity(NAMES, NAME, p -> p, p -> p)
+        .journalTo(directory);
+  }
+
+  private EngineImpl build() {
+    return (EngineImpl) builder().eventCodec(PRICES, PRICE_CODEC).build();
+  }
+
+  private List<String> read(EngineImpl engine) throws IOException {
+    List<String> entries = new ArrayList<>();
+    try (JournalReader reader =
+        new JournalReader(directory, engine.getEventChannels(), engine.getSnapshotCodecs())) {
+      while (reader.next()) {
+        if (reader.isCycle()) {
+          entries.add(reader.getUpdateId() + "@" + reader.getTime());
+        } else if (reader.getChannel() == PRICES) {
+          KeyValuePair<?, ?> event = (KeyValuePair<?, ?>) reader.getEvent();
+          entries.add("PRICES:" + event.getKey() + "=" + event.getValue());
+        } else {
+          entries.add(reader.getChannel().getName() + ":" + reader.getEvent());
+        }
+      }
+    }
+    return entries;
+  }
+
+  @Test
+  public void testEntries() throws IOException {
+    EngineImpl engine = build();
+    engine.injectEvent(PRICES, KeyValuePair.of("foo", 10));
+    engine.injectEvent(NAMES, "bar");
+    engine.runOnce(start);
+    engine.injectEvent(PRICES, KeyValuePair.of("foo", 11));
+    engine.runOnce(start.plusSeconds(1));
+    // Not run yet
+    engine.injectEvent(PRICES, KeyValuePair.of("bar", 12));
+
+    List<String> expected = new ArrayList<>();
+    expected.add("PRICES:foo=10");
+    expected.add("NAMES:bar");
+    expected.add("1@" + start);
+    expected.add("PRICES:foo=11");
+    expected.add("2@" + start.plusSeconds(1));
+    expected.add("PRICES:bar=12");
+    Assert.assertEquals(expected, read(engine));
+    Assert.assertEquals(11, engine.getState(PRICE, "foo").intValue());
+  }
+
+  @Test
+  public void testSegmentPerEngine() throws IOException {
+    EngineImpl first = build();
+    first.injectEvent(NAMES, "foo");
+    first.runOnce(start);
+    // Segments are preallocated
+    Assert.assertEquals(
+        EventJournal.SEGMENT_SIZE, Files.size(EventJournal.segments(directory).get(1)));
+
+    EngineImpl second = build();
+    second.injectEvent(NAMES, "bar");
+    second.runOnce(start);
+    Assert.assertEquals(2, EventJournal.segments(directory).list().size());
+    List<String> entries = read(second);
+    Assert.assertEquals(4, entries.size());
+    Assert.assertEquals("NAMES:foo", entries.get(0));
+    Assert.assertEquals("NAMES:bar", entries.get(2));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingCodec() {
+    builder().build();
+  }
+}
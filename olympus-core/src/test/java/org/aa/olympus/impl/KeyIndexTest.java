@@ -0,0 +1,90 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.reflect.TypeToken;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.aa.olympus.api.HashingStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyIndexTest {
+
+  /** Collides on purpose, to exercise probing and removals in clusters */
+  private static final HashingStrategy<String> FIRST_CHAR =
+      new HashingStrategy<String>() {
+        @Override
+        public int hash(String key) {
+          return key.charAt(0);
+        }
+
+        @Override
+        public boolean equals(String left, String right) {
+          return left.equals(right);
+        }
+      };
+
+  private static <K> void checkAgainstHashMap(KeyIndex<K, String> index, IntFunction<K> keys) {
+    Map<K, String> expected = new HashMap<>();
+    Random random = new Random(0);
+    for (int i = 0; i < 20_000; ++i) {
+      K key = keys.apply(random.nextInt(2_000));
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), index.remove(key));
+      } else if (expected.containsKey(key)) {
+        Assert.assertEquals(expected.get(key), index.get(key));
+      } else {
+        Assert.assertNull(index.get(key));
+        expected.put(key, "V" + i);
+        index.put(key, "V" + i);
+      }
+      Assert.assertEquals(expected.size(), index.size());
+    }
+    Assert.assertEquals(
+        ImmutableMultiset.copyOf(expected.values()), HashMultiset.create(index.values()));
+  }
+
+  @Test
+  public void testCreate() {
+    Assert.assertTrue(KeyIndex.create(TypeToken.of(Integer.class), null) instanceof IntKeyIndex);
+    Assert.assertTrue(KeyIndex.create(TypeToken.of(Long.class), null) instanceof LongKeyIndex);
+    Assert.assertTrue(
+        KeyIndex.create(TypeToken.of(String.class), null) instanceof KeyIndex.HashKeyIndex);
+    Assert.assertTrue(
+        KeyIndex.create(TypeToken.of(String.class), FIRST_CHAR) instanceof StrategyKeyIndex);
+  }
+
+  @Test
+  public void testIntKeys() {
+    checkAgainstHashMap(new IntKeyIndex<>(), i -> (i - 1_000) * 1024);
+  }
+
+  @Test
+  public void testLongKeys() {
+    checkAgainstHashMap(new LongKeyIndex<>(), i -> ((long) i << 32) - 1_000);
+  }
+
+  @Test
+  public void testStrategyKeys() {
+    checkAgainstHashMap(new StrategyKeyIndex<>(FIRST_CHAR), i -> (char) ('a' + i % 4) + "" + i);
+  }
+
+  @Test
+  public void testHashKeys() {
+    checkAgainstHashMap(new KeyIndex.HashKeyIndex<>(), i -> "K" + i);
+  }
+
+  @Test
+  public void testZeroKey() {
+    IntKeyIndex<String> index = new IntKeyIndex<>();
+    Assert.assertNull(index.get(0));
+    index.put(0, "zero");
+    Assert.assertEquals("zero", index.get(0));
+    Assert.assertEquals("zero", index.remove(0));
+    Assert.assertNull(index.get(0));
+    Assert.assertEquals(0, index.size());
+  }
+}
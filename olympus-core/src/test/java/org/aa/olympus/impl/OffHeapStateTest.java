@@ -0,0 +1,186 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.DoubleElementUpdater;
+import org.aa.olympus.api.DoubleState;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.ElementView;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.StateCodec;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapStateTest {
+
+  private static final EventChannel<KeyValuePair<String, Interval>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Interval>>() {});
+  private static final EntityKey<String, Interval> INTERVAL =
+      Olympus.key("INTERVAL", String.class, Interval.class);
+  private static final EntityKey<String, Double> WIDTH = Olympus.doubleKey("WIDTH", String.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INTERVAL, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(WIDTH, new WidthManager(), ImmutableSet.of(INTERVAL))
+            .offHeap(INTERVAL, Interval.CODEC)
+            .offHeap(WIDTH, Codecs.DOUBLE)
+            .build();
+  }
+
+  private OffHeapStateTest set(String key, int low, int high) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of(key, new Interval(low, high)));
+    return this;
+  }
+
+  @Test
+  public void testStates() {
+    set("foo", 1, 3).set("bar", 2, 7);
+    engine.runOnce();
+    UpdateContext first = engine.getLatestContext();
+    Assert.assertEquals(new Interval(1, 3), engine.getState(INTERVAL, "foo"));
+    Assert.assertEquals(5.0, engine.getElement(WIDTH, "bar").getDouble(), 0.0);
+    Assert.assertEquals(2.0, engine.getState(WIDTH, "foo"), 0.0);
+
+    set("foo", -1, 3);
+    engine.runOnce();
+    List<ElementView<String, Double>> updated = engine.getUpdated(WIDTH, first);
+    Assert.assertEquals(1, updated.size());
+    Assert.assertEquals("foo", updated.get(0).getKey());
+    Assert.assertEquals(4.0, updated.get(0).getDouble(), 0.0);
+    Assert.assertEquals(new Interval(2, 7), engine.getElement(INTERVAL, "bar").getState());
+  }
+
+  @Test
+  public void testSegments() {
+    int count = OffHeapStateStore.SEGMENT_SIZE + 1;
+    for (int i = 0; i < count; ++i) {
+      set("key" + i, i, 2 * i);
+    }
+    engine.runOnce();
+    for (int i = 0; i < count; i += 1_000) {
+      Assert.assertEquals(new Interval(i, 2 * i), engine.getState(INTERVAL, "key" + i));
+      Assert.assertEquals(i, engine.getElement(WIDTH, "key" + i).getDouble(), 0.0);
+    }
+    // The first slot of the second segment
+    Assert.assertEquals(count - 1, engine.getElement(WIDTH, "key" + (count - 1)).getDouble(), 0.0);
+  }
+
+  @Test
+  public void testRelease() {
+    OffHeapStateStore<Interval> store = OffHeapStateStore.create(Interval.CODEC);
+    int first = store.allocate();
+    store.set(first, new Interval(4, 5));
+    store.release(first);
+    Assert.assertEquals(0, store.size());
+    int second = store.allocate();
+    Assert.assertEquals(first, second);
+    Assert.assertEquals(new Interval(0, 0), store.get(second));
+  }
+
+  /** A state of 8 bytes */
+  private static final class Interval {
+
+    static final StateCodec<Interval> CODEC =
+        new StateCodec<Interval>() {
+          @Override
+          public int getSize() {
+            return 2 * Integer.BYTES;
+          }
+
+          @Override
+          public void write(ByteBuffer buffer, int offset, Interval state) {
+            buffer.putInt(offset, state.low);
+            buffer.putInt(offset + Integer.BYTES, state.high);
+          }
+
+          @Override
+          public Interval read(ByteBuffer buffer, int offset) {
+            return new Interval(buffer.getInt(offset), buffer.getInt(offset + Integer.BYTES));
+          }
+        };
+
+    private final int low;
+    private final int high;
+
+    private Interval(int low, int high) {
+      this.low = low;
+      this.high = high;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == null || o.getClass() != this.getClass()) {
+        return false;
+      } else {
+        Interval other = (Interval) o;
+        return this.low == other.low && this.high == other.high;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(low, high);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + low + ", " + high + "]";
+    }
+  }
+
+  private static final class WidthManager implements ElementManager<String, Double> {
+
+    @Override
+    public ElementUpdater<Double> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new WidthUpdater(toolbox.get(INTERVAL, key).subscribe(SubscriptionType.STRONG));
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  private static final class WidthUpdater implements DoubleElementUpdater {
+
+    private final ElementHandle<String, Interval> interval;
+
+    private WidthUpdater(ElementHandle<String, Interval> interval) {
+      this.interval = interval;
+    }
+
+    @Override
+    public UpdateStatus updateDouble(
+        DoubleState state, UpdateContext updateContext, Toolbox toolbox) {
+      Interval value = interval.getState();
+      return state.maybeDouble(value.high - value.low);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.ElementView;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelEngineTest {
+
+  private static final int WIDTH = 6;
+
+  private static final EventChannel<KeyValuePair<String, Double>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Double>>() {});
+  private static final List<EntityKey<String, Double>> SOURCES = new ArrayList<>();
+  private static final List<EntityKey<String, Double>> SUMS = new ArrayList<>();
+  private static final EntityKey<String, Double> TOTAL =
+      Olympus.key("TOTAL", String.class, Double.class);
+
+  static {
+    for (int i = 0; i < WIDTH; ++i) {
+      SOURCES.add(Olympus.key("SOURCE_" + i, String.class, Double.class));
+      SUMS.add(Olympus.key("SUM_" + i, String.class, Double.class));
+    }
+  }
+
+  private ForkJoinPool forkJoinPool;
+  private Engine sequential;
+  private Engine parallel;
+
+  private static EngineBuilder createBuilder(boolean concurrentUpdates) {
+    EngineBuilder builder = Olympus.builder().registerEventChannel(CHANNEL);
+    for (int i = 0; i < WIDTH; ++i) {
+      double factor = i + 1;
+      builder.eventToEntity(
+          CHANNEL, SOURCES.get(i), KeyValuePair::getKey, p -> p.getValue() * factor);
+    }
+    for (int i = 0; i < WIDTH; ++i) {
+      // Each sum looks at a different subset of the sources, so they share upstream elements
+      Set<EntityKey> dependencies = ImmutableSet.of(SOURCES.get(i), SOURCES.get((i + 1) % WIDTH));
+      builder.registerInnerEntity(
+          SUMS.get(i), new SumManager(dependencies, concurrentUpdates), dependencies);
+    }
+    builder.registerInnerEntity(
+        TOTAL,
+        new SumManager(ImmutableSet.copyOf(SUMS), concurrentUpdates),
+        ImmutableSet.copyOf(SUMS));
+    return builder;
+  }
+
+  @Before
+  public void setUp() {
+    forkJoinPool = new ForkJoinPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    forkJoinPool.shutdown();
+  }
+
+  @Test
+  public void testSameResultsAsSequential() {
+    sequential = createBuilder(false).build();
+    parallel = createBuilder(false).runInParallel(forkJoinPool).build();
+    runAndCompare(50, 20);
+  }
+
+  @Test
+  public void testConcurrentUpdatesSameResultsAsSequential() {
+    sequential = createBuilder(true).build();
+    parallel = createBuilder(true).runInParallel(forkJoinPool).build();
+    runAndCompare(5000, 2000);
+  }
+
+  private void runAndCompare(int keys, int eventsPerCycle) {
+    Random random = new Random(0);
+    LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+    for (int cycle = 0; cycle < 20; ++cycle) {
+      for (int i = 0; i < eventsPerCycle; ++i) {
+        KeyValuePair<String, Double> event =
+            KeyValuePair.of("KEY_" + random.nextInt(keys), (double) random.nextInt(1000));
+        sequential.injectEvent(CHANNEL, event);
+        parallel.injectEvent(CHANNEL, event);
+      }
+      now = now.plusSeconds(1);
+      sequential.runOnce(now);
+      parallel.runOnce(now);
+
+      for (int key = 0; key < keys; ++key) {
+        for (EntityKey<String, Double> entityKey : SUMS) {
+          assertSameElement(entityKey, "KEY_" + key);
+        }
+        assertSameElement(TOTAL, "KEY_" + key);
+      }
+    }
+  }
+
+  private void assertSameElement(EntityKey<String, Double> entityKey, String key) {
+    ElementView<String, Double> expected = sequential.getElement(entityKey, key);
+    ElementView<String, Double> actual = parallel.getElement(entityKey, key);
+    Assert.assertEquals(expected.getStatus(), actual.getStatus());
+    Assert.assertEquals(expected.getState(), actual.getState());
+    Assert.assertEquals(
+        expected.getUpdateContext().getUpdateId(), actual.getUpdateContext().getUpdateId());
+  }
+
+  private static final class SumManager implements ElementManager<String, Double> {
+
+    private final Set<EntityKey> dependencies;
+    private final boolean concurrentUpdates;
+
+    private SumManager(Set<EntityKey> dependencies, boolean concurrentUpdates) {
+      this.dependencies = dependencies;
+      this.concurrentUpdates = concurrentUpdates;
+    }
+
+    @Override
+    public ElementUpdater<Double> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new SumUpdater(key, dependencies);
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+
+    @Override
+    public boolean concurrentUpdates() {
+      return concurrentUpdates;
+    }
+  }
+
+  private static final class SumUpdater implements ElementUpdater<Double> {
+
+    private final String key;
+    private final Set<EntityKey> dependencies;
+    private List<ElementHandle<String, Double>> inputs;
+
+    private SumUpdater(String key, Set<EntityKey> dependencies) {
+      this.key = key;
+      this.dependencies = dependencies;
+    }
+
+    @Override
+    public UpdateResult<Double> update(
+        Double previous, UpdateContext updateContext, Toolbox toolbox) {
+      if (inputs == null) {
+        // Subscribing from the update, rather than on creation, so sibling entities look up and
+        // subscribe to the same upstream elements at the same time
+        inputs = new ArrayList<>();
+        for (EntityKey dependency : dependencies) {
+          EntityKey<String, Double> entityKey = dependency;
+          inputs.add(toolbox.get(entityKey, key).subscribe(SubscriptionType.OPTIONAL));
+        }
+      }
+      double sum = 0.0;
+      for (ElementHandle<String, Double> input : inputs) {
+        sum += input.getStateOrDefault(0.0);
+      }
+      return UpdateResult.maybe(sum);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+}
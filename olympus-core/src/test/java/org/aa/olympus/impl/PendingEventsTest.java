@@ -0,0 +1,54 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.aa.olympus.api.Event;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PendingEventsTest {
+
+  private static final EventChannel<String> FIRST = Olympus.channel("FIRST", String.class);
+  private static final EventChannel<Integer> SECOND = Olympus.channel("SECOND", Integer.class);
+
+  private final PendingEvents pendingEvents = new PendingEvents();
+
+  private List<Object> getAllValues() {
+    return pendingEvents.getAll().stream().map(Event::getValue).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testBuckets() {
+    Assert.assertEquals(ImmutableList.of(), pendingEvents.get(FIRST));
+    Assert.assertNull(pendingEvents.getLatest(FIRST));
+    Assert.assertEquals(ImmutableList.of(), pendingEvents.getAll());
+
+    pendingEvents.add(SECOND, 1);
+    pendingEvents.add(SECOND, 2);
+    Assert.assertEquals(ImmutableList.of(1, 2), pendingEvents.get(SECOND));
+    Assert.assertEquals(2, pendingEvents.getLatest(SECOND).intValue());
+    Assert.assertEquals(ImmutableList.of(1, 2), getAllValues());
+
+    pendingEvents.clear();
+    Assert.assertNull(pendingEvents.getLatest(SECOND));
+    Assert.assertEquals(ImmutableList.of(), pendingEvents.getAll());
+
+    // The order of arrival of the cycle is kept, even if buckets were created in a different order
+    pendingEvents.add(FIRST, "a");
+    pendingEvents.add(SECOND, 3);
+    pendingEvents.add(SECOND, 4);
+    Assert.assertEquals(ImmutableList.of("a", 3, 4), getAllValues());
+    Assert.assertEquals(SECOND, pendingEvents.getAll().get(2).getChannel());
+    Assert.assertEquals("a", pendingEvents.getLatest(FIRST));
+    Assert.assertEquals(4, pendingEvents.getLatest(SECOND).intValue());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() {
+    pendingEvents.add(FIRST, "a");
+    pendingEvents.get(FIRST).add("b");
+  }
+}
@@ -0,0 +1,217 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import org.aa.olympus.api.DoubleElementUpdater;
+import org.aa.olympus.api.DoubleState;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.IntElementUpdater;
+import org.aa.olympus.api.IntState;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.api.UpdateResult.UpdateStatus;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrimitiveStateTest {
+
+  private static final EventChannel<KeyValuePair<String, Double>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Double>>() {});
+  private static final EntityKey<String, Double> INPUT = Olympus.doubleKey("INPUT", String.class);
+  private static final EntityKey<String, Double> ROUNDED =
+      Olympus.doubleKey("ROUNDED", String.class);
+  private static final EntityKey<String, Integer> UPDATES = Olympus.intKey("UPDATES", String.class);
+  private static final EntityKey<String, Long> BOXED = Olympus.longKey("BOXED", String.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(
+                ROUNDED, new Manager<>(INPUT, RoundedUpdater::new), ImmutableSet.of(INPUT))
+            .registerInnerEntity(
+                UPDATES, new Manager<>(ROUNDED, UpdatesUpdater::new), ImmutableSet.of(ROUNDED))
+            .registerInnerEntity(
+                BOXED, new Manager<>(ROUNDED, BoxedUpdater::new), ImmutableSet.of(ROUNDED))
+            .build();
+  }
+
+  private void set(double value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of("foo", value)).runOnce();
+  }
+
+  @Test
+  public void testPrimitiveStates() {
+    set(1.2);
+    Assert.assertEquals(1.0, engine.getState(ROUNDED, "foo"), 0.0);
+    Assert.assertEquals(1.0, engine.getElement(ROUNDED, "foo").getDouble(), 0.0);
+    Assert.assertEquals(1, engine.getElement(UPDATES, "foo").getInt());
+    Assert.assertEquals(1L, engine.getState(BOXED, "foo").longValue());
+
+    // Same rounded value, not propagated
+    set(0.9);
+    Assert.assertEquals(1, engine.getState(UPDATES, "foo").intValue());
+
+    set(2.6);
+    Assert.assertEquals(3.0, engine.getElement(ROUNDED, "foo").getDouble(), 0.0);
+    Assert.assertEquals(2, engine.getState(UPDATES, "foo").intValue());
+    Assert.assertEquals(3L, engine.getElement(BOXED, "foo").getLong());
+
+    set(-1.0);
+    Assert.assertEquals(ElementStatus.NOT_READY, engine.getElement(ROUNDED, "foo").getStatus());
+    Assert.assertNull(engine.getState(ROUNDED, "foo"));
+    Assert.assertEquals(ElementStatus.NOT_READY, engine.getElement(UPDATES, "foo").getStatus());
+    try {
+      engine.getElement(ROUNDED, "foo").getDouble();
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // Back to the same value, it's propagated as the state was gone
+    set(3.0);
+    Assert.assertEquals(3.0, engine.getState(ROUNDED, "foo"), 0.0);
+    Assert.assertEquals(1, engine.getState(UPDATES, "foo").intValue());
+  }
+
+  @Test
+  public void testBoxedUpdate() {
+    ElementUpdater<Integer> updates = new UpdatesUpdater(null);
+    Assert.assertEquals(
+        1, updates.update(null, UpdateContextImpl.NONE, null).getState().intValue());
+    Assert.assertEquals(5, updates.update(4, UpdateContextImpl.NONE, null).getState().intValue());
+
+    ElementUpdater<Double> half =
+        new DoubleElementUpdater() {
+          @Override
+          public UpdateStatus updateDouble(
+              DoubleState state, UpdateContext updateContext, Toolbox toolbox) {
+            return state.hasState() ? state.maybeDouble(0.5) : UpdateStatus.NOT_READY;
+          }
+
+          @Override
+          public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+            return false;
+          }
+        };
+    Assert.assertEquals(
+        UpdateStatus.NOT_READY, half.update(null, UpdateContextImpl.NONE, null).getStatus());
+    Assert.assertEquals(
+        UpdateStatus.NOTHING, half.update(0.5, UpdateContextImpl.NONE, null).getStatus());
+    UpdateResult<Double> updated = half.update(1.0, UpdateContextImpl.NONE, null);
+    Assert.assertEquals(UpdateStatus.UPDATED, updated.getStatus());
+    Assert.assertEquals(0.5, updated.getState(), 0.0);
+  }
+
+  @Test
+  public void testStorePages() {
+    for (int i = 0; i < StateStore.PAGE_SIZE * 3 + 1; ++i) {
+      engine.injectEvent(CHANNEL, KeyValuePair.of("key" + i, (double) i));
+    }
+    engine.runOnce();
+    for (int i = 0; i < StateStore.PAGE_SIZE * 3 + 1; ++i) {
+      Assert.assertEquals(i, engine.getElement(ROUNDED, "key" + i).getDouble(), 0.0);
+      Assert.assertEquals(i, engine.getState(BOXED, "key" + i).longValue());
+    }
+  }
+
+  private interface UpdaterFactory<S> {
+    ElementUpdater<S> create(ElementHandle<String, ? extends Number> input);
+  }
+
+  /** Creates updaters with a STRONG handle on the element of the same key in the input entity */
+  private static final class Manager<S> implements ElementManager<String, S> {
+
+    private final EntityKey<String, ? extends Number> input;
+    private final UpdaterFactory<S> factory;
+
+    private Manager(EntityKey<String, ? extends Number> input, UpdaterFactory<S> factory) {
+      this.input = input;
+      this.factory = factory;
+    }
+
+    @Override
+    public ElementUpdater<S> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      return factory.create(toolbox.get(input, key).subscribe(SubscriptionType.STRONG));
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /** Rounds its input, not ready for negative values */
+  private static final class RoundedUpdater implements DoubleElementUpdater {
+
+    private final ElementHandle<String, ? extends Number> input;
+
+    private RoundedUpdater(ElementHandle<String, ? extends Number> input) {
+      this.input = input;
+    }
+
+    @Override
+    public UpdateStatus updateDouble(
+        DoubleState state, UpdateContext updateContext, Toolbox toolbox) {
+      double value = input.getDouble();
+      return value < 0 ? UpdateStatus.NOT_READY : state.maybeDouble(Math.rint(value));
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+
+  /** Counts the updates of its input since it was last ready */
+  private static final class UpdatesUpdater implements IntElementUpdater {
+
+    private UpdatesUpdater(ElementHandle<String, ? extends Number> input) {}
+
+    @Override
+    public UpdateStatus updateInt(IntState state, UpdateContext updateContext, Toolbox toolbox) {
+      return state.updateInt(state.hasState() ? state.getInt() + 1 : 1);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+
+  /** A boxed updater on a primitive entity */
+  private static final class BoxedUpdater implements ElementUpdater<Long> {
+
+    private final ElementHandle<String, ? extends Number> input;
+
+    private BoxedUpdater(ElementHandle<String, ? extends Number> input) {
+      this.input = input;
+    }
+
+    @Override
+    public UpdateResult<Long> update(Long previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.maybe(input.getState().longValue());
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+}
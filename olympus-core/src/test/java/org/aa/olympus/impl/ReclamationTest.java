@@ -0,0 +1,274 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementTimer;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.ElementView;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReclamationTest {
+
+  private static final EventChannel<KeyValuePair<String, Integer>> INPUT_CHANNEL =
+      Olympus.channel("INPUT_CHANNEL", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EventChannel<KeyValuePair<String, Integer>> PEEKED_CHANNEL =
+      Olympus.channel("PEEKED_CHANNEL", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EntityKey<String, Integer> INPUT =
+      Olympus.key("INPUT", String.class, Integer.class);
+  private static final EntityKey<String, Integer> PEEKED =
+      Olympus.key("PEEKED", String.class, Integer.class);
+  private static final EntityKey<String, Integer> LEAF =
+      Olympus.key("LEAF", String.class, Integer.class);
+  private static final EntityKey<String, Integer> TOTAL =
+      Olympus.key("TOTAL", String.class, Integer.class);
+
+  private EngineImpl engine;
+  private LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+
+  @Before
+  public void setUp() {
+    engine =
+        (EngineImpl)
+            Olympus.builder()
+                .registerEventChannel(INPUT_CHANNEL)
+                .registerEventChannel(PEEKED_CHANNEL)
+                .eventToEntity(INPUT_CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+                .eventToEntity(PEEKED_CHANNEL, PEEKED, KeyValuePair::getKey, KeyValuePair::getValue)
+                .registerInnerEntity(LEAF, new LeafManager(), ImmutableSet.of(INPUT, PEEKED))
+                .registerInnerEntity(TOTAL, new TotalManager(), ImmutableSet.of(LEAF))
+                .build();
+  }
+
+  private ReclamationTest set(String key, int value) {
+    engine.injectEvent(INPUT_CHANNEL, KeyValuePair.of(key, value));
+    return this;
+  }
+
+  private void run() {
+    now = now.plusMinutes(1);
+    engine.runOnce(now);
+  }
+
+  private int count(EntityKey<String, Integer> entityKey) {
+    return engine.getEntityManager(entityKey).getUnitCount();
+  }
+
+  private int timers() {
+    return engine.getEntityManager(LEAF).getTimerStore().size();
+  }
+
+  @Test
+  public void testDeletedEvicted() {
+    set("a", 1).set("b", 2).run();
+    Assert.assertEquals(3, engine.getState(TOTAL, "total").intValue());
+    ElementView<String, Integer> view = engine.getElement(LEAF, "a");
+
+    set("a", 0).run();
+    // Evicted though the total subscribes to it, and it subscribes to its input
+    Assert.assertEquals(ElementStatus.DELETED, view.getStatus());
+    Assert.assertNull(engine.getState(LEAF, "a"));
+    Assert.assertEquals(1, count(LEAF));
+    Assert.assertEquals(1, count(PEEKED));
+    Assert.assertEquals(1, timers());
+    // The total stopped waiting for it
+    run();
+    Assert.assertEquals(2, engine.getState(TOTAL, "total").intValue());
+
+    // Its input updating doesn't bring it back
+    set("a", 2).run();
+    Assert.assertEquals(1, count(LEAF));
+    Assert.assertEquals(2, engine.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testDeletedCreatedAgain() {
+    set("a", 1).set("b", 2).run();
+    ElementView<String, Integer> view = engine.getElement(LEAF, "a");
+    set("a", 0).run();
+    set("a", 2).run();
+    Assert.assertEquals(ElementStatus.DELETED, view.getStatus());
+
+    // The peeked element was evicted with it, creating it creates the leaf again
+    engine.injectEvent(PEEKED_CHANNEL, KeyValuePair.of("a", 10));
+    run();
+    Assert.assertEquals(ElementStatus.OK, view.getStatus());
+    Assert.assertEquals(2, view.getInt());
+    Assert.assertEquals(2, count(LEAF));
+    Assert.assertEquals(4, engine.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testTurnover() {
+    for (int day = 0; day < 100; ++day) {
+      set("day" + day, day + 1);
+      if (day > 0) {
+        set("day" + (day - 1), 0);
+      }
+      run();
+    }
+    Assert.assertEquals(1, count(LEAF));
+    Assert.assertEquals(1, count(PEEKED));
+    Assert.assertEquals(1, timers());
+    run();
+    Assert.assertEquals(100, engine.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testRetiredEvicted() {
+    set("_a", 1).set("b", 2).run();
+    Assert.assertEquals(2, engine.getState(TOTAL, "total").intValue());
+    Assert.assertEquals(2, count(LEAF));
+    Assert.assertEquals(2, count(PEEKED));
+    Assert.assertEquals(2, timers());
+
+    set("_a", -1).run();
+    Assert.assertNull(engine.getState(LEAF, "_a"));
+    Assert.assertEquals(1, count(LEAF));
+    // The peeked element was only referenced by the evicted one
+    Assert.assertEquals(1, count(PEEKED));
+    Assert.assertNull(engine.getState(PEEKED, "_a"));
+    Assert.assertEquals(1, timers());
+    Assert.assertEquals(1, engine.getEntityManager(LEAF).getStateStore().size());
+
+    // The input is kept, and isn't subscribed anymore
+    set("_a", 5).run();
+    Assert.assertEquals(5, engine.getState(INPUT, "_a").intValue());
+    Assert.assertEquals(1, count(LEAF));
+
+    // Slots of evicted elements are reused
+    set("c", 3).run();
+    Assert.assertEquals(5, engine.getState(TOTAL, "total").intValue());
+    Assert.assertEquals(2, engine.getEntityManager(LEAF).getStateStore().size());
+  }
+
+  @Test
+  public void testReferencedKept() {
+    engine.injectEvent(PEEKED_CHANNEL, KeyValuePair.of("_a", 10));
+    set("_a", 1).run();
+    set("_a", -1).run();
+    Assert.assertEquals(0, count(LEAF));
+    // The peeked element has a state of its own
+    Assert.assertEquals(10, engine.getState(PEEKED, "_a").intValue());
+    Assert.assertEquals(0, timers());
+  }
+
+  @Test
+  public void testLookupsDontCreate() {
+    Assert.assertNull(engine.getState(LEAF, "a"));
+    Assert.assertEquals(0, count(LEAF));
+  }
+
+  @Test
+  public void testViewsDontCreate() {
+    ElementView<String, Integer> view = engine.getElement(LEAF, "a");
+    Assert.assertEquals(ElementStatus.SHADOW, view.getStatus());
+    Assert.assertNull(view.getState());
+    Assert.assertEquals(0, count(LEAF));
+
+    set("a", 1).run();
+    Assert.assertEquals(ElementStatus.OK, view.getStatus());
+    Assert.assertEquals(1, view.getInt());
+  }
+
+  /** Creates a leaf for each input or peeked element, peeking at the element of the same key */
+  private static final class LeafManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      toolbox.get(PEEKED, key);
+      ElementTimer timer =
+          toolbox.setTimer(updateContext.getTime().plusHours(1), Duration.ofHours(1));
+      return new LeafUpdater(toolbox.get(INPUT, key).subscribe(SubscriptionType.STRONG), timer);
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /**
+   * Copies its input, getting deleted for 0, and for good for negative values: it then drops its
+   * subscription and its timer
+   */
+  private static final class LeafUpdater implements ElementUpdater<Integer> {
+
+    private final ElementHandle<String, Integer> input;
+    private final ElementTimer timer;
+
+    private LeafUpdater(ElementHandle<String, Integer> input, ElementTimer timer) {
+      this.input = input;
+      this.timer = timer;
+    }
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      int value = input.getState();
+      if (value < 0) {
+        input.subscribe(SubscriptionType.NONE);
+        timer.cancel();
+      }
+      return value <= 0 ? UpdateResult.delete() : UpdateResult.update(value);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+
+  private static final class TotalManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new TotalUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      // Leaves of keys starting with an underscore aren't part of the total
+      if (!((String) key).startsWith("_")) {
+        notifier.notifyElement("total");
+      }
+    }
+  }
+
+  /** Sums all the leaves, subscribing to them */
+  private static final class TotalUpdater implements ElementUpdater<Integer> {
+
+    private final List<ElementHandle<String, Integer>> leaves = new ArrayList<>();
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.update(leaves.stream().mapToInt(h -> h.getStateOrDefault(0)).sum());
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      leaves.add(LEAF.castHandle(handle).subscribe(SubscriptionType.STRONG));
+      return true;
+    }
+  }
+}
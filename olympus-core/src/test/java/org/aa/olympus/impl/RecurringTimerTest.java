@@ -0,0 +1,105 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementTimer;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.Event;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecurringTimerTest {
+
+  private static final EventChannel<String> START = Olympus.channel("START", String.class);
+  private static final EntityKey<String, Integer> HEARTBEAT =
+      Olympus.key("HEARTBEAT", String.class, Integer.class);
+
+  private Engine engine;
+  private LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(START)
+            .registerInnerEntity(
+                HEARTBEAT, new HeartbeatManager(), ImmutableSet.of(), ImmutableSet.of(START))
+            .build();
+  }
+
+  private int runAfter(Duration duration) {
+    now = now.plus(duration);
+    engine.runOnce(now);
+    return engine.getState(HEARTBEAT, "foo");
+  }
+
+  @Test
+  public void testUpdatedOncePerCycle() {
+    engine.injectEvent(START, "foo");
+    Assert.assertEquals(1, runAfter(Duration.ZERO));
+    // Both timers are due, the element only updates once
+    Assert.assertEquals(2, runAfter(Duration.ofSeconds(1)));
+    Assert.assertEquals(2, runAfter(Duration.ofMillis(500)));
+    // The recurring timer is due, and the heartbeat got rescheduled in place
+    Assert.assertEquals(3, runAfter(Duration.ofMillis(500)));
+    // Several occurrences of the recurring timer are missed
+    Assert.assertEquals(4, runAfter(Duration.ofSeconds(10)));
+    Assert.assertEquals(4, runAfter(Duration.ofMillis(500)));
+  }
+
+  private static final class HeartbeatManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new HeartbeatUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {}
+
+    @Override
+    public <E> void onEvent(Event<E> event, Notifier<String> notifier) {
+      notifier.notifyElement((String) event.getValue());
+    }
+  }
+
+  /** Counts its updates, with a recurring timer and a heartbeat moved on every update */
+  private static final class HeartbeatUpdater implements ElementUpdater<Integer> {
+
+    private ElementTimer recurring;
+    private ElementTimer heartbeat;
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      LocalDateTime next = updateContext.getTime().plusSeconds(1);
+      if (recurring == null) {
+        recurring = toolbox.setTimer(next, Duration.ofSeconds(1));
+        heartbeat = toolbox.setTimer(next);
+      } else {
+        ElementTimer previousHeartbeat = heartbeat;
+        heartbeat.reschedule(next);
+        Assert.assertSame(previousHeartbeat, heartbeat);
+      }
+      return UpdateResult.update(previous == null ? 1 : previous + 1);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return false;
+    }
+  }
+}
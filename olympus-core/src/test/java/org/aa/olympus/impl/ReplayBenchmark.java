@@ -0,0 +1,83 @@
+package org.aa.olympus.impl;
+
+import com.google.common.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.examples.KeyValuePair;
+
+/**
+ * Measures how fast a journal gets written and replayed
+ *
+ * <p>Events set the price of one of {@link #KEYS} instruments, {@link #BATCH} per cycle.
+ *
+ * <p>This is not a unit test, run it manually with {@code [events]} as argument.
+ */
+public final class ReplayBenchmark {
+
+  private static final int KEYS = 10_000;
+  private static final int BATCH = 1_000;
+
+  private static final EventChannel<KeyValuePair<Integer, Long>> PRICES =
+      Olympus.channel("PRICES", new TypeToken<KeyValuePair<Integer, Long>>() {});
+  private static final EntityKey<Integer, Long> PRICE = Olympus.longKey("PRICE", Integer.class);
+
+  private static final Codec<KeyValuePair<Integer, Long>> CODEC =
+      new Codec<KeyValuePair<Integer, Long>>() {
+        @Override
+        public void write(ByteBuffer buffer, KeyValuePair<Integer, Long> value) {
+          buffer.putInt(value.getKey()).putLong(value.getValue());
+        }
+
+        @Override
+        public KeyValuePair<Integer, Long> read(ByteBuffer buffer) {
+          return KeyValuePair.of(buffer.getInt(), buffer.getLong());
+        }
+      };
+
+  private static EngineBuilder builder() {
+    return Olympus.builder()
+        .registerEventChannel(PRICES)
+        .eventToEntity(PRICES, PRICE, KeyValuePair::getKey, KeyValuePair::getValue)
+        .eventCodec(PRICES, CODEC);
+  }
+
+  private static void report(String name, long events, long begin, long end) {
+    System.out.println(
+        String.format(
+            "%s: %,d events in %,d ms, %,d events/s",
+            name, events, (end - begin) / 1_000_000, events * 1_000_000_000L / (end - begin)));
+  }
+
+  public static void main(String[] args) throws IOException {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    Path journal = Files.createTempDirectory("journal");
+    LocalDateTime time = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    Engine recorded = builder().journalTo(journal).build();
+    long begin = System.nanoTime();
+    for (int i = 0; i < events; ++i) {
+      recorded.injectEvent(PRICES, KeyValuePair.of(i % KEYS, (long) i));
+      if (i % BATCH == BATCH - 1) {
+        time = time.plusNanos(1_000_000);
+        recorded.runOnce(time);
+      }
+    }
+    report("record", events, begin, System.nanoTime());
+
+    for (int run = 0; run < 3; ++run) {
+      Engine replayed = builder().build();
+      begin = System.nanoTime();
+      long replayedEvents = replayed.replay(journal);
+      report("replay", replayedEvents, begin, System.nanoTime());
+    }
+  }
+}
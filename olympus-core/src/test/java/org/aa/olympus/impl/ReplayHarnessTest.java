@@ -0,0 +1,133 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EngineFactory;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.ReplayHarness;
+import org.aa.olympus.api.ReplayHarness.Partition;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReplayHarnessTest {
+
+  private static final EventChannel<String> CHANNEL = Olympus.channel("CHANNEL", String.class);
+  private static final EventChannel<String> OTHER = Olympus.channel("OTHER", String.class);
+  private static final EntityKey<String, String> INPUT =
+      Olympus.key("INPUT", String.class, String.class);
+  private static final EntityKey<String, String> OTHER_INPUT =
+      Olympus.key("OTHER_INPUT", String.class, String.class);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final LocalDateTime start = LocalDateTime.of(2019, 8, 13, 9, 0);
+
+  private static EngineBuilder builder() {
+    return Olympus.builder()
+        .registerEventChannel(CHANNEL)
+        .eventToEntity(CHANNEL, INPUT, p -> p.split("=")[0], p -> p.split("=")[1]);
+  }
+
+  /** Record a day where "foo" goes from 1 to {@code count} */
+  private Path record(String day, int count) {
+    Path journal = folder.getRoot().toPath().resolve(day);
+    Engine engine = builder().journalTo(journal).build();
+    for (int i = 1; i <= count; ++i) {
+      engine.injectEvent(CHANNEL, "foo=" + i).injectEvent(CHANNEL, "bar=" + day);
+      engine.runOnce(start.plusMinutes(i));
+    }
+    return journal;
+  }
+
+  @Test
+  public void testRun() throws IOException, InterruptedException {
+    List<Path> journals = ImmutableList.of(record("a", 3), record("b", 10), record("c", 1));
+    ReplayHarness<String> harness =
+        new ReplayHarness<>(
+            builder().prepare(), p -> p.getState(INPUT, "bar") + p.getState(INPUT, "foo"), 2);
+
+    List<Partition<String>> partitions = harness.run(journals);
+    Assert.assertEquals(3, partitions.size());
+    Assert.assertEquals(journals.get(1), partitions.get(1).getJournal());
+    Assert.assertEquals("b10", partitions.get(1).getOutput());
+    Assert.assertEquals(20, partitions.get(1).getEvents());
+    Assert.assertEquals(2, partitions.get(2).getEvents());
+    Assert.assertTrue(partitions.get(0).getEventsPerSecond() > 0);
+    Assert.assertEquals(
+        "a3,b10,c1", ReplayHarness.merge(partitions, Collectors.joining(",")).toString());
+  }
+
+  @Test
+  public void testFactory() {
+    EngineBuilder builder = builder();
+    EngineFactory factory = builder.prepare();
+    builder.registerEventChannel(OTHER).eventToEntity(OTHER, OTHER_INPUT, p -> p, p -> p);
+
+    Engine first = factory.create();
+    Engine second = factory.create();
+    first.injectEvent(CHANNEL, "foo=1").runOnce();
+    Assert.assertEquals("1", first.getState(INPUT, "foo"));
+    Assert.assertNull(second.getState(INPUT, "foo"));
+    // Registered after the builder was prepared
+    Assert.assertFalse(((EngineImpl) first).getEventChannels().contains(OTHER));
+    Assert.assertTrue(((EngineImpl) builder.build()).getEventChannels().contains(OTHER));
+  }
+
+  @Test
+  public void testFailure() throws InterruptedException {
+    List<Path> journals = ImmutableList.of(record("a", 1), record("b", 2));
+    ReplayHarness<String> harness =
+        new ReplayHarness<>(
+            builder().prepare(),
+            p -> {
+              throw new IllegalArgumentException("failed");
+            },
+            2);
+    try {
+      harness.run(journals);
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("failed", e.getMessage());
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void testFailureCancelsEarlierPartitions() throws IOException, InterruptedException {
+    List<Path> journals = ImmutableList.of(record("a", 1), record("b", 1));
+    CountDownLatch never = new CountDownLatch(1);
+    ReplayHarness<String> harness =
+        new ReplayHarness<>(
+            builder().prepare(),
+            p -> {
+              if (p.getState(INPUT, "bar").equals("b")) {
+                throw new IllegalArgumentException("failed");
+              }
+              try {
+                never.await();
+                return "done";
+              } catch (InterruptedException e) {
+                return "cancelled";
+              }
+            },
+            2);
+    try {
+      harness.run(journals);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("failed", e.getMessage());
+    }
+  }
+}
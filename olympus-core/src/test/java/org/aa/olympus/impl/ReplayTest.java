@@ -0,0 +1,211 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReplayTest {
+
+  private static final EventChannel<String> CHANNEL = Olympus.channel("CHANNEL", String.class);
+  private static final EntityKey<String, String> INPUT =
+      Olympus.key("INPUT", String.class, String.class);
+  private static final EntityKey<String, Integer> TICKS =
+      Olympus.key("TICKS", String.class, Integer.class);
+  private static final Duration PERIOD = Duration.ofMinutes(15);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path journal;
+  private final LocalDateTime start = LocalDateTime.of(2019, 8, 13, 12, 0);
+
+  @Before
+  public void setUp() {
+    journal = folder.getRoot().toPath().resolve("journal");
+  }
+
+  private static EngineBuilder builder() {
+    return Olympus.builder()
+        .registerEventChannel(CHANNEL)
+        .eventToEntity(CHANNEL, INPUT, p -> p.split("=")[0], p -> p.split("=")[1])
+        .registerInnerEntity(TICKS, new TicksManager(), ImmutableSet.of(INPUT));
+  }
+
+  @Test
+  public void testReplay() throws IOException {
+    EngineImpl recorded = (EngineImpl) builder().journalTo(journal).build();
+    recorded.injectEvent(CHANNEL, "foo=1").injectEvent(CHANNEL, "bar=1");
+    recorded.runOnce(start);
+    Assert.assertEquals(start.plus(PERIOD), recorded.getNextTimerAt());
+    recorded.injectEvent(CHANNEL, "foo=2");
+    recorded.runOnce(start.plusHours(1));
+    recorded.injectEvent(CHANNEL, "bar=3");
+
+    EngineImpl replayed = (EngineImpl) builder().build();
+    Assert.assertNull(replayed.getNextTimerAt());
+    Assert.assertEquals(4, replayed.replay(journal));
+    Assert.assertEquals("2", replayed.getState(INPUT, "foo"));
+    Assert.assertEquals("1", replayed.getState(INPUT, "bar"));
+    // The live engine only fired the timers once, at its next cycle
+    Assert.assertEquals(1, recorded.getState(TICKS, "foo").intValue());
+    Assert.assertEquals(4, replayed.getState(TICKS, "foo").intValue());
+    Assert.assertEquals(start.plusHours(1), replayed.getLatestContext().getTime());
+    Assert.assertEquals(start.plusHours(1).plus(PERIOD), replayed.getNextTimerAt());
+
+    // The last event is waiting for the next cycle
+    replayed.runOnce(start.plusHours(1));
+    Assert.assertEquals("3", replayed.getState(INPUT, "bar"));
+  }
+
+  @Test
+  public void testReplayExactly() throws IOException {
+    EngineImpl recorded = (EngineImpl) builder().journalTo(journal).build();
+    recorded.injectEvent(CHANNEL, "foo=1");
+    recorded.runOnce(start);
+    recorded.injectEvent(CHANNEL, "foo=2");
+    recorded.runOnce(start.plusHours(1));
+
+    EngineImpl replayed = (EngineImpl) builder().build();
+    Assert.assertEquals(2, replayed.replay(journal, true));
+    Assert.assertEquals("2", replayed.getState(INPUT, "foo"));
+    // Like the live engine, the missed timers only fired once
+    Assert.assertEquals(1, replayed.getState(TICKS, "foo").intValue());
+    Assert.assertEquals(2, replayed.getLatestContext().getUpdateId());
+    Assert.assertEquals(recorded.getNextTimerAt(), replayed.getNextTimerAt());
+  }
+
+  @Test
+  public void testReplayJournaled() throws IOException {
+    EngineImpl recorded = (EngineImpl) builder().journalTo(journal).build();
+    recorded.injectEvent(CHANNEL, "foo=1").injectEvent(CHANNEL, "bar=1");
+    recorded.runOnce(start);
+    recorded.injectEvent(CHANNEL, "foo=2");
+    recorded.runOnce(start.plusHours(1));
+    recorded.injectEvent(CHANNEL, "bar=3");
+
+    Path copy = folder.getRoot().toPath().resolve("copy");
+    EngineImpl replayed = (EngineImpl) builder().journalTo(copy).build();
+    Assert.assertEquals(4, replayed.replay(journal));
+
+    // Timer cycles are recorded under the latest recorded cycle
+    List<Integer> cycles = new ArrayList<>();
+    try (JournalReader reader =
+        new JournalReader(copy, replayed.getEventChannels(), replayed.getSnapshotCodecs())) {
+      while (reader.next()) {
+        if (reader.isCycle()) {
+          cycles.add(reader.getUpdateId());
+        }
+      }
+    }
+    Assert.assertEquals(ImmutableList.of(1, 1, 1, 1, 2), cycles);
+
+    // The copy reproduces the replay exactly, timer cycles included
+    EngineImpl again = (EngineImpl) builder().build();
+    Assert.assertEquals(4, again.replay(copy, true));
+    Assert.assertEquals(4, again.getState(TICKS, "foo").intValue());
+    Assert.assertEquals(
+        replayed.getLatestContext().getUpdateId(), again.getLatestContext().getUpdateId());
+    Assert.assertEquals(replayed.getNextTimerAt(), again.getNextTimerAt());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReplayOwnJournal() throws IOException {
+    EngineImpl recorded = (EngineImpl) builder().journalTo(journal).build();
+    recorded.injectEvent(CHANNEL, "foo=1");
+    recorded.runOnce(start);
+    recorded.replay(journal.resolve("..").resolve("journal"));
+  }
+
+  @Test
+  public void testSkipCheckpointed() throws IOException {
+    Path checkpoints = folder.getRoot().toPath().resolve("checkpoints");
+    EngineImpl recorded =
+        (EngineImpl) builder().journalTo(journal).checkpointTo(checkpoints).build();
+    recorded.injectEvent(CHANNEL, "foo=1");
+    recorded.runOnce(start);
+    recorded.injectEvent(CHANNEL, "bar=1");
+    recorded.runOnce(start.plusMinutes(1));
+    recorded.checkpoint();
+    recorded.injectEvent(CHANNEL, "foo=2");
+    recorded.runOnce(start.plusMinutes(2));
+
+    EngineImpl recovered = (EngineImpl) builder().restoreFrom(checkpoints).build();
+    Assert.assertEquals(1, recovered.replay(journal));
+    Assert.assertEquals("2", recovered.getState(INPUT, "foo"));
+    Assert.assertEquals("1", recovered.getState(INPUT, "bar"));
+    Assert.assertEquals(3, recovered.getLatestContext().getUpdateId());
+  }
+
+  @Test
+  public void testCheckpointReplayed() throws IOException {
+    Path checkpoints = folder.getRoot().toPath().resolve("checkpoints");
+    EngineImpl recorded = (EngineImpl) builder().journalTo(journal).build();
+    recorded.injectEvent(CHANNEL, "foo=1").injectEvent(CHANNEL, "bar=1");
+    recorded.runOnce(start);
+    recorded.injectEvent(CHANNEL, "foo=2");
+    recorded.runOnce(start.plusHours(1));
+
+    // Timer cycles make the update ids of the replay go past the recorded ones
+    EngineImpl replayed = (EngineImpl) builder().checkpointTo(checkpoints).build();
+    Assert.assertEquals(3, replayed.replay(journal));
+    Assert.assertEquals(5, replayed.getLatestContext().getUpdateId());
+    replayed.checkpoint();
+
+    recorded.injectEvent(CHANNEL, "bar=3");
+    recorded.runOnce(start.plusHours(1).plusMinutes(1));
+
+    EngineImpl recovered = (EngineImpl) builder().restoreFrom(checkpoints).build();
+    Assert.assertEquals(1, recovered.replay(journal));
+    Assert.assertEquals("2", recovered.getState(INPUT, "foo"));
+    Assert.assertEquals("3", recovered.getState(INPUT, "bar"));
+    Assert.assertEquals(6, recovered.getLatestContext().getUpdateId());
+  }
+
+  /** Counts the timers of each input */
+  private static final class TicksManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      toolbox.setTimer(updateContext.getTime().plus(PERIOD), PERIOD);
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          // Only updated by its timer
+          return UpdateResult.update(previous == null ? 1 : previous + 1);
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+}
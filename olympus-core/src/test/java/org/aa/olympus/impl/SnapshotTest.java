@@ -0,0 +1,334 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.aa.olympus.api.Codec;
+import org.aa.olympus.api.Codecs;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementTimer;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.EngineBuilder;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.TimerState;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotTest {
+
+  private static final EventChannel<KeyValuePair<Pair, Integer>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<Pair, Integer>>() {});
+  private static final EntityKey<Pair, Integer> INPUT =
+      Olympus.key("INPUT", Pair.class, Integer.class);
+  private static final EntityKey<String, Integer> LEAF =
+      Olympus.key("LEAF", String.class, Integer.class);
+  private static final EntityKey<String, Integer> TOTAL =
+      Olympus.key("TOTAL", String.class, Integer.class);
+  private static final EntityKey<String, Integer> TICKS =
+      Olympus.key("TICKS", String.class, Integer.class);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+  /** The latest timer created by the updaters of TICKS, by key */
+  private final Map<String, ElementTimer> timers = new HashMap<>();
+
+  private EngineImpl build(Path snapshot) {
+    EngineBuilder builder =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(LEAF, new LeafManager(), ImmutableSet.of(INPUT))
+            .registerInnerEntity(TOTAL, new TotalManager(), ImmutableSet.of(LEAF))
+            .registerInnerEntity(TICKS, new TicksManager(timers), ImmutableSet.of(LEAF))
+            .snapshotCodecs(INPUT, Pair.CODEC, Codecs.of(Codecs.INT));
+    if (snapshot != null) {
+      builder.restoreFrom(snapshot);
+    }
+    return (EngineImpl) builder.build();
+  }
+
+  private void run(EngineImpl engine) {
+    now = now.plusMinutes(1);
+    engine.runOnce(now);
+  }
+
+  private static void set(EngineImpl engine, String name, int value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of(new Pair(name, 0), value));
+  }
+
+  private EngineImpl restart(EngineImpl engine) throws IOException {
+    Path file = folder.newFile().toPath();
+    engine.writeSnapshot(file);
+    return build(file);
+  }
+
+  @Test
+  public void testStates() throws IOException {
+    EngineImpl engine = build(null);
+    set(engine, "a", 1);
+    set(engine, "b", 2);
+    run(engine);
+    set(engine, "b", 3);
+    run(engine);
+
+    EngineImpl restored = restart(engine);
+    Assert.assertEquals(
+        engine.getLatestContext().getUpdateId(), restored.getLatestContext().getUpdateId());
+    for (String key : new String[] {"a", "b"}) {
+      Assert.assertEquals(engine.getState(LEAF, key), restored.getState(LEAF, key));
+      UpdateContext expected = engine.getElement(LEAF, key).getUpdateContext();
+      UpdateContext actual = restored.getElement(LEAF, key).getUpdateContext();
+      Assert.assertEquals(expected.getUpdateId(), actual.getUpdateId());
+      Assert.assertEquals(expected.getTime(), actual.getTime());
+    }
+    Assert.assertEquals(3, restored.getState(INPUT, new Pair("b", 0)).intValue());
+    Assert.assertEquals(4, restored.getState(TOTAL, "total").intValue());
+    Assert.assertEquals(ElementStatus.OK, restored.getElement(TOTAL, "total").getStatus());
+  }
+
+  @Test
+  public void testSubscriptionsKept() throws IOException {
+    EngineImpl engine = build(null);
+    set(engine, "a", 1);
+    set(engine, "b", 2);
+    run(engine);
+
+    EngineImpl restored = restart(engine);
+    set(restored, "a", 10);
+    run(restored);
+    Assert.assertEquals(10, restored.getState(LEAF, "a").intValue());
+    Assert.assertEquals(12, restored.getState(TOTAL, "total").intValue());
+
+    // New elements are still picked up
+    set(restored, "c", 5);
+    run(restored);
+    Assert.assertEquals(17, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test
+  public void testTimersRestored() throws IOException {
+    EngineImpl engine = build(null);
+    set(engine, "a", 1);
+    run(engine);
+    Assert.assertEquals(ElementStatus.CREATED, engine.getElement(TICKS, "a").getStatus());
+
+    EngineImpl restored = restart(engine);
+    Assert.assertEquals(1, restored.getEntityManager(TICKS).getTimerStore().size());
+    now = now.plusHours(1);
+    run(restored);
+    Assert.assertEquals(1, restored.getState(TICKS, "a").intValue());
+    now = now.plusHours(1);
+    run(restored);
+    Assert.assertEquals(2, restored.getState(TICKS, "a").intValue());
+    Assert.assertEquals(1, restored.getEntityManager(TICKS).getTimerStore().size());
+  }
+
+  @Test
+  public void testUpdaterTimersKept() throws IOException {
+    EngineImpl engine = build(null);
+    set(engine, "a", 1);
+    run(engine);
+    LocalDateTime timerAt = timers.get("a").getTimerAt();
+    now = now.plusMinutes(30);
+    run(engine);
+
+    // The timer set by the restored updater is moved to the one of the snapshot
+    EngineImpl restored = restart(engine);
+    ElementTimer timer = timers.get("a");
+    Assert.assertEquals(timerAt, timer.getTimerAt());
+    Assert.assertEquals(TimerState.READY, timer.getState());
+    Assert.assertEquals(1, restored.getEntityManager(TICKS).getTimerStore().size());
+
+    timer.cancel();
+    Assert.assertEquals(0, restored.getEntityManager(TICKS).getTimerStore().size());
+    now = now.plusHours(1);
+    run(restored);
+    Assert.assertNull(restored.getState(TICKS, "a"));
+  }
+
+  @Test
+  public void testDeletedNotRestored() throws IOException {
+    EngineImpl engine = build(null);
+    set(engine, "a", 1);
+    set(engine, "b", 2);
+    run(engine);
+    set(engine, "a", 0);
+    run(engine);
+
+    EngineImpl restored = restart(engine);
+    Assert.assertNull(restored.getState(LEAF, "a"));
+    Assert.assertEquals(1, restored.getEntityManager(LEAF).getUnitCount());
+    run(restored);
+    Assert.assertEquals(2, restored.getState(TOTAL, "total").intValue());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingCodec() throws IOException {
+    EngineImpl engine =
+        (EngineImpl)
+            Olympus.builder()
+                .registerEventChannel(CHANNEL)
+                .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+                .build();
+    engine.injectEvent(CHANNEL, KeyValuePair.of(new Pair("a", 0), 1));
+    engine.runOnce();
+    engine.writeSnapshot(folder.newFile().toPath());
+  }
+
+  /** A key without a default codec */
+  private static final class Pair {
+
+    static final Codec<Pair> CODEC =
+        new Codec<Pair>() {
+          @Override
+          public void write(ByteBuffer buffer, Pair value) {
+            Codecs.STRING.write(buffer, value.name);
+            buffer.putInt(value.index);
+          }
+
+          @Override
+          public Pair read(ByteBuffer buffer) {
+            return new Pair(Codecs.STRING.read(buffer), buffer.getInt());
+          }
+        };
+
+    private final String name;
+    private final int index;
+
+    private Pair(String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == null || o.getClass() != this.getClass()) {
+        return false;
+      } else {
+        Pair other = (Pair) o;
+        return this.name.equals(other.name) && this.index == other.index;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * name.hashCode() + index;
+    }
+  }
+
+  /** Copies its input, getting deleted for 0 */
+  private static final class LeafManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      ElementHandle<Pair, Integer> input =
+          toolbox.get(INPUT, new Pair(key, 0)).subscribe(SubscriptionType.STRONG);
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          int value = input.getState();
+          return value == 0 ? UpdateResult.delete() : UpdateResult.update(value);
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          return true;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement(((Pair) key).name);
+    }
+  }
+
+  private static final class TotalManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new TotalUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement("total");
+    }
+  }
+
+  /** Sums all the leaves, subscribing to them */
+  private static final class TotalUpdater implements ElementUpdater<Integer> {
+
+    private final List<ElementHandle<String, Integer>> leaves = new ArrayList<>();
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      return UpdateResult.update(leaves.stream().mapToInt(h -> h.getStateOrDefault(0)).sum());
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      leaves.add(LEAF.castHandle(handle).subscribe(SubscriptionType.STRONG));
+      return true;
+    }
+  }
+
+  /** Counts the hourly timers of each leaf */
+  private static final class TicksManager implements ElementManager<String, Integer> {
+
+    private final Map<String, ElementTimer> timers;
+
+    private TicksManager(Map<String, ElementTimer> timers) {
+      this.timers = timers;
+    }
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      timers.put(key, toolbox.setTimer(updateContext.getTime().plusHours(1), Duration.ofHours(1)));
+      return new ElementUpdater<Integer>() {
+        @Override
+        public UpdateResult<Integer> update(
+            Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+          // Only updated by its timer
+          return UpdateResult.update(previous == null ? 1 : previous + 1);
+        }
+
+        @Override
+        public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.aa.olympus.examples.WorldCountExample;
+
+/**
+ * Compares the {@link TimerStore} with the previous implementation, a {@code TreeMap} of lists,
+ * with a large number of pending timers.
+ *
+ * <p>Timers are set at a random millisecond within an hour, a part of them get cancelled, and time
+ * advances by one second until they've all triggered.
+ *
+ * <p>This is not a unit test, run it manually with {@code [timers]} as argument. With the default
+ * of one million timers, the previous implementation takes minutes to advance.
+ */
+public final class TimerStoreBenchmark {
+
+  private static final int HORIZON_MILLIS = 3_600_000;
+  private static final int STEP_MILLIS = 1_000;
+  private static final int CANCEL_RATIO = 4;
+
+  private final int size;
+  private final LocalDateTime start = LocalDateTime.of(2019, 1, 1, 0, 0);
+  private final EngineContext engineContext = new EngineContext(null, null);
+  private final TimerStore timerStore = new TimerStore(engineContext);
+  private final ElementUnit<String, Integer> unit;
+
+  private TimerStoreBenchmark(int size) {
+    this.size = size;
+    this.engineContext.setLatestContext(new UpdateContextImpl(start, 1));
+    EntityManager<String, Integer> entityManager =
+        new EntityManager<>(
+            engineContext,
+            timerStore,
+            WorldCountExample.COUNTER,
+            new WorldCountExample.CounterElementManager(),
+            ImmutableMap.of(),
+            ImmutableSet.of(),
+            ImmutableSet.of());
+    this.unit = entityManager.get("foo", false);
+  }
+
+  private LocalDateTime[] createDeadlines() {
+    Random random = new Random(42);
+    LocalDateTime[] deadlines = new LocalDateTime[size];
+    for (int i = 0; i < size; ++i) {
+      deadlines[i] = start.plusNanos((1L + random.nextInt(HORIZON_MILLIS)) * 1_000_000L);
+    }
+    return deadlines;
+  }
+
+  private void runWheel(LocalDateTime[] deadlines) {
+    long begin = System.nanoTime();
+    ElementTimerImpl[] timers = new ElementTimerImpl[size];
+    for (int i = 0; i < size; ++i) {
+      timers[i] = timerStore.create(unit, deadlines[i], Duration.ZERO);
+    }
+    long created = System.nanoTime();
+    for (int i = 0; i < size; i += CANCEL_RATIO) {
+      timers[i].cancel();
+    }
+    long cancelled = System.nanoTime();
+    int triggered = 0;
+    for (int millis = 0; millis <= HORIZON_MILLIS; millis += STEP_MILLIS) {
+      triggered += timerStore.notifyNext(start.plusNanos(millis * 1_000_000L));
+    }
+    long done = System.nanoTime();
+    report("wheel", begin, created, cancelled, done, triggered);
+  }
+
+  private void runLegacy(LocalDateTime[] deadlines) {
+    LegacyTimerStore legacy = new LegacyTimerStore();
+    long begin = System.nanoTime();
+    LegacyTimer[] timers = new LegacyTimer[size];
+    for (int i = 0; i < size; ++i) {
+      timers[i] = legacy.create(unit, deadlines[i]);
+    }
+    long created = System.nanoTime();
+    for (int i = 0; i < size; i += CANCEL_RATIO) {
+      legacy.cancel(timers[i]);
+    }
+    long cancelled = System.nanoTime();
+    int triggered = 0;
+    for (int millis = 0; millis <= HORIZON_MILLIS; millis += STEP_MILLIS) {
+      triggered += legacy.notifyNext(start.plusNanos(millis * 1_000_000L));
+    }
+    long done = System.nanoTime();
+    report("treemap", begin, created, cancelled, done, triggered);
+  }
+
+  private void report(
+      String name, long begin, long created, long cancelled, long done, int triggered) {
+    int cancels = (size + CANCEL_RATIO - 1) / CANCEL_RATIO;
+    System.out.printf(
+        "%-8s timers=%,d create=%.0fns/timer cancel=%.0fns/timer advance=%.1fms triggered=%,d%n",
+        name,
+        size,
+        (created - begin) / (double) size,
+        (cancelled - created) / (double) cancels,
+        (done - cancelled) / 1_000_000.0,
+        triggered);
+  }
+
+  public static void main(String[] args) {
+    int size = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+    // The first round warms up
+    for (int i = 0; i < 2; ++i) {
+      TimerStoreBenchmark benchmark = new TimerStoreBenchmark(size);
+      LocalDateTime[] deadlines = benchmark.createDeadlines();
+      benchmark.runWheel(deadlines);
+      benchmark.runLegacy(deadlines);
+    }
+  }
+
+  /** The previous implementation, with its triggered slots never removed from the map */
+  private static final class LegacyTimerStore {
+
+    private final Map<LocalDateTime, List<LegacyTimer>> timers = new TreeMap<>();
+
+    LegacyTimer create(ElementUnit unit, LocalDateTime timerAt) {
+      List<LegacyTimer> slot = timers.computeIfAbsent(timerAt, k -> new ArrayList<>());
+      LegacyTimer timer = new LegacyTimer(unit, timerAt, slot);
+      slot.add(timer);
+      return timer;
+    }
+
+    void cancel(LegacyTimer timer) {
+      timer.slot.remove(timer);
+      if (timer.slot.isEmpty()) {
+        timers.remove(timer.timerAt);
+      }
+    }
+
+    int notifyNext(LocalDateTime limit) {
+      int results = 0;
+      for (Map.Entry<LocalDateTime, List<LegacyTimer>> entry : timers.entrySet()) {
+        if (entry.getKey().isAfter(limit)) {
+          break;
+        } else {
+          results += entry.getValue().size();
+          entry.getValue().forEach(p -> p.unit.stain());
+          entry.getValue().clear();
+        }
+      }
+      return results;
+    }
+  }
+
+  private static final class LegacyTimer {
+    private final ElementUnit unit;
+    private final LocalDateTime timerAt;
+    private final List<LegacyTimer> slot;
+
+    private LegacyTimer(ElementUnit unit, LocalDateTime timerAt, List<LegacyTimer> slot) {
+      this.unit = unit;
+      this.timerAt = timerAt;
+      this.slot = slot;
+    }
+  }
+}
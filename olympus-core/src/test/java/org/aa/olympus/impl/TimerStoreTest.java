@@ -0,0 +1,182 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.aa.olympus.api.TimerState;
+import org.aa.olympus.examples.WorldCountExample;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerStoreTest {
+
+  private final Random random = new Random(0);
+  private final EngineContext engineContext = new EngineContext(null, null);
+  private final TimerStore timerStore = new TimerStore(engineContext);
+  private ElementUnit<String, Integer> unit;
+  private LocalDateTime now = LocalDateTime.of(2019, 8, 13, 12, 0);
+  private int updateId = 0;
+
+  @Before
+  public void setUp() {
+    EntityManager<String, Integer> entityManager =
+        new EntityManager<>(
+            engineContext,
+            timerStore,
+            WorldCountExample.COUNTER,
+            new WorldCountExample.CounterElementManager(),
+            ImmutableMap.of(),
+            ImmutableSet.of(),
+            ImmutableSet.of());
+    unit = entityManager.get("foo", false);
+    advance(Duration.ZERO);
+  }
+
+  private int advance(Duration duration) {
+    now = now.plus(duration);
+    engineContext.setLatestContext(new UpdateContextImpl(now, ++updateId));
+    return timerStore.notifyNext(now);
+  }
+
+  private Duration randomDuration() {
+    switch (random.nextInt(4)) {
+      case 0:
+        return Duration.ofNanos(1 + random.nextInt(1000));
+      case 1:
+        return Duration.ofMillis(1 + random.nextInt(1000));
+      case 2:
+        return Duration.ofSeconds(1 + random.nextInt(3600));
+      default:
+        return Duration.ofDays(1 + random.nextInt(1000));
+    }
+  }
+
+  @Test
+  public void testTriggersInOrder() {
+    ElementTimerImpl later = timerStore.create(unit, now.plusSeconds(2), Duration.ZERO);
+    ElementTimerImpl sooner = timerStore.create(unit, now.plusSeconds(1), Duration.ZERO);
+    ElementTimerImpl same = timerStore.create(unit, now.plusSeconds(1), Duration.ZERO);
+    Assert.assertEquals(3, timerStore.size());
+
+    Assert.assertEquals(0, advance(Duration.ofMillis(999)));
+    Assert.assertEquals(2, advance(Duration.ofMillis(1)));
+    Assert.assertEquals(TimerState.TRIGGERED, sooner.getState());
+    Assert.assertEquals(TimerState.TRIGGERED, same.getState());
+    Assert.assertEquals(TimerState.READY, later.getState());
+
+    later.cancel();
+    Assert.assertEquals(TimerState.CANCELLED, later.getState());
+    Assert.assertEquals(0, timerStore.size());
+    Assert.assertEquals(0, advance(Duration.ofSeconds(10)));
+  }
+
+  @Test
+  public void testRandomTimers() {
+    List<ElementTimerImpl> timers = new ArrayList<>();
+    for (int round = 0; round < 200; ++round) {
+      for (int i = 0; i < 50; ++i) {
+        timers.add(timerStore.create(unit, now.plus(randomDuration()), Duration.ZERO));
+      }
+      for (int i = 0; i < 10; ++i) {
+        ElementTimerImpl timer = timers.get(random.nextInt(timers.size()));
+        if (timer.getState() == TimerState.READY) {
+          timer.cancel();
+        }
+      }
+
+      int ready = (int) timers.stream().filter(t -> t.getState() == TimerState.READY).count();
+      Assert.assertEquals(ready, timerStore.size());
+      Assert.assertEquals(
+          timers.stream()
+              .filter(t -> t.getState() == TimerState.READY)
+              .map(ElementTimerImpl::getTimerAt)
+              .min(LocalDateTime::compareTo)
+              .orElse(null),
+          timerStore.getNextTimerAt());
+      int triggered = advance(randomDuration());
+      int expected = 0;
+      for (ElementTimerImpl timer : timers) {
+        if (timer.getState() == TimerState.TRIGGERED) {
+          Assert.assertFalse(timer.getTimerAt().isAfter(now));
+        } else if (timer.getState() == TimerState.READY) {
+          Assert.assertTrue(timer.getTimerAt().isAfter(now));
+          ++expected;
+        }
+      }
+      Assert.assertEquals(ready - expected, triggered);
+    }
+  }
+
+  @Test
+  public void testRecurring() {
+    ElementTimerImpl timer = timerStore.create(unit, now.plusSeconds(1), Duration.ofSeconds(1));
+    ElementTimerImpl single = timerStore.create(unit, now.plusSeconds(1), Duration.ZERO);
+    LocalDateTime first = now.plusSeconds(1);
+
+    Assert.assertEquals(2, advance(Duration.ofSeconds(1)));
+    Assert.assertEquals(TimerState.READY, timer.getState());
+    Assert.assertEquals(TimerState.TRIGGERED, single.getState());
+    Assert.assertEquals(first.plusSeconds(1), timer.getTimerAt());
+    Assert.assertEquals(1, timerStore.size());
+
+    // Missed occurrences trigger once
+    Assert.assertEquals(1, advance(Duration.ofMillis(3500)));
+    Assert.assertEquals(first.plusSeconds(4), timer.getTimerAt());
+    Assert.assertEquals(0, advance(Duration.ofMillis(499)));
+    Assert.assertEquals(1, advance(Duration.ofMillis(1)));
+
+    timer.cancel();
+    Assert.assertEquals(0, timerStore.size());
+    Assert.assertEquals(0, advance(Duration.ofSeconds(10)));
+  }
+
+  @Test
+  public void testReschedule() {
+    ElementTimerImpl timer = timerStore.create(unit, now.plusSeconds(1), Duration.ZERO);
+    timer.reschedule(now.plusSeconds(2));
+    Assert.assertEquals(1, timerStore.size());
+    Assert.assertEquals(0, advance(Duration.ofSeconds(1)));
+    Assert.assertEquals(1, advance(Duration.ofSeconds(1)));
+    Assert.assertEquals(TimerState.TRIGGERED, timer.getState());
+
+    timer.reschedule(now.plusSeconds(1));
+    Assert.assertEquals(TimerState.READY, timer.getState());
+    Assert.assertEquals(1, timerStore.size());
+    timer.cancel();
+    timer.reschedule(now.plusSeconds(1));
+    Assert.assertEquals(1, advance(Duration.ofSeconds(1)));
+    Assert.assertEquals(0, timerStore.size());
+
+    try {
+      timer.reschedule(now);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(TimerState.TRIGGERED, timer.getState());
+    }
+  }
+
+  @Test
+  public void testLimits() {
+    Assert.assertEquals(0L ^ Long.MIN_VALUE, TimerStore.toTick(LocalDateTime.of(1970, 1, 1, 0, 0)));
+    Assert.assertTrue(
+        Long.compareUnsigned(
+                TimerStore.toTick(LocalDateTime.of(1969, 12, 31, 23, 59)),
+                TimerStore.toTick(LocalDateTime.of(1970, 1, 1, 0, 0)))
+            < 0);
+    try {
+      timerStore.create(unit, LocalDateTime.of(3000, 1, 1, 0, 0), Duration.ZERO);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, timerStore.size());
+    }
+
+    ElementTimerImpl timer = timerStore.create(unit, now.plusYears(200), Duration.ZERO);
+    Assert.assertEquals(1, timerStore.notifyNext(LocalDateTime.MAX));
+    Assert.assertEquals(TimerState.TRIGGERED, timer.getState());
+  }
+}
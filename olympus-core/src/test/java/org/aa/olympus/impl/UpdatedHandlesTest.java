@@ -0,0 +1,103 @@
+package org.aa.olympus.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.List;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UpdatedHandlesTest {
+
+  private static final EventChannel<KeyValuePair<String, String>> LEFT_CHANNEL =
+      Olympus.channel("LEFT", new TypeToken<KeyValuePair<String, String>>() {});
+  private static final EventChannel<KeyValuePair<String, String>> RIGHT_CHANNEL =
+      Olympus.channel("RIGHT", new TypeToken<KeyValuePair<String, String>>() {});
+  private static final EntityKey<String, String> LEFT =
+      Olympus.key("LEFT", String.class, String.class);
+  private static final EntityKey<String, String> RIGHT =
+      Olympus.key("RIGHT", String.class, String.class);
+  private static final EntityKey<String, List> RESULT =
+      Olympus.key("RESULT", String.class, List.class);
+
+  private Engine engine;
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(LEFT_CHANNEL)
+            .registerEventChannel(RIGHT_CHANNEL)
+            .eventToEntity(LEFT_CHANNEL, LEFT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .eventToEntity(RIGHT_CHANNEL, RIGHT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(RESULT, new RecordingManager(), ImmutableSet.of(LEFT, RIGHT))
+            .build();
+  }
+
+  private void set(EventChannel<KeyValuePair<String, String>> channel, String value) {
+    engine.injectEvent(channel, KeyValuePair.of("foo", value));
+  }
+
+  @Test
+  public void testKeptUntilReady() {
+    set(LEFT_CHANNEL, "l1");
+    engine.runOnce();
+    Assert.assertNull(engine.getState(RESULT, "foo"));
+
+    set(RIGHT_CHANNEL, "r1");
+    engine.runOnce();
+    Assert.assertEquals(ImmutableList.of("l1", "r1"), engine.getState(RESULT, "foo"));
+
+    set(LEFT_CHANNEL, "l2");
+    set(LEFT_CHANNEL, "l3");
+    engine.runOnce();
+    Assert.assertEquals(ImmutableList.of("l3"), engine.getState(RESULT, "foo"));
+  }
+
+  private static final class RecordingManager implements ElementManager<String, List> {
+
+    @Override
+    public ElementUpdater<List> create(String key, UpdateContext updateContext, Toolbox toolbox) {
+      // Subscribes to both sides from the start, so it's not ready until they're both there
+      toolbox.get(LEFT, key).subscribe(SubscriptionType.STRONG);
+      toolbox.get(RIGHT, key).subscribe(SubscriptionType.STRONG);
+      return new RecordingUpdater();
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /** Returns the states of the updated handles */
+  private static final class RecordingUpdater implements ElementUpdater<List> {
+
+    @Override
+    public UpdateResult<List> update(List previous, UpdateContext updateContext, Toolbox toolbox) {
+      List<Object> states = new ArrayList<>();
+      toolbox.getUpdatedHandles().forEach(p -> states.add(p.getState()));
+      return UpdateResult.update(states);
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+}
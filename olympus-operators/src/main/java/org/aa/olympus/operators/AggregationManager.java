@@ -0,0 +1,49 @@
+package org.aa.olympus.operators;
+
+import com.google.common.base.Preconditions;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+
+/** Creates one aggregate per group, notified of the creation of the input elements of its group */
+final class AggregationManager<KI, SI, K, S> implements ElementManager<K, S> {
+
+  private final EntityKey<KI, SI> input;
+  private final Function<? super KI, ? extends K> groupBy;
+  private final Supplier<AggregationUpdater<KI, SI, S>> factory;
+
+  AggregationManager(
+      EntityKey<KI, SI> input,
+      Function<? super KI, ? extends K> groupBy,
+      Supplier<AggregationUpdater<KI, SI, S>> factory) {
+    this.input = input;
+    this.groupBy = groupBy;
+    this.factory = factory;
+  }
+
+  @Override
+  public ElementUpdater<S> create(K elementKey, UpdateContext updateContext, Toolbox toolbox) {
+    return factory.get();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // the entity key guarantees it
+  public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<K> notifier) {
+    Preconditions.checkArgument(
+        entityKey.equals(input), "Unsupported entity %s", entityKey.getName());
+    K group = groupBy.apply((KI) key);
+    if (group != null) {
+      notifier.notifyElement(group);
+    }
+  }
+
+  @Override
+  public boolean concurrentUpdates() {
+    return true;
+  }
+}
@@ -0,0 +1,52 @@
+package org.aa.olympus.operators;
+
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+
+/**
+ * Aggregates the states of its inputs, applying the changes of the inputs that updated
+ *
+ * <p>Inputs are subscribed as {@link SubscriptionType#OPTIONAL}, so the aggregate updates whatever
+ * the status of its inputs. Inputs that are OK get {@link #put}, the others get {@link #remove}d.
+ */
+abstract class AggregationUpdater<K, SI, S> implements ElementUpdater<S> {
+
+  private final EntityKey<K, SI> input;
+
+  AggregationUpdater(EntityKey<K, SI> input) {
+    this.input = input;
+  }
+
+  /** Add or replace the state of an input */
+  abstract void put(ElementHandle<K, SI> handle, SI state);
+
+  /** Remove an input, that may not have been added */
+  abstract void remove(ElementHandle<K, SI> handle);
+
+  abstract UpdateResult<S> getResult();
+
+  @Override
+  public final UpdateResult<S> update(S previous, UpdateContext updateContext, Toolbox toolbox) {
+    for (ElementHandle<?, ?> updated : toolbox.getUpdatedHandles()) {
+      ElementHandle<K, SI> handle = input.castHandle(updated);
+      if (handle.getStatus() == ElementStatus.OK) {
+        put(handle, handle.getState());
+      } else {
+        remove(handle);
+      }
+    }
+    return getResult();
+  }
+
+  @Override
+  public final <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+    input.castHandle(handle).subscribe(SubscriptionType.OPTIONAL);
+    return true;
+  }
+}
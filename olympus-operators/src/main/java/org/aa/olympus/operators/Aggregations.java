@@ -0,0 +1,64 @@
+package org.aa.olympus.operators;
+
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.Toolbox;
+
+/**
+ * Factories of {@link ElementManager} aggregating the elements of an input entity by group.
+ *
+ * <p>Each input element goes to the group {@code groupBy} returns for its key, or to no group if it
+ * returns null. The entity of the aggregates must depend on the input entity only.
+ *
+ * <p>Aggregates are maintained from {@link Toolbox#getUpdatedHandles()}: sums, counts and means in
+ * O(1) per updated input, min and max in O(log n) using an indexed heap. Inputs that aren't {@link
+ * org.aa.olympus.api.ElementStatus#OK}, because they're not ready, deleted or failed, are left out
+ * of their group until they are OK again.
+ */
+public final class Aggregations {
+
+  private Aggregations() {}
+
+  /** The sum of the values of each group, 0 for empty groups */
+  public static <KI, SI, K> ElementManager<K, Double> sum(
+      EntityKey<KI, SI> input,
+      Function<? super KI, ? extends K> groupBy,
+      ToDoubleFunction<? super SI> value) {
+    return new AggregationManager<>(input, groupBy, () -> new SumUpdater<>(input, value));
+  }
+
+  /** The number of elements of each group that are OK */
+  public static <KI, SI, K> ElementManager<K, Long> count(
+      EntityKey<KI, SI> input, Function<? super KI, ? extends K> groupBy) {
+    return new AggregationManager<>(input, groupBy, () -> new CountUpdater<>(input));
+  }
+
+  /** The mean of the values of each group, not ready for empty groups */
+  public static <KI, SI, K> ElementManager<K, Double> mean(
+      EntityKey<KI, SI> input,
+      Function<? super KI, ? extends K> groupBy,
+      ToDoubleFunction<? super SI> value) {
+    return new AggregationManager<>(input, groupBy, () -> new MeanUpdater<>(input, value));
+  }
+
+  /** The smallest state of each group, not ready for empty groups */
+  public static <KI, SI, K> ElementManager<K, SI> min(
+      EntityKey<KI, SI> input,
+      Function<? super KI, ? extends K> groupBy,
+      Comparator<? super SI> comparator) {
+    return new AggregationManager<>(
+        input, groupBy, () -> new ExtremumUpdater<>(input, comparator::compare));
+  }
+
+  /** The largest state of each group, not ready for empty groups */
+  public static <KI, SI, K> ElementManager<K, SI> max(
+      EntityKey<KI, SI> input,
+      Function<? super KI, ? extends K> groupBy,
+      Comparator<? super SI> comparator) {
+    return new AggregationManager<>(
+        input, groupBy, () -> new ExtremumUpdater<>(input, (a, b) -> comparator.compare(b, a)));
+  }
+}
@@ -0,0 +1,32 @@
+package org.aa.olympus.operators;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.UpdateResult;
+
+/** Counts its inputs */
+final class CountUpdater<K, SI> extends AggregationUpdater<K, SI, Long> {
+
+  private final Set<ElementHandle<K, SI>> counted = new HashSet<>();
+
+  CountUpdater(EntityKey<K, SI> input) {
+    super(input);
+  }
+
+  @Override
+  void put(ElementHandle<K, SI> handle, SI state) {
+    counted.add(handle);
+  }
+
+  @Override
+  void remove(ElementHandle<K, SI> handle) {
+    counted.remove(handle);
+  }
+
+  @Override
+  UpdateResult<Long> getResult() {
+    return UpdateResult.maybe((long) counted.size());
+  }
+}
@@ -0,0 +1,32 @@
+package org.aa.olympus.operators;
+
+import java.util.Comparator;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.UpdateResult;
+
+/** Keeps the first state of its inputs according to a comparator, not ready without any */
+final class ExtremumUpdater<K, SI> extends AggregationUpdater<K, SI, SI> {
+
+  private final IndexedHeap<ElementHandle<K, SI>, SI> heap;
+
+  ExtremumUpdater(EntityKey<K, SI> input, Comparator<SI> comparator) {
+    super(input);
+    this.heap = new IndexedHeap<>(comparator);
+  }
+
+  @Override
+  void put(ElementHandle<K, SI> handle, SI state) {
+    heap.put(handle, state);
+  }
+
+  @Override
+  void remove(ElementHandle<K, SI> handle) {
+    heap.remove(handle);
+  }
+
+  @Override
+  UpdateResult<SI> getResult() {
+    return heap.isEmpty() ? UpdateResult.notReady() : UpdateResult.maybe(heap.peek());
+  }
+}
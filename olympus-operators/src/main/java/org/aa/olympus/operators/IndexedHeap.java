@@ -0,0 +1,126 @@
+package org.aa.olympus.operators;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A binary heap of values indexed by key, so the value of a key can be changed or removed in O(log
+ * n). The smallest value according to the comparator is at the top.
+ */
+final class IndexedHeap<T, V> {
+
+  private final Comparator<? super V> comparator;
+  private final Map<T, Entry<V>> entries = new HashMap<>();
+  private Entry<V>[] heap = newEntries(8);
+  private int size = 0;
+
+  IndexedHeap(Comparator<? super V> comparator) {
+    this.comparator = comparator;
+  }
+
+  @SuppressWarnings("unchecked") // generic array creation
+  private static <V> Entry<V>[] newEntries(int length) {
+    return (Entry<V>[]) new Entry[length];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** The smallest value, or null if empty */
+  V peek() {
+    return size == 0 ? null : heap[0].value;
+  }
+
+  /** Add or replace the value of {@code key} */
+  void put(T key, V value) {
+    Preconditions.checkNotNull(value);
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+      entry = new Entry<>(value, size);
+      entries.put(key, entry);
+      heap[size++] = entry;
+      siftUp(entry.index);
+    } else {
+      int comparison = comparator.compare(value, entry.value);
+      entry.value = value;
+      if (comparison < 0) {
+        siftUp(entry.index);
+      } else if (comparison > 0) {
+        siftDown(entry.index);
+      }
+    }
+  }
+
+  /** @return false if {@code key} wasn't there */
+  boolean remove(T key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry == null) {
+      return false;
+    }
+    Entry<V> last = heap[--size];
+    heap[size] = null;
+    if (last != entry) {
+      set(entry.index, last);
+      siftDown(last.index);
+      siftUp(last.index);
+    }
+    return true;
+  }
+
+  private void siftUp(int index) {
+    Entry<V> entry = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (comparator.compare(entry.value, heap[parent].value) >= 0) {
+        break;
+      }
+      set(index, heap[parent]);
+      index = parent;
+    }
+    set(index, entry);
+  }
+
+  private void siftDown(int index) {
+    Entry<V> entry = heap[index];
+    int half = size >>> 1;
+    while (index < half) {
+      int child = 2 * index + 1;
+      int right = child + 1;
+      if (right < size && comparator.compare(heap[right].value, heap[child].value) < 0) {
+        child = right;
+      }
+      if (comparator.compare(entry.value, heap[child].value) <= 0) {
+        break;
+      }
+      set(index, heap[child]);
+      index = child;
+    }
+    set(index, entry);
+  }
+
+  private void set(int index, Entry<V> entry) {
+    heap[index] = entry;
+    entry.index = index;
+  }
+
+  private static final class Entry<V> {
+    private V value;
+    private int index;
+
+    private Entry(V value, int index) {
+      this.value = value;
+      this.index = index;
+    }
+  }
+}
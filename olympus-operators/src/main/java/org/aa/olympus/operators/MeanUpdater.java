@@ -0,0 +1,19 @@
+package org.aa.olympus.operators;
+
+import java.util.function.ToDoubleFunction;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.UpdateResult;
+
+/** Averages the values of its inputs, not ready without any */
+final class MeanUpdater<K, SI> extends SumUpdater<K, SI> {
+
+  MeanUpdater(EntityKey<K, SI> input, ToDoubleFunction<? super SI> value) {
+    super(input, value);
+  }
+
+  @Override
+  UpdateResult<Double> getResult() {
+    int count = getCount();
+    return count == 0 ? UpdateResult.notReady() : UpdateResult.maybe(getSum() / count);
+  }
+}
@@ -0,0 +1,73 @@
+package org.aa.olympus.operators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.UpdateResult;
+
+/**
+ * Sums the values of its inputs
+ *
+ * <p>The sum is compensated (Neumaier) as it's only ever adjusted by deltas, and gets back to
+ * exactly 0 when the last input is removed.
+ */
+class SumUpdater<K, SI> extends AggregationUpdater<K, SI, Double> {
+
+  private final ToDoubleFunction<? super SI> value;
+  private final Map<ElementHandle<K, SI>, Double> values = new HashMap<>();
+  private double sum = 0.0;
+  private double compensation = 0.0;
+
+  SumUpdater(EntityKey<K, SI> input, ToDoubleFunction<? super SI> value) {
+    super(input);
+    this.value = value;
+  }
+
+  @Override
+  final void put(ElementHandle<K, SI> handle, SI state) {
+    double newValue = value.applyAsDouble(state);
+    Double previous = values.put(handle, newValue);
+    if (previous != null) {
+      add(-previous);
+    }
+    add(newValue);
+  }
+
+  @Override
+  final void remove(ElementHandle<K, SI> handle) {
+    Double previous = values.remove(handle);
+    if (previous != null) {
+      if (values.isEmpty()) {
+        sum = 0.0;
+        compensation = 0.0;
+      } else {
+        add(-previous);
+      }
+    }
+  }
+
+  private void add(double delta) {
+    double total = sum + delta;
+    if (Math.abs(sum) >= Math.abs(delta)) {
+      compensation += (sum - total) + delta;
+    } else {
+      compensation += (delta - total) + sum;
+    }
+    sum = total;
+  }
+
+  final double getSum() {
+    return sum + compensation;
+  }
+
+  final int getCount() {
+    return values.size();
+  }
+
+  @Override
+  UpdateResult<Double> getResult() {
+    return UpdateResult.maybe(getSum());
+  }
+}
@@ -0,0 +1,167 @@
+package org.aa.olympus.operators;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import java.util.Comparator;
+import org.aa.olympus.api.ElementHandle;
+import org.aa.olympus.api.ElementManager;
+import org.aa.olympus.api.ElementStatus;
+import org.aa.olympus.api.ElementUpdater;
+import org.aa.olympus.api.Engine;
+import org.aa.olympus.api.EntityKey;
+import org.aa.olympus.api.EventChannel;
+import org.aa.olympus.api.Notifier;
+import org.aa.olympus.api.Olympus;
+import org.aa.olympus.api.SubscriptionType;
+import org.aa.olympus.api.Toolbox;
+import org.aa.olympus.api.UpdateContext;
+import org.aa.olympus.api.UpdateResult;
+import org.aa.olympus.examples.KeyValuePair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AggregationsTest {
+
+  private static final EventChannel<KeyValuePair<String, Integer>> CHANNEL =
+      Olympus.channel("CHANNEL", new TypeToken<KeyValuePair<String, Integer>>() {});
+  private static final EntityKey<String, Integer> INPUT =
+      Olympus.key("INPUT", String.class, Integer.class);
+  private static final EntityKey<String, Integer> LEAF =
+      Olympus.key("LEAF", String.class, Integer.class);
+  private static final EntityKey<String, Double> SUM =
+      Olympus.key("SUM", String.class, Double.class);
+  private static final EntityKey<String, Long> COUNT =
+      Olympus.key("COUNT", String.class, Long.class);
+  private static final EntityKey<String, Double> MEAN =
+      Olympus.key("MEAN", String.class, Double.class);
+  private static final EntityKey<String, Integer> MIN =
+      Olympus.key("MIN", String.class, Integer.class);
+  private static final EntityKey<String, Integer> MAX =
+      Olympus.key("MAX", String.class, Integer.class);
+
+  private Engine engine;
+
+  /** Leaves are grouped by the part of their key before the slash */
+  private static String group(String key) {
+    int slash = key.indexOf('/');
+    return slash < 0 ? null : key.substring(0, slash);
+  }
+
+  @Before
+  public void setUp() {
+    engine =
+        Olympus.builder()
+            .registerEventChannel(CHANNEL)
+            .eventToEntity(CHANNEL, INPUT, KeyValuePair::getKey, KeyValuePair::getValue)
+            .registerInnerEntity(LEAF, new LeafManager(), ImmutableSet.of(INPUT))
+            .registerInnerEntity(
+                SUM,
+                Aggregations.sum(LEAF, AggregationsTest::group, Integer::doubleValue),
+                ImmutableSet.of(LEAF))
+            .registerInnerEntity(
+                COUNT, Aggregations.count(LEAF, AggregationsTest::group), ImmutableSet.of(LEAF))
+            .registerInnerEntity(
+                MEAN,
+                Aggregations.mean(LEAF, AggregationsTest::group, Integer::doubleValue),
+                ImmutableSet.of(LEAF))
+            .registerInnerEntity(
+                MIN,
+                Aggregations.min(LEAF, AggregationsTest::group, Comparator.naturalOrder()),
+                ImmutableSet.of(LEAF))
+            .registerInnerEntity(
+                MAX,
+                Aggregations.max(LEAF, AggregationsTest::group, Comparator.naturalOrder()),
+                ImmutableSet.of(LEAF))
+            .build();
+  }
+
+  private AggregationsTest set(String key, int value) {
+    engine.injectEvent(CHANNEL, KeyValuePair.of(key, value));
+    return this;
+  }
+
+  private void check(double sum, long count, Integer min, Integer max) {
+    Assert.assertEquals(sum, engine.getState(SUM, "a"), 0.0);
+    Assert.assertEquals(count, engine.getState(COUNT, "a").longValue());
+    Assert.assertEquals(min, engine.getState(MIN, "a"));
+    Assert.assertEquals(max, engine.getState(MAX, "a"));
+    if (count == 0) {
+      Assert.assertEquals(ElementStatus.NOT_READY, engine.getElement(MEAN, "a").getStatus());
+      Assert.assertEquals(ElementStatus.NOT_READY, engine.getElement(MIN, "a").getStatus());
+    } else {
+      Assert.assertEquals(sum / count, engine.getState(MEAN, "a"), 1e-9);
+    }
+  }
+
+  @Test
+  public void testAggregations() {
+    set("a/1", 10).set("a/2", 20).set("a/3", 30).set("b/1", 100).set("none", 1000);
+    engine.runOnce();
+    check(60, 3, 10, 30);
+    Assert.assertEquals(100.0, engine.getState(SUM, "b"), 0.0);
+
+    set("a/2", 5).set("a/3", 3);
+    engine.runOnce();
+    check(18, 3, 3, 10);
+
+    // In error, then back
+    set("a/1", -1);
+    engine.runOnce();
+    check(8, 2, 3, 5);
+    set("a/1", 12);
+    engine.runOnce();
+    check(20, 3, 3, 12);
+
+    // Deleted
+    set("a/3", 0);
+    engine.runOnce();
+    check(17, 2, 5, 12);
+    set("a/1", 0).set("a/2", 0);
+    engine.runOnce();
+    check(0, 0, null, null);
+    Assert.assertEquals(100.0, engine.getState(SUM, "b"), 0.0);
+  }
+
+  private static final class LeafManager implements ElementManager<String, Integer> {
+
+    @Override
+    public ElementUpdater<Integer> create(
+        String key, UpdateContext updateContext, Toolbox toolbox) {
+      return new LeafUpdater(toolbox.get(INPUT, key).subscribe(SubscriptionType.STRONG));
+    }
+
+    @Override
+    public <K2> void onNewKey(EntityKey<K2, ?> entityKey, K2 key, Notifier<String> notifier) {
+      notifier.notifyElement((String) key);
+    }
+  }
+
+  /** Fails for negative values and gets deleted for 0 */
+  private static final class LeafUpdater implements ElementUpdater<Integer> {
+
+    private final ElementHandle<String, Integer> input;
+
+    private LeafUpdater(ElementHandle<String, Integer> input) {
+      this.input = input;
+    }
+
+    @Override
+    public UpdateResult<Integer> update(
+        Integer previous, UpdateContext updateContext, Toolbox toolbox) {
+      int value = input.getState();
+      if (value < 0) {
+        return UpdateResult.error();
+      } else if (value == 0) {
+        return UpdateResult.delete();
+      } else {
+        return UpdateResult.update(value);
+      }
+    }
+
+    @Override
+    public <K2, S2> boolean onNewElement(ElementHandle<K2, S2> handle) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.aa.olympus.operators;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexedHeapTest {
+
+  @Test
+  public void testPutAndRemove() {
+    IndexedHeap<String, Integer> heap = new IndexedHeap<>(Comparator.naturalOrder());
+    Assert.assertTrue(heap.isEmpty());
+    Assert.assertNull(heap.peek());
+
+    heap.put("a", 3);
+    heap.put("b", 1);
+    heap.put("c", 2);
+    Assert.assertEquals(1, heap.peek().intValue());
+
+    heap.put("b", 4);
+    Assert.assertEquals(2, heap.peek().intValue());
+    Assert.assertTrue(heap.remove("c"));
+    Assert.assertFalse(heap.remove("c"));
+    Assert.assertEquals(3, heap.peek().intValue());
+    Assert.assertEquals(2, heap.size());
+  }
+
+  @Test
+  public void testRandom() {
+    Random random = new Random(42);
+    IndexedHeap<Integer, Integer> heap = new IndexedHeap<>(Comparator.naturalOrder());
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 100_000; ++i) {
+      int key = random.nextInt(1_000);
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key) != null, heap.remove(key));
+      } else {
+        int value = random.nextInt(10_000);
+        expected.put(key, value);
+        heap.put(key, value);
+      }
+      Assert.assertEquals(expected.size(), heap.size());
+      Assert.assertEquals(
+          expected.values().stream().min(Comparator.naturalOrder()).orElse(null), heap.peek());
+    }
+  }
+}